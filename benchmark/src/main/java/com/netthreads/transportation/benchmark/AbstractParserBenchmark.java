@@ -0,0 +1,165 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+
+/**
+ * Common fixture for the fetch benchmarks.
+ * 
+ * The feed is either the bundled sample document, held in memory, or a
+ * synthetic document of the specified number of situation records.
+ * 
+ */
+public abstract class AbstractParserBenchmark<T>
+{
+	public static final String FEED_BUNDLED = "bundled";
+
+	private StreamParser<T> streamParser;
+	private PullParser<T> pullParser;
+	private DataFactory<T> dataFactory;
+
+	private List<T> list;
+
+	private byte[] bundled;
+	private int records;
+	private long bytes;
+
+	/**
+	 * Feed selector, "bundled" or a synthetic record count.
+	 * 
+	 * @return The feed parameter.
+	 */
+	protected abstract String getFeed();
+
+	/**
+	 * Bundled sample resource.
+	 * 
+	 * @return The resource path.
+	 */
+	protected abstract String getResource();
+
+	/**
+	 * Generator for synthetic documents.
+	 * 
+	 * @return The feed generator.
+	 */
+	protected abstract SyntheticFeed getSyntheticFeed();
+
+	protected abstract DataFactory<T> createDataFactory();
+
+	protected abstract PullParser<T> createPullParser(XmlPullParser parser);
+
+	@Setup(Level.Trial)
+	public void setUp() throws XmlPullParserException, IOException
+	{
+		streamParser = new StreamParserImpl<T>();
+		pullParser = createPullParser(streamParser.getParser());
+		dataFactory = createDataFactory();
+
+		if (FEED_BUNDLED.equals(getFeed()))
+		{
+			bundled = load(getResource());
+			bytes = bundled.length;
+			records = 0;
+		}
+		else
+		{
+			records = Integer.parseInt(getFeed());
+			bytes = getSyntheticFeed().size(records);
+		}
+
+		list = new ArrayList<T>(Math.max(records, 64));
+	}
+
+	/**
+	 * Run one fetch over the whole feed.
+	 * 
+	 * @param counters
+	 * 
+	 * @return The parsed records.
+	 */
+	protected List<T> fetch(ParseCounters counters)
+	{
+		list.clear();
+
+		InputStream stream = (bundled != null) ? new ByteArrayInputStream(bundled) : getSyntheticFeed().open(records);
+
+		int state = streamParser.fetch(stream, list, dataFactory, pullParser);
+		if (state != StreamParser.DONE)
+		{
+			throw new IllegalStateException("Fetch failed, state " + state);
+		}
+
+		counters.records += list.size();
+		counters.bytes += bytes;
+
+		return list;
+	}
+
+	/**
+	 * Read classpath resource.
+	 * 
+	 * @param name
+	 * 
+	 * @return The resource bytes.
+	 * 
+	 * @throws IOException
+	 */
+	private static byte[] load(String name) throws IOException
+	{
+		InputStream stream = AbstractParserBenchmark.class.getResourceAsStream(name);
+		if (stream == null)
+		{
+			throw new IOException("Missing resource " + name);
+		}
+
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.archive.ArchiveReader;
+import com.netthreads.transportation.parser.ListRecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Parse an archived dump of concatenated documents, a FileInputStream per
+ * document against the memory mapped archive reader over the whole file.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ArchiveBenchmark
+{
+	@Param({ "10" })
+	public int documents;
+
+	@Param({ "10000" })
+	public int records;
+
+	private File directory;
+	private File[] files;
+	private File dump;
+
+	private StreamParserImpl<TrafficData> streamParser;
+	private TrafficDataPullParser pullParser;
+	private TrafficDataFactory dataFactory;
+	private ArchiveReader<TrafficData> reader;
+
+	private List<TrafficData> list;
+
+	@Setup
+	public void setUp() throws XmlPullParserException, IOException
+	{
+		byte[] document = SyntheticFeed.TRAFFIC.toByteArray(records);
+
+		directory = File.createTempFile("archive", "");
+		directory.delete();
+		directory.mkdir();
+
+		files = new File[documents];
+		dump = new File(directory, "dump.xml");
+
+		OutputStream all = new FileOutputStream(dump);
+		try
+		{
+			for (int i = 0; i < documents; i++)
+			{
+				files[i] = new File(directory, "traffic-" + i + ".xml");
+
+				OutputStream out = new FileOutputStream(files[i]);
+				try
+				{
+					out.write(document);
+				}
+				finally
+				{
+					out.close();
+				}
+
+				all.write(document);
+			}
+		}
+		finally
+		{
+			all.close();
+		}
+
+		streamParser = new StreamParserImpl<TrafficData>();
+		pullParser = new TrafficDataPullParser(streamParser.getParser());
+		dataFactory = new TrafficDataFactory();
+		reader = new ArchiveReader<TrafficData>(streamParser, pullParser, dataFactory);
+
+		list = new ArrayList<TrafficData>(documents * records);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		for (File file : files)
+		{
+			file.delete();
+		}
+
+		dump.delete();
+		directory.delete();
+	}
+
+	@Benchmark
+	public List<TrafficData> fileInputStream() throws IOException
+	{
+		list.clear();
+
+		for (File file : files)
+		{
+			InputStream stream = new FileInputStream(file);
+			try
+			{
+				int state = streamParser.fetch(stream, list, dataFactory, pullParser);
+				if (state != StreamParser.DONE)
+				{
+					throw new IllegalStateException("Fetch failed, state " + state);
+				}
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+
+		return list;
+	}
+
+	@Benchmark
+	public List<TrafficData> mapped() throws IOException
+	{
+		list.clear();
+
+		int count = reader.read(dump, new ListRecordSink<TrafficData>(list));
+		if (count != documents)
+		{
+			throw new IllegalStateException("Read " + count + " documents");
+		}
+
+		return list;
+	}
+}
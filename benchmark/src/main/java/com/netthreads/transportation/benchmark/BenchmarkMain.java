@@ -0,0 +1,106 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler attached and print a summary of
+ * ops/s, records/s, bytes/s and bytes allocated per record.
+ * 
+ * Any standard JMH command line options are passed through, e.g. "-p
+ * feed=bundled,1000" to restrict the feed sizes.
+ * 
+ */
+public class BenchmarkMain
+{
+	private static final String GC_ALLOC_RATE_NORM = "gc.alloc.rate.norm";
+
+	// ParseCounters field names.
+	private static final String LABEL_RECORDS = "records";
+	private static final String LABEL_BYTES = "bytes";
+
+	public static void main(String[] args) throws Exception
+	{
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		OptionsBuilder builder = new OptionsBuilder();
+		if (commandLine.getIncludes().isEmpty())
+		{
+			builder.include(BenchmarkMain.class.getPackage().getName() + ".*Benchmark");
+		}
+
+		Options options = builder.parent(commandLine).addProfiler(GCProfiler.class).build();
+
+		Collection<RunResult> results = new Runner(options).run();
+
+		System.out.println();
+		System.out.println(String.format("%-80s %14s %14s %16s %14s", "Benchmark", "ops/s", "records/s", "bytes/s", "B/record"));
+
+		for (RunResult result : results)
+		{
+			BenchmarkParams params = result.getParams();
+
+			Map<String, Result> secondary = result.getSecondaryResults();
+
+			double opsPerSecond = result.getPrimaryResult().getScore();
+			double recordsPerSecond = score(secondary, LABEL_RECORDS);
+			double bytesPerSecond = score(secondary, LABEL_BYTES);
+			double allocatedPerOp = score(secondary, GC_ALLOC_RATE_NORM);
+
+			// Allocation is normalised per op by the profiler, one op is one
+			// whole document.
+			double recordsPerOp = opsPerSecond > 0 ? recordsPerSecond / opsPerSecond : 0;
+			double allocatedPerRecord = recordsPerOp > 0 ? allocatedPerOp / recordsPerOp : Double.NaN;
+
+			String name = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.', params.getBenchmark().lastIndexOf('.') - 1) + 1);
+			for (String key : params.getParamsKeys())
+			{
+				name += " " + key + "=" + params.getParam(key);
+			}
+
+			System.out.println(String.format("%-80s %14.2f %14.0f %16.0f %14.1f", name, opsPerSecond, recordsPerSecond, bytesPerSecond, allocatedPerRecord));
+		}
+	}
+
+	/**
+	 * Secondary result score or zero when not reported.
+	 * 
+	 * @param secondary
+	 * @param label
+	 * 
+	 * @return The score.
+	 */
+	private static double score(Map<String, Result> secondary, String label)
+	{
+		Result result = secondary.get(label);
+
+		return result != null ? result.getScore() : 0;
+	}
+}
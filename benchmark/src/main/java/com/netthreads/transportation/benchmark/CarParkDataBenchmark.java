@@ -0,0 +1,94 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParser;
+
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+
+/**
+ * StreamParserImpl.fetch over car park occupancy feeds.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class CarParkDataBenchmark extends AbstractParserBenchmark<CarParkData>
+{
+	private static final String XML_CARPARK_FILE = "/carParkData.xml";
+
+	@Param({ FEED_BUNDLED, "1000", "100000", "1000000" })
+	public String feed;
+
+	@Override
+	protected String getFeed()
+	{
+		return feed;
+	}
+
+	@Override
+	protected String getResource()
+	{
+		return XML_CARPARK_FILE;
+	}
+
+	@Override
+	protected SyntheticFeed getSyntheticFeed()
+	{
+		return SyntheticFeed.CAR_PARK;
+	}
+
+	@Override
+	protected DataFactory<CarParkData> createDataFactory()
+	{
+		return new CarParkDataFactory();
+	}
+
+	@Override
+	protected PullParser<CarParkData> createPullParser(XmlPullParser xmlPullParser)
+	{
+		return new CarParkDataPullParser(xmlPullParser);
+	}
+
+	@Benchmark
+	public List<CarParkData> fetch(ParseCounters counters)
+	{
+		return super.fetch(counters);
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.spatial.CarParkFinder;
+import com.netthreads.transportation.spatial.Neighbour;
+
+/**
+ * Nearest available car park queries while occupancy updates arrive.
+ * 
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarParkFinderBenchmark
+{
+	// Glasgow city centre.
+	private static final double LATITUDE = 55.86;
+	private static final double LONGITUDE = -4.25;
+
+	@Param({ "100", "10000" })
+	public int carParks;
+
+	private CarParkFinder finder;
+	private List<CarParkData> list;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(1);
+
+		list = new ArrayList<CarParkData>(carParks);
+		for (int i = 0; i < carParks; i++)
+		{
+			list.add(carPark(i, LATITUDE + (random.nextDouble() - 0.5) * 0.2, LONGITUDE + (random.nextDouble() - 0.5) * 0.4, random.nextInt(500)));
+		}
+
+		finder = new CarParkFinder();
+		finder.update(list);
+	}
+
+	@Benchmark
+	@Group("finder")
+	@GroupThreads(3)
+	public List<Neighbour<CarParkData>> nearest()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		int latitudeE6 = 55860000 + random.nextInt(-50000, 50000);
+		int longitudeE6 = -4250000 + random.nextInt(-100000, 100000);
+
+		return finder.nearestAvailable(latitudeE6, longitudeE6, 5, 50);
+	}
+
+	@Benchmark
+	@Group("finder")
+	@GroupThreads(1)
+	public void occupancyUpdate()
+	{
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		CarParkData current = list.get(random.nextInt(list.size()));
+
+		finder.update(carPark(Integer.parseInt(current.getId()), current.getLatitudeE6() / 1e6, current.getLongitudeE6() / 1e6, random.nextInt(500)));
+	}
+
+	private static CarParkData carPark(int id, double latitude, double longitude, int occupied)
+	{
+		CarParkData data = new CarParkData();
+
+		data.setId(Integer.toString(id));
+		data.setLatitude(Double.toString(latitude));
+		data.setLongitude(Double.toString(longitude));
+		data.setCarParkStatus(CarParkData.STATUS_SPACES_AVAILABLE);
+		data.setOccupiedSpaces(Integer.toString(occupied));
+		data.setTotalCapacity("500");
+
+		return data;
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.Compression;
+import com.netthreads.transportation.parser.ListRecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Fetch from a gzip file, a default GZIPInputStream over a FileInputStream
+ * against a file channel through the parser read buffer.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class InputBenchmark
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Param({ "10000", "100000" })
+	public int records;
+
+	private File file;
+
+	private StreamParserImpl<TrafficData> streamParser;
+	private TrafficDataPullParser pullParser;
+	private TrafficDataFactory dataFactory;
+
+	private List<TrafficData> list;
+
+	@Setup
+	public void setUp() throws XmlPullParserException, IOException
+	{
+		file = File.createTempFile("traffic", ".xml.gz");
+
+		OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+		try
+		{
+			out.write(SyntheticFeed.TRAFFIC.toByteArray(records));
+		}
+		finally
+		{
+			out.close();
+		}
+
+		streamParser = new StreamParserImpl<TrafficData>();
+		pullParser = new TrafficDataPullParser(streamParser.getParser());
+		dataFactory = new TrafficDataFactory();
+
+		list = new ArrayList<TrafficData>(records);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Benchmark
+	public List<TrafficData> stream() throws IOException
+	{
+		list.clear();
+
+		InputStream stream = new GZIPInputStream(new FileInputStream(file));
+		try
+		{
+			check(streamParser.fetch(stream, list, dataFactory, pullParser));
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		return list;
+	}
+
+	@Benchmark
+	public List<TrafficData> channel() throws IOException
+	{
+		list.clear();
+
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try
+		{
+			check(streamParser.fetch(channel, Compression.GZIP, UTF_8, new ListRecordSink<TrafficData>(list), dataFactory, pullParser));
+		}
+		finally
+		{
+			channel.close();
+		}
+
+		return list;
+	}
+
+	private void check(int state)
+	{
+		if (state != StreamParser.DONE)
+		{
+			throw new IllegalStateException("Fetch failed, state " + state);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.metrics.FeedMetrics;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Cost of fetch metrics, the same fetch with and without a listener.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class MetricsBenchmark
+{
+	@Param({ "1000", "10000" })
+	public int records;
+
+	@Param({ "false", "true" })
+	public boolean metrics;
+
+	private byte[] document;
+
+	private StreamParserImpl<TrafficData> streamParser;
+	private TrafficDataPullParser pullParser;
+	private TrafficDataFactory dataFactory;
+
+	private List<TrafficData> list;
+
+	@Setup
+	public void setUp() throws XmlPullParserException
+	{
+		document = SyntheticFeed.TRAFFIC.toByteArray(records);
+
+		streamParser = new StreamParserImpl<TrafficData>();
+		pullParser = new TrafficDataPullParser(streamParser.getParser());
+		dataFactory = new TrafficDataFactory();
+
+		if (metrics)
+		{
+			streamParser.setMetricsListener(new FeedMetrics("traffic"));
+		}
+
+		list = new ArrayList<TrafficData>(records);
+	}
+
+	@Benchmark
+	public List<TrafficData> fetch()
+	{
+		list.clear();
+
+		int state = streamParser.fetch(new ByteArrayInputStream(document), list, dataFactory, pullParser);
+		if (state != StreamParser.DONE)
+		{
+			throw new IllegalStateException("Fetch failed, state " + state);
+		}
+
+		return list;
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.netthreads.transportation.history.OccupancyBlockDecoder;
+import com.netthreads.transportation.history.OccupancyBlockEncoder;
+
+/**
+ * Encode and decode a day of one minute occupancy samples for one car park.
+ * 
+ * The compressed size is reported as the bytesPerSample counter, against 16
+ * bytes for a raw time and count.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OccupancyBlockBenchmark
+{
+	private static final int SAMPLES = 1440;
+	private static final long MINUTE = 60 * 1000L;
+
+	/**
+	 * Compressed size, reported as is rather than as a rate.
+	 * 
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class BlockCounters
+	{
+		public double bytesPerSample;
+	}
+
+	// Largest poll time jitter in milliseconds.
+	@Param({ "0", "2000" })
+	public int jitter;
+
+	// Percentage of polls where the count changes.
+	@Param({ "10", "50" })
+	public int changes;
+
+	private long[] times;
+	private int[] values;
+
+	private byte[] block;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(1);
+
+		times = new long[SAMPLES];
+		values = new int[SAMPLES];
+
+		long time = 1425600000000L;
+		int value = 300;
+
+		for (int index = 0; index < SAMPLES; index++)
+		{
+			times[index] = time + (jitter > 0 ? random.nextInt(jitter) : 0);
+			values[index] = value;
+
+			time += MINUTE;
+
+			if (random.nextInt(100) < changes)
+			{
+				value = Math.max(0, value + random.nextInt(21) - 10);
+			}
+		}
+
+		block = encode().toByteArray();
+	}
+
+	@Benchmark
+	public OccupancyBlockEncoder encode(BlockCounters counters)
+	{
+		OccupancyBlockEncoder encoder = encode();
+
+		counters.bytesPerSample = (double) encoder.getByteCount() / SAMPLES;
+
+		return encoder;
+	}
+
+	@Benchmark
+	public long decode()
+	{
+		long sum = 0;
+
+		OccupancyBlockDecoder decoder = new OccupancyBlockDecoder(block);
+		while (decoder.next())
+		{
+			sum += decoder.getTimeMillis() + decoder.getOccupiedSpaces();
+		}
+
+		return sum;
+	}
+
+	private OccupancyBlockEncoder encode()
+	{
+		OccupancyBlockEncoder encoder = new OccupancyBlockEncoder();
+
+		for (int index = 0; index < SAMPLES; index++)
+		{
+			encoder.add(times[index], values[index]);
+		}
+
+		return encoder;
+	}
+}
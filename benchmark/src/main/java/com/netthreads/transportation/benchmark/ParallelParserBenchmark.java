@@ -0,0 +1,138 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.ParallelParser;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * One large document parsed sequentially and split across a fork join pool.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class ParallelParserBenchmark
+{
+	@Param({ "100000" })
+	public int records;
+
+	@Param({ "1", "2", "4" })
+	public int threads;
+
+	private byte[] document;
+
+	private StreamParserImpl<TrafficData> streamParser;
+	private TrafficDataPullParser pullParser;
+	private TrafficDataFactory dataFactory;
+
+	private ForkJoinPool pool;
+	private ParallelParser<TrafficData> parallelParser;
+
+	private List<TrafficData> list;
+
+	@Setup
+	public void setUp() throws XmlPullParserException
+	{
+		document = SyntheticFeed.TRAFFIC.toByteArray(records);
+
+		streamParser = new StreamParserImpl<TrafficData>();
+		pullParser = new TrafficDataPullParser(streamParser.getParser());
+		dataFactory = new TrafficDataFactory();
+
+		pool = new ForkJoinPool(threads);
+
+		PullParserFactory<TrafficData> pullParserFactory = new PullParserFactory<TrafficData>()
+		{
+			@Override
+			public PullParser<TrafficData> createPullParser(XmlPullParser parser)
+			{
+				return new TrafficDataPullParser(parser);
+			}
+		};
+
+		parallelParser = new ParallelParser<TrafficData>(StreamParserImpl.createFactory(), pullParserFactory, dataFactory, TrafficData.TAG_SITUATION_RECORD, pool);
+
+		list = new ArrayList<TrafficData>(records);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public List<TrafficData> sequential()
+	{
+		list.clear();
+
+		check(streamParser.fetch(new ByteArrayInputStream(document), list, dataFactory, pullParser));
+
+		return list;
+	}
+
+	@Benchmark
+	public List<TrafficData> parallel()
+	{
+		list.clear();
+
+		check(parallelParser.parse(document, document.length, list));
+
+		return list;
+	}
+
+	private void check(int state)
+	{
+		if (state != StreamParser.DONE)
+		{
+			throw new IllegalStateException("Parse failed, state " + state);
+		}
+	}
+}
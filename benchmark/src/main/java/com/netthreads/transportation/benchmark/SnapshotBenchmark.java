@@ -0,0 +1,108 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+import com.netthreads.transportation.snapshot.SnapshotReader;
+import com.netthreads.transportation.snapshot.SnapshotWriter;
+import com.netthreads.transportation.snapshot.TrafficDataCodec;
+
+/**
+ * Warm restart from a snapshot file against re-parsing the XML feed.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark
+{
+	@Param({ "1000", "100000" })
+	public int records;
+
+	private byte[] document;
+	private File file;
+
+	private StreamParser<TrafficData> streamParser;
+	private TrafficDataPullParser pullParser;
+	private SnapshotReader<TrafficData> reader;
+
+	@Setup
+	public void setUp() throws XmlPullParserException, IOException
+	{
+		document = SyntheticFeed.TRAFFIC.toByteArray(records);
+
+		streamParser = new StreamParserImpl<TrafficData>();
+		pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		reader = new SnapshotReader<TrafficData>(new TrafficDataCodec(), new TrafficDataFactory());
+
+		file = File.createTempFile("traffic", ".snapshot");
+		new SnapshotWriter<TrafficData>(new TrafficDataCodec()).write(file, parse());
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		file.delete();
+	}
+
+	@Benchmark
+	public List<TrafficData> parse()
+	{
+		List<TrafficData> list = new ArrayList<TrafficData>(records);
+
+		streamParser.fetch(new ByteArrayInputStream(document), list, new TrafficDataFactory(), pullParser);
+
+		return list;
+	}
+
+	@Benchmark
+	public List<TrafficData> load() throws IOException
+	{
+		return reader.read(file);
+	}
+}
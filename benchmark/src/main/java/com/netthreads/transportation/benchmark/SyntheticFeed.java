@@ -0,0 +1,325 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Synthetic feed of N situation records.
+ * 
+ * The document is generated on the fly from a record template so that a one
+ * million record feed does not have to sit in memory as a byte array. Each
+ * record gets a unique id.
+ * 
+ */
+public class SyntheticFeed
+{
+	private static final String ID_MARKER = "{ID}";
+
+	public static final SyntheticFeed TRAFFIC = new SyntheticFeed(
+	        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<glasgow_traffic_incidents modelBaseVersion=\"1.0\">\n  <payloadPublication lang=\"en\">\n",
+	        "    <situation id=\"synth{ID}\">\n"
+	                + "      <situationRecord id=\"synth{ID}_1\">\n"
+	                + "        <situationRecordCreationTime>2015-03-06T09:26:00</situationRecordCreationTime>\n"
+	                + "        <situationRecordVersion>1</situationRecordVersion>\n"
+	                + "        <probabilityOfOccurrence>certain</probabilityOfOccurrence>\n"
+	                + "        <validity>\n"
+	                + "          <validityStatus>active</validityStatus>\n"
+	                + "          <validityTimeSpecification>\n"
+	                + "            <overallStartTime>2015-03-11T09:30:00</overallStartTime>\n"
+	                + "            <overallEndTime>2015-03-12T16:00:00</overallEndTime>\n"
+	                + "          </validityTimeSpecification>\n"
+	                + "        </validity>\n"
+	                + "        <generalPublicComment>\n"
+	                + "          <comment>\n"
+	                + "            <value>ROADWORKS: Maryhill Road</value>\n"
+	                + "          </comment>\n"
+	                + "        </generalPublicComment>\n"
+	                + "        <nonGeneralPublicComment>\n"
+	                + "          <comment>\n"
+	                + "            <value>ROADWORKS: Maryhill Road will be reduced to one lane  City Bound between Queen Margaret Drive and Dunard Street.</value>\n"
+	                + "          </comment>\n"
+	                + "        </nonGeneralPublicComment>\n"
+	                + "        <groupOfLocations>\n"
+	                + "          <locationContainedInGroup>\n"
+	                + "            <tpegpointLocation>\n"
+	                + "              <point>\n"
+	                + "                <pointCoordinates>\n"
+	                + "                  <latitude>55.881869821632336</latitude>\n"
+	                + "                  <longitude>-4.278163228904508</longitude>\n"
+	                + "                </pointCoordinates>\n"
+	                + "                <name>\n"
+	                + "                  <descriptor>\n"
+	                + "                    <value>MARYHILL ROAD</value>\n"
+	                + "                  </descriptor>\n"
+	                + "                  <tpegDescriptorType>localLinkName</tpegDescriptorType>\n"
+	                + "                </name>\n"
+	                + "                <name>\n"
+	                + "                  <descriptor>\n"
+	                + "                    <value>Glasgow</value>\n"
+	                + "                  </descriptor>\n"
+	                + "                  <tpegDescriptorType>townName</tpegDescriptorType>\n"
+	                + "                </name>\n"
+	                + "              </point>\n"
+	                + "            </tpegpointLocation>\n"
+	                + "          </locationContainedInGroup>\n"
+	                + "        </groupOfLocations>\n"
+	                + "        <roadMaintenanceType>roadworks</roadMaintenanceType>\n"
+	                + "      </situationRecord>\n"
+	                + "    </situation>\n",
+	        "  </payloadPublication>\n</glasgow_traffic_incidents>\n");
+
+	public static final SyntheticFeed CAR_PARK = new SyntheticFeed(
+	        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<glasgow_parking modelBaseVersion=\"1.0\">\n\t<payloadPublication lang=\"en\">\n",
+	        "\t\t<situation id=\"CP{ID}\">\n"
+	                + "\t\t\t<situationRecord id=\"CP{ID}_1\">\n"
+	                + "\t\t\t\t<situationRecordCreationTime>2013-10-06T09:12:02</situationRecordCreationTime>\n"
+	                + "\t\t\t\t<situationRecordVersion>1</situationRecordVersion>\n"
+	                + "\t\t\t\t<probabilityOfOccurrence>certain</probabilityOfOccurrence>\n"
+	                + "\t\t\t\t<validity>\n"
+	                + "\t\t\t\t\t<validityStatus>active</validityStatus>\n"
+	                + "\t\t\t\t\t<validityTimeSpecification>\n"
+	                + "\t\t\t\t\t\t<overallStartTime>2013-10-06T09:12:02</overallStartTime>\n"
+	                + "\t\t\t\t\t</validityTimeSpecification>\n"
+	                + "\t\t\t\t</validity>\n"
+	                + "\t\t\t\t<groupOfLocations>\n"
+	                + "\t\t\t\t\t<locationContainedInGroup>\n"
+	                + "\t\t\t\t\t\t<pointByCoordinates>\n"
+	                + "\t\t\t\t\t\t\t<pointCoordinates>\n"
+	                + "\t\t\t\t\t\t\t\t<latitude>55.86577732200993</latitude>\n"
+	                + "\t\t\t\t\t\t\t\t<longitude>-4.252559328401379</longitude>\n"
+	                + "\t\t\t\t\t\t\t</pointCoordinates>\n"
+	                + "\t\t\t\t\t\t</pointByCoordinates>\n"
+	                + "\t\t\t\t\t</locationContainedInGroup>\n"
+	                + "\t\t\t\t</groupOfLocations>\n"
+	                + "\t\t\t\t<carParkIdentity>Concert Square:CP{ID}</carParkIdentity>\n"
+	                + "\t\t\t\t<carParkOccupancy>46</carParkOccupancy>\n"
+	                + "\t\t\t\t<carParkStatus>enoughSpacesAvailable</carParkStatus>\n"
+	                + "\t\t\t\t<occupiedSpaces>327</occupiedSpaces>\n"
+	                + "\t\t\t\t<totalCapacity>698</totalCapacity>\n"
+	                + "\t\t\t</situationRecord>\n"
+	                + "\t\t</situation>\n",
+	        "\t</payloadPublication>\n</glasgow_parking>\n");
+
+	// Width of the generated record id.
+	private static final int ID_DIGITS = 7;
+
+	private final byte[] header;
+	private final byte[][] recordParts;
+	private final byte[] footer;
+
+	/**
+	 * Construct feed.
+	 * 
+	 * @param header
+	 * @param record
+	 *            Record template, every occurrence of {ID} is replaced by the
+	 *            record number.
+	 * @param footer
+	 */
+	public SyntheticFeed(String header, String record, String footer)
+	{
+		this.header = header.getBytes(StandardCharsets.UTF_8);
+		this.footer = footer.getBytes(StandardCharsets.UTF_8);
+
+		String[] parts = record.split(Pattern.quote(ID_MARKER), -1);
+
+		recordParts = new byte[parts.length][];
+		for (int i = 0; i < parts.length; i++)
+		{
+			recordParts[i] = parts[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Size of a document with the specified number of records.
+	 * 
+	 * @param records
+	 * 
+	 * @return The size in bytes.
+	 */
+	public long size(int records)
+	{
+		long recordSize = 0;
+		for (byte[] part : recordParts)
+		{
+			recordSize += part.length;
+		}
+		recordSize += (recordParts.length - 1) * ID_DIGITS;
+
+		return header.length + (recordSize * records) + footer.length;
+	}
+
+	/**
+	 * Open a stream over a document with the specified number of records.
+	 * 
+	 * @param records
+	 * 
+	 * @return The stream.
+	 */
+	public InputStream open(int records)
+	{
+		return new FeedInputStream(records);
+	}
+
+	/**
+	 * Materialise a document, only sensible for small record counts.
+	 * 
+	 * @param records
+	 * 
+	 * @return The document bytes.
+	 */
+	public byte[] toByteArray(int records)
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) size(records));
+
+		byte[] buffer = new byte[8192];
+		InputStream stream = open(records);
+		try
+		{
+			int count;
+			while ((count = stream.read(buffer, 0, buffer.length)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+		}
+		catch (IOException e)
+		{
+			// Can't happen, generated in memory.
+			throw new IllegalStateException(e);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Stream which walks header, records and footer without materialising the
+	 * whole document.
+	 * 
+	 */
+	private class FeedInputStream extends InputStream
+	{
+		private final int records;
+		private final byte[] id = new byte[ID_DIGITS];
+
+		private int record = 0;
+		private int part = -1;
+		private byte[] current = header;
+		private int position = 0;
+
+		public FeedInputStream(int records)
+		{
+			this.records = records;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			byte[] single = new byte[1];
+
+			return read(single, 0, 1) < 0 ? -1 : (single[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException
+		{
+			int total = 0;
+
+			while (total < length && current != null)
+			{
+				int count = Math.min(length - total, current.length - position);
+
+				System.arraycopy(current, position, buffer, offset + total, count);
+
+				position += count;
+				total += count;
+
+				if (position == current.length)
+				{
+					advance();
+				}
+			}
+
+			return (total == 0 && length > 0) ? -1 : total;
+		}
+
+		/**
+		 * Move to the next chunk, alternating record parts with the id.
+		 * 
+		 */
+		private void advance()
+		{
+			position = 0;
+
+			if (current == footer)
+			{
+				current = null;
+			}
+			else if (record >= records)
+			{
+				current = footer;
+			}
+			else if (current == id)
+			{
+				current = recordParts[++part];
+			}
+			else if (part >= 0 && part < recordParts.length - 1)
+			{
+				current = id;
+			}
+			else
+			{
+				// Start of next record.
+				if (part >= 0)
+				{
+					record++;
+				}
+
+				if (record >= records)
+				{
+					current = footer;
+				}
+				else
+				{
+					formatId(record);
+					part = 0;
+					current = recordParts[0];
+				}
+			}
+		}
+
+		/**
+		 * Write zero padded record number into id buffer.
+		 * 
+		 * @param value
+		 */
+		private void formatId(int value)
+		{
+			for (int i = ID_DIGITS - 1; i >= 0; i--)
+			{
+				id[i] = (byte) ('0' + (value % 10));
+				value /= 10;
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParser;
+
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficDataPullParserEx;
+
+/**
+ * StreamParserImpl.fetch over traffic event feeds with both traffic pull
+ * parsers.
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class TrafficDataBenchmark extends AbstractParserBenchmark<TrafficData>
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	public static final String PARSER_SIMPLE = "TrafficDataPullParser";
+	public static final String PARSER_EX = "TrafficDataPullParserEx";
+
+	@Param({ FEED_BUNDLED, "1000", "100000", "1000000" })
+	public String feed;
+
+	@Param({ PARSER_SIMPLE, PARSER_EX })
+	public String parser;
+
+	@Override
+	protected String getFeed()
+	{
+		return feed;
+	}
+
+	@Override
+	protected String getResource()
+	{
+		return XML_TRAFFIC_FILE;
+	}
+
+	@Override
+	protected SyntheticFeed getSyntheticFeed()
+	{
+		return SyntheticFeed.TRAFFIC;
+	}
+
+	@Override
+	protected DataFactory<TrafficData> createDataFactory()
+	{
+		return new TrafficDataFactory();
+	}
+
+	@Override
+	protected PullParser<TrafficData> createPullParser(XmlPullParser xmlPullParser)
+	{
+		if (PARSER_EX.equals(parser))
+		{
+			return new TrafficDataPullParserEx(xmlPullParser);
+		}
+
+		return new TrafficDataPullParser(xmlPullParser);
+	}
+
+	@Benchmark
+	public List<TrafficData> fetch(ParseCounters counters)
+	{
+		return super.fetch(counters);
+	}
+}
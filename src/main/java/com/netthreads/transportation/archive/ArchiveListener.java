@@ -0,0 +1,52 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.archive;
+
+import java.io.File;
+
+/**
+ * Receives progress from an ArchiveReader. Called on the reading thread.
+ * 
+ */
+public interface ArchiveListener
+{
+	/**
+	 * Bytes of the file handed to the parser so far.
+	 * 
+	 * @param file
+	 * @param offset
+	 *            File offset reached.
+	 * @param length
+	 *            File length.
+	 */
+	public void progress(File file, long offset, long length);
+
+	/**
+	 * One document of the file has been parsed.
+	 * 
+	 * @param file
+	 * @param offset
+	 *            File offset of the document start.
+	 * @param state
+	 *            StreamParser state, DONE unless the document failed.
+	 * @param error
+	 *            Cause of the ERROR state, otherwise null.
+	 */
+	public void documentComplete(File file, long offset, int state, Exception error);
+}
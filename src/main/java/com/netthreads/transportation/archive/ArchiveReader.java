@@ -0,0 +1,303 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.archive;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.netthreads.transportation.parser.Compression;
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.RecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+
+/**
+ * Reads archived feed dumps through memory mapped windows.
+ * 
+ * A file holds one document or several concatenated ones, each starting
+ * with an XML declaration. Documents are found by scanning the mapped file
+ * for declarations then parsed one after the other by the stream parser,
+ * straight from the page cache without a FileInputStream in between.
+ * 
+ * Not thread safe, one reader per stream parser.
+ * 
+ */
+public class ArchiveReader<T>
+{
+	// Mapped at a time, well under the 2GB limit of a single mapping.
+	public static final long DEFAULT_WINDOW_SIZE = 256L * 1024 * 1024;
+
+	// Bytes between progress reports.
+	public static final long DEFAULT_PROGRESS_INTERVAL = 16L * 1024 * 1024;
+
+	private static final byte[] DECLARATION = { '<', '?', 'x', 'm', 'l' };
+
+	private final StreamParserImpl<T> streamParser;
+	private final PullParser<T> pullParser;
+	private final DataFactory<T> dataFactory;
+
+	private long windowSize = DEFAULT_WINDOW_SIZE;
+	private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+	private Charset charset = null;
+	private ArchiveListener listener = null;
+
+	/**
+	 * Construct reader.
+	 * 
+	 * @param streamParser
+	 * @param pullParser
+	 *            Created on the stream parser's XmlPullParser.
+	 * @param dataFactory
+	 */
+	public ArchiveReader(StreamParserImpl<T> streamParser, PullParser<T> pullParser, DataFactory<T> dataFactory)
+	{
+		this.streamParser = streamParser;
+		this.pullParser = pullParser;
+		this.dataFactory = dataFactory;
+	}
+
+	/**
+	 * Parse every document of the file.
+	 * 
+	 * @param file
+	 * @param sink
+	 *            Receives the records of all documents. Cancelling stops the
+	 *            file.
+	 * 
+	 * @return The number of documents parsed.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be read.
+	 */
+	public int read(final File file, final RecordSink<T> sink) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try
+		{
+			final long length = channel.size();
+
+			long[] starts = findDocuments(channel, length);
+
+			int documents = 0;
+
+			for (int index = 0; index < starts.length; index++)
+			{
+				long start = starts[index];
+				long end = (index + 1 < starts.length) ? starts[index + 1] : length;
+
+				final MappedInputStream stream = new MappedInputStream(channel, start, end, windowSize);
+
+				RecordSink<T> reporting = sink;
+
+				if (listener != null)
+				{
+					reporting = new RecordSink<T>()
+					{
+						private long reported = 0;
+
+						@Override
+						public int accept(T record)
+						{
+							int action = sink.accept(record);
+
+							long offset = stream.getPosition();
+
+							if (offset - reported >= progressInterval)
+							{
+								listener.progress(file, offset, length);
+
+								reported = offset;
+							}
+
+							return action;
+						}
+					};
+				}
+
+				int state = streamParser.fetch(stream, Compression.NONE, charset, reporting, dataFactory, pullParser);
+
+				documents++;
+
+				if (listener != null)
+				{
+					listener.documentComplete(file, start, state, streamParser.getError());
+					listener.progress(file, end, length);
+				}
+
+				if (state == StreamParser.CANCELLED)
+				{
+					break;
+				}
+			}
+
+			return documents;
+		}
+		finally
+		{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Start offsets of the documents in the file. The first document starts
+	 * at zero, any other starts at an XML declaration.
+	 * 
+	 * @param channel
+	 * @param length
+	 * 
+	 * @return The offsets.
+	 * 
+	 * @throws IOException
+	 */
+	private long[] findDocuments(FileChannel channel, long length) throws IOException
+	{
+		long[] starts = new long[16];
+		int count = 0;
+
+		starts[count++] = 0;
+
+		// Overlap windows so a declaration across the edge is seen.
+		int overlap = DECLARATION.length;
+
+		for (long position = 0; position < length; position += windowSize - overlap)
+		{
+			long size = Math.min(windowSize, length - position);
+
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+
+			int limit = (int) size - overlap;
+
+			for (int index = 0; index < limit; index++)
+			{
+				if (window.get(index) == '<' && isDeclaration(window, index))
+				{
+					long offset = position + index;
+
+					if (offset > starts[count - 1])
+					{
+						if (count == starts.length)
+						{
+							starts = Arrays.copyOf(starts, count * 2);
+						}
+
+						starts[count++] = offset;
+					}
+				}
+			}
+
+			if (position + size >= length)
+			{
+				break;
+			}
+		}
+
+		return Arrays.copyOf(starts, count);
+	}
+
+	/**
+	 * "<?xml" followed by white space, not a processing instruction such as
+	 * "<?xml-stylesheet".
+	 * 
+	 */
+	private boolean isDeclaration(MappedByteBuffer window, int index)
+	{
+		for (int offset = 1; offset < DECLARATION.length; offset++)
+		{
+			if (window.get(index + offset) != DECLARATION[offset])
+			{
+				return false;
+			}
+		}
+
+		byte next = window.get(index + DECLARATION.length);
+
+		return next == ' ' || next == '\t' || next == '\r' || next == '\n';
+	}
+
+	/**
+	 * Bytes mapped at a time.
+	 * 
+	 * @param windowSize
+	 */
+	public void setWindowSize(long windowSize)
+	{
+		if (windowSize <= DECLARATION.length || windowSize > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Invalid window size " + windowSize);
+		}
+
+		this.windowSize = windowSize;
+	}
+
+	public long getWindowSize()
+	{
+		return windowSize;
+	}
+
+	/**
+	 * Bytes between progress reports within a document.
+	 * 
+	 * @param progressInterval
+	 */
+	public void setProgressInterval(long progressInterval)
+	{
+		if (progressInterval < 1)
+		{
+			throw new IllegalArgumentException("Invalid progress interval " + progressInterval);
+		}
+
+		this.progressInterval = progressInterval;
+	}
+
+	public long getProgressInterval()
+	{
+		return progressInterval;
+	}
+
+	/**
+	 * Encoding of the documents, null to detect it from each document.
+	 * 
+	 * @param charset
+	 */
+	public void setCharset(Charset charset)
+	{
+		this.charset = charset;
+	}
+
+	public Charset getCharset()
+	{
+		return charset;
+	}
+
+	public void setListener(ArchiveListener listener)
+	{
+		this.listener = listener;
+	}
+
+	public ArchiveListener getListener()
+	{
+		return listener;
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Input stream over a range of a file, mapped a window at a time so files
+ * larger than a single mapping can be read.
+ * 
+ */
+public class MappedInputStream extends InputStream
+{
+	private final FileChannel channel;
+	private final long end;
+	private final long windowSize;
+
+	private MappedByteBuffer window = null;
+	private long windowStart;
+
+	/**
+	 * Construct stream.
+	 * 
+	 * @param channel
+	 *            Open file, left open by close().
+	 * @param start
+	 *            First byte.
+	 * @param end
+	 *            Byte after the last.
+	 * @param windowSize
+	 *            Bytes mapped at a time, at most Integer.MAX_VALUE.
+	 */
+	public MappedInputStream(FileChannel channel, long start, long end, long windowSize)
+	{
+		if (windowSize < 1 || windowSize > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Invalid window size " + windowSize);
+		}
+
+		this.channel = channel;
+		this.end = end;
+		this.windowSize = windowSize;
+		this.windowStart = start;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!fill())
+		{
+			return -1;
+		}
+
+		return window.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+
+		if (!fill())
+		{
+			return -1;
+		}
+
+		int count = Math.min(length, window.remaining());
+
+		window.get(bytes, offset, count);
+
+		return count;
+	}
+
+	@Override
+	public long skip(long length) throws IOException
+	{
+		long skipped = Math.max(0, Math.min(length, end - getPosition()));
+
+		long target = getPosition() + skipped;
+
+		if (window != null && target <= windowStart + window.limit())
+		{
+			window.position((int) (target - windowStart));
+		}
+		else
+		{
+			// Map again from the target.
+			window = null;
+			windowStart = target;
+		}
+
+		return skipped;
+	}
+
+	@Override
+	public int available()
+	{
+		return (window != null) ? window.remaining() : 0;
+	}
+
+	/**
+	 * File offset of the next byte.
+	 * 
+	 * @return The offset.
+	 */
+	public long getPosition()
+	{
+		return (window != null) ? windowStart + window.position() : windowStart;
+	}
+
+	/**
+	 * Map the next window if the current one is used up.
+	 * 
+	 * @return False at the end of the range.
+	 * 
+	 * @throws IOException
+	 */
+	private boolean fill() throws IOException
+	{
+		if (window != null && window.hasRemaining())
+		{
+			return true;
+		}
+
+		long position = getPosition();
+
+		if (position >= end)
+		{
+			return false;
+		}
+
+		long size = Math.min(windowSize, end - position);
+
+		window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+		windowStart = position;
+
+		return true;
+	}
+}
@@ -0,0 +1,95 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes between two successive fetches of a feed.
+ * 
+ */
+public class DiffResult<T>
+{
+	private final List<T> added = new ArrayList<T>();
+	private final List<T> removed = new ArrayList<T>();
+	private final List<T> changed = new ArrayList<T>();
+	private int unchanged = 0;
+
+	/**
+	 * Records whose id was not in the previous fetch.
+	 * 
+	 * @return The current records.
+	 */
+	public List<T> getAdded()
+	{
+		return added;
+	}
+
+	/**
+	 * Records whose id is no longer in the feed.
+	 * 
+	 * @return The previous records.
+	 */
+	public List<T> getRemoved()
+	{
+		return removed;
+	}
+
+	/**
+	 * Records whose content hash differs from the previous fetch.
+	 * 
+	 * @return The current records.
+	 */
+	public List<T> getChanged()
+	{
+		return changed;
+	}
+
+	/**
+	 * Number of records identical to the previous fetch.
+	 * 
+	 * @return The count.
+	 */
+	public int getUnchangedCount()
+	{
+		return unchanged;
+	}
+
+	/**
+	 * No added, removed or changed records.
+	 * 
+	 * @return True if nothing changed.
+	 */
+	public boolean isEmpty()
+	{
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	void addUnchanged()
+	{
+		unchanged++;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DiffResult [added=" + added.size() + ", removed=" + removed.size() + ", changed=" + changed.size() + ", unchanged=" + unchanged + "]";
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.diff;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netthreads.transportation.parser.FeedRecord;
+
+/**
+ * Compares each fetch of a feed with the previous one, keyed on record id.
+ * 
+ * Only the id and content hash of each record are compared, so a poll where
+ * most records are unchanged costs one map lookup per record. The records of
+ * the last fetch are held until the next update, they must not be recycled
+ * in the meantime.
+ * 
+ * Not thread safe, use one engine per feed from the thread that fetches it.
+ * 
+ */
+public class RecordDiff<T extends FeedRecord>
+{
+	// Records of the last fetch by id, swapped with the spare on update.
+	private Map<String, T> previous = new HashMap<String, T>();
+	private Map<String, T> current = new HashMap<String, T>();
+
+	/**
+	 * Compare records with the previous fetch and make them the new previous
+	 * fetch. If an id occurs more than once the last record wins.
+	 * 
+	 * @param records
+	 * 
+	 * @return The changes.
+	 */
+	public DiffResult<T> update(List<T> records)
+	{
+		DiffResult<T> result = new DiffResult<T>();
+
+		current.clear();
+
+		for (T record : records)
+		{
+			current.put(record.getId(), record);
+		}
+
+		// In feed order.
+		for (T record : records)
+		{
+			if (current.get(record.getId()) != record)
+			{
+				// Replaced by a later record with the same id.
+				continue;
+			}
+
+			T last = previous.remove(record.getId());
+
+			if (last == null)
+			{
+				result.getAdded().add(record);
+			}
+			else if (last.getContentHash() != record.getContentHash())
+			{
+				result.getChanged().add(record);
+			}
+			else
+			{
+				result.addUnchanged();
+			}
+		}
+
+		// Whatever is left has gone from the feed.
+		result.getRemoved().addAll(previous.values());
+
+		Map<String, T> swap = previous;
+		previous = current;
+		current = swap;
+
+		current.clear();
+
+		return result;
+	}
+
+	/**
+	 * Forget the previous fetch, the next update reports every record as
+	 * added.
+	 * 
+	 */
+	public void reset()
+	{
+		previous.clear();
+	}
+
+	/**
+	 * Number of records in the previous fetch.
+	 * 
+	 * @return The count.
+	 */
+	public int size()
+	{
+		return previous.size();
+	}
+
+	/**
+	 * Record of the previous fetch.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null.
+	 */
+	public T get(String id)
+	{
+		return previous.get(id);
+	}
+}
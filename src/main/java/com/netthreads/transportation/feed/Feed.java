@@ -0,0 +1,168 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.feed;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.FetchMetrics;
+import com.netthreads.transportation.parser.MetricsListener;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+
+/**
+ * Registered feed, a source with the parsers which read it.
+ * 
+ * Each feed owns its parsers so feeds can be fetched in parallel. A feed is
+ * only fetched by one thread at a time, a fetch requested while the previous
+ * one is still running returns BUSY at once rather than queueing behind it.
+ * 
+ */
+public class Feed<T>
+{
+	private final String name;
+	private final FeedSource source;
+	private final DataFactory<T> dataFactory;
+	private final StreamParserImpl<T> streamParser;
+	private final PullParser<T> pullParser;
+
+	private final AtomicBoolean running = new AtomicBoolean(false);
+
+	/**
+	 * Construct feed.
+	 * 
+	 * @param name
+	 * @param source
+	 * @param dataFactory
+	 * @param pullParserFactory
+	 * @param factory
+	 *            Shared XML parser factory.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	public Feed(String name, FeedSource source, DataFactory<T> dataFactory, PullParserFactory<T> pullParserFactory, XmlPullParserFactory factory) throws XmlPullParserException
+	{
+		this.name = name;
+		this.source = source;
+		this.dataFactory = dataFactory;
+
+		streamParser = new StreamParserImpl<T>(factory);
+		pullParser = pullParserFactory.createPullParser(streamParser.getParser());
+	}
+
+	/**
+	 * Open source and parse it.
+	 * 
+	 * @return The result.
+	 */
+	public FeedResult<T> fetch()
+	{
+		long start = System.nanoTime();
+
+		if (!running.compareAndSet(false, true))
+		{
+			return new FeedResult<T>(name, StreamParser.BUSY, Collections.<T> emptyList(), 0, null);
+		}
+
+		List<T> records = new ArrayList<T>();
+		int state = StreamParser.ERROR;
+		Exception error = null;
+		boolean parsed = false;
+
+		try
+		{
+			InputStream stream = source.open();
+			try
+			{
+				state = streamParser.fetch(stream, records, dataFactory, pullParser);
+				parsed = true;
+
+				error = streamParser.getError();
+			}
+			finally
+			{
+				stream.close();
+			}
+		}
+		catch (IOException e)
+		{
+			state = StreamParser.ERROR;
+			error = e;
+		}
+		catch (RuntimeException e)
+		{
+			state = StreamParser.ERROR;
+			error = e;
+		}
+		finally
+		{
+			running.set(false);
+		}
+
+		// The parser reports its own fetches, not a source which failed to
+		// open or a sink which threw.
+		MetricsListener listener = streamParser.getMetricsListener();
+		if (listener != null && !parsed)
+		{
+			listener.fetchComplete(new FetchMetrics(state, System.nanoTime() - start, 0, records.size(), 0, error));
+		}
+
+		return new FeedResult<T>(name, state, records, System.nanoTime() - start, error);
+	}
+
+	/**
+	 * Cancel a running fetch.
+	 * 
+	 */
+	public void cancel()
+	{
+		streamParser.cancel();
+	}
+
+	/**
+	 * Report the measurements of each fetch.
+	 * 
+	 * @param metricsListener
+	 *            The listener, e.g. FeedMetrics, or null for none.
+	 */
+	public void setMetricsListener(MetricsListener metricsListener)
+	{
+		streamParser.setMetricsListener(metricsListener);
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public boolean isRunning()
+	{
+		return running.get();
+	}
+}
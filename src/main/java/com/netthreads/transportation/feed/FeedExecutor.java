@@ -0,0 +1,242 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.feed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+
+/**
+ * Fetches registered feeds in parallel on a bounded thread pool.
+ * 
+ * A refresh takes as long as the slowest feed rather than the sum of all of
+ * them. Each feed result is reported as soon as it is ready, the combined
+ * callback follows once every feed of the refresh has finished.
+ * 
+ */
+public class FeedExecutor
+{
+	private final XmlPullParserFactory factory;
+	private final ExecutorService executor;
+
+	private final List<Feed<?>> feeds = new CopyOnWriteArrayList<Feed<?>>();
+
+	/**
+	 * Construct executor.
+	 * 
+	 * @param threads
+	 *            Maximum number of feeds fetched at the same time.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	public FeedExecutor(int threads) throws XmlPullParserException
+	{
+		if (threads < 1)
+		{
+			throw new IllegalArgumentException("Invalid thread count " + threads);
+		}
+
+		factory = StreamParserImpl.createFactory();
+
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new FeedThreadFactory());
+	}
+
+	/**
+	 * Register feed.
+	 * 
+	 * @param name
+	 * @param source
+	 * @param dataFactory
+	 * @param pullParserFactory
+	 * 
+	 * @return The feed.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	public <T> Feed<T> register(String name, FeedSource source, DataFactory<T> dataFactory, PullParserFactory<T> pullParserFactory) throws XmlPullParserException
+	{
+		Feed<T> feed;
+
+		// The factory is not thread safe.
+		synchronized (factory)
+		{
+			feed = new Feed<T>(name, source, dataFactory, pullParserFactory, factory);
+		}
+
+		feeds.add(feed);
+
+		return feed;
+	}
+
+	/**
+	 * Remove feed.
+	 * 
+	 * @param feed
+	 * 
+	 * @return True if it was registered.
+	 */
+	public boolean unregister(Feed<?> feed)
+	{
+		return feeds.remove(feed);
+	}
+
+	/**
+	 * Fetch every registered feed in parallel. Returns at once, results are
+	 * passed to the listener.
+	 * 
+	 * A feed which cannot be started, after shutdown(), completes at once on
+	 * the calling thread with an ERROR result.
+	 * 
+	 * @param listener
+	 */
+	public void fetchAll(final FeedListener listener)
+	{
+		List<Feed<?>> snapshot = new ArrayList<Feed<?>>(feeds);
+
+		if (snapshot.isEmpty())
+		{
+			listener.allComplete(Collections.<FeedResult<?>> emptyList());
+
+			return;
+		}
+
+		final FeedResult<?>[] results = new FeedResult<?>[snapshot.size()];
+		final AtomicInteger remaining = new AtomicInteger(results.length);
+
+		for (int i = 0; i < results.length; i++)
+		{
+			final int index = i;
+			final Feed<?> feed = snapshot.get(i);
+
+			try
+			{
+				executor.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						complete(listener, results, remaining, index, feed.fetch());
+					}
+				});
+			}
+			catch (RejectedExecutionException e)
+			{
+				complete(listener, results, remaining, index, new FeedResult<Object>(feed.getName(), StreamParser.ERROR, Collections.emptyList(), 0, e));
+			}
+		}
+	}
+
+	/**
+	 * Report one feed result, and all of them once it is the last.
+	 * 
+	 */
+	private void complete(FeedListener listener, FeedResult<?>[] results, AtomicInteger remaining, int index, FeedResult<?> result)
+	{
+		results[index] = result;
+
+		try
+		{
+			listener.feedComplete(result);
+		}
+		finally
+		{
+			// The final decrement publishes every result slot.
+			if (remaining.decrementAndGet() == 0)
+			{
+				listener.allComplete(Arrays.asList(results));
+			}
+		}
+	}
+
+	/**
+	 * Registered feeds.
+	 * 
+	 * @return The feeds in registration order.
+	 */
+	public List<Feed<?>> getFeeds()
+	{
+		return Collections.unmodifiableList(feeds);
+	}
+
+	/**
+	 * Stop accepting fetches. Running fetches are cancelled.
+	 * 
+	 */
+	public void shutdown()
+	{
+		executor.shutdown();
+
+		for (Feed<?> feed : feeds)
+		{
+			feed.cancel();
+		}
+	}
+
+	/**
+	 * Wait for running fetches after shutdown.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * 
+	 * @return True if every fetch finished.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Named daemon threads so a forgotten executor does not keep the JVM
+	 * alive.
+	 * 
+	 */
+	private static class FeedThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger(0);
+
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, "feed-" + count.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.feed;
+
+import java.util.List;
+
+/**
+ * Receives feed results from a FeedExecutor. Called on the executor threads.
+ * 
+ */
+public interface FeedListener
+{
+	/**
+	 * One feed has finished. Called as soon as it is done so a slow feed does
+	 * not delay the others.
+	 * 
+	 * @param result
+	 */
+	public void feedComplete(FeedResult<?> result);
+
+	/**
+	 * Every feed of the fetch has finished.
+	 * 
+	 * @param results
+	 *            In registration order.
+	 */
+	public void allComplete(List<FeedResult<?>> results);
+}
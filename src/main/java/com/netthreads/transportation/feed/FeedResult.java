@@ -0,0 +1,97 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.feed;
+
+import java.util.List;
+
+import com.netthreads.transportation.parser.StreamParser;
+
+/**
+ * Outcome of one feed fetch.
+ * 
+ */
+public class FeedResult<T>
+{
+	private final String name;
+	private final int state;
+	private final List<T> records;
+	private final long durationNanos;
+	private final Exception error;
+
+	/**
+	 * Construct result.
+	 * 
+	 * @param name
+	 * @param state
+	 *            StreamParser state code.
+	 * @param records
+	 * @param durationNanos
+	 * @param error
+	 *            Cause of an ERROR state or null.
+	 */
+	public FeedResult(String name, int state, List<T> records, long durationNanos, Exception error)
+	{
+		this.name = name;
+		this.state = state;
+		this.records = records;
+		this.durationNanos = durationNanos;
+		this.error = error;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Records parsed, partial unless the state is DONE.
+	 * 
+	 * @return The records.
+	 */
+	public List<T> getRecords()
+	{
+		return records;
+	}
+
+	public long getDurationNanos()
+	{
+		return durationNanos;
+	}
+
+	public Exception getError()
+	{
+		return error;
+	}
+
+	public boolean isDone()
+	{
+		return state == StreamParser.DONE;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FeedResult [name=" + name + ", state=" + state + ", records=" + records.size() + ", durationNanos=" + durationNanos + ", error=" + error + "]";
+	}
+}
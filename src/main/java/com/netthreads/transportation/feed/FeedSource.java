@@ -0,0 +1,38 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.feed;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Supplies a fresh stream of feed data for each fetch.
+ * 
+ */
+public interface FeedSource
+{
+	/**
+	 * Open stream. The caller closes it.
+	 * 
+	 * @return The stream.
+	 * 
+	 * @throws IOException
+	 */
+	public InputStream open() throws IOException;
+}
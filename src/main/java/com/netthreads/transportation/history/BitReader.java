@@ -0,0 +1,78 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+/**
+ * Reads bits written by BitWriter.
+ * 
+ */
+class BitReader
+{
+	private final byte[] buffer;
+	private final long limit;
+
+	private long position;
+
+	BitReader(byte[] buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+
+		position = (long) offset << 3;
+		limit = (long) (offset + length) << 3;
+	}
+
+	/**
+	 * Read bits into the low bits of a value.
+	 * 
+	 * @param count
+	 *            Number of bits, 0 to 64.
+	 * 
+	 * @return The value.
+	 */
+	long read(int count)
+	{
+		if (position + count > limit)
+		{
+			throw new IllegalStateException("Invalid block, truncated");
+		}
+
+		long value = 0;
+
+		while (count > 0)
+		{
+			int available = 8 - (int) (position & 7);
+			int bits = Math.min(available, count);
+
+			int current = buffer[(int) (position >>> 3)] & 0xff;
+			int chunk = (current >>> (available - bits)) & ((1 << bits) - 1);
+
+			value = (value << bits) | chunk;
+
+			count -= bits;
+			position += bits;
+		}
+
+		return value;
+	}
+
+	boolean readBit()
+	{
+		return read(1) != 0;
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+import java.util.Arrays;
+
+/**
+ * Growing buffer of bits, most significant first.
+ * 
+ */
+class BitWriter
+{
+	private byte[] buffer;
+
+	// Bits written.
+	private long size = 0;
+
+	BitWriter(int capacity)
+	{
+		buffer = new byte[Math.max(capacity, 16)];
+	}
+
+	/**
+	 * Write low bits of value.
+	 * 
+	 * @param value
+	 * @param count
+	 *            Number of bits, 0 to 64.
+	 */
+	void write(long value, int count)
+	{
+		while (count > 0)
+		{
+			int index = (int) (size >>> 3);
+			if (index == buffer.length)
+			{
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+
+			int free = 8 - (int) (size & 7);
+			int bits = Math.min(free, count);
+
+			int chunk = (int) (value >>> (count - bits)) & ((1 << bits) - 1);
+
+			buffer[index] |= (byte) (chunk << (free - bits));
+
+			count -= bits;
+			size += bits;
+		}
+	}
+
+	void writeBit(boolean bit)
+	{
+		write(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * Number of whole bytes holding the bits written.
+	 * 
+	 * @return The size.
+	 */
+	int getByteCount()
+	{
+		return (int) ((size + 7) >>> 3);
+	}
+
+	byte[] getBuffer()
+	{
+		return buffer;
+	}
+}
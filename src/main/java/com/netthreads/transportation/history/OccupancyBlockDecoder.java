@@ -0,0 +1,208 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+/**
+ * Iterates the samples of a block written by OccupancyBlockEncoder, decoding
+ * one at a time.
+ * 
+ * <pre>
+ * OccupancyBlockDecoder decoder = new OccupancyBlockDecoder(block);
+ * while (decoder.next())
+ * {
+ *     decoder.getTimeMillis();
+ *     decoder.getOccupiedSpaces();
+ * }
+ * </pre>
+ * 
+ * A damaged block throws IllegalStateException. Not thread safe.
+ * 
+ */
+public class OccupancyBlockDecoder
+{
+	private final BitReader bits;
+	private final int count;
+
+	private int index = 0;
+
+	private long time;
+	private long delta;
+	private int value;
+
+	// Meaningful bit window of the last XOR read in full.
+	private int leading = 0;
+	private int trailing = 0;
+
+	/**
+	 * Construct decoder.
+	 * 
+	 * @param block
+	 */
+	public OccupancyBlockDecoder(byte[] block)
+	{
+		this(block, 0, block.length);
+	}
+
+	/**
+	 * Construct decoder over part of an array.
+	 * 
+	 * @param block
+	 * @param offset
+	 * @param length
+	 */
+	public OccupancyBlockDecoder(byte[] block, int offset, int length)
+	{
+		int position = offset;
+		int end = offset + length;
+
+		int value = 0;
+		for (int shift = 0;; shift += 7)
+		{
+			if (position == end || shift > 28)
+			{
+				throw new IllegalStateException("Invalid block header");
+			}
+
+			byte b = block[position++];
+			value |= (b & 0x7f) << shift;
+
+			if (b >= 0)
+			{
+				break;
+			}
+		}
+
+		if (value < 0)
+		{
+			throw new IllegalStateException("Invalid block header");
+		}
+
+		count = value;
+		bits = new BitReader(block, position, end - position);
+	}
+
+	/**
+	 * Advance to the next sample.
+	 * 
+	 * @return False when there are no more samples.
+	 */
+	public boolean next()
+	{
+		if (index == count)
+		{
+			return false;
+		}
+
+		if (index == 0)
+		{
+			time = bits.read(64);
+			value = (int) bits.read(32);
+		}
+		else
+		{
+			delta += readTime();
+			time += delta;
+
+			value ^= readValue();
+		}
+
+		index++;
+
+		return true;
+	}
+
+	/**
+	 * Number of samples in the block.
+	 * 
+	 * @return The count.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	public long getTimeMillis()
+	{
+		return time;
+	}
+
+	/**
+	 * Occupancy of the current sample.
+	 * 
+	 * @return Count or ValueParser.INVALID_INT.
+	 */
+	public int getOccupiedSpaces()
+	{
+		return value;
+	}
+
+	private long readTime()
+	{
+		if (!bits.readBit())
+		{
+			return 0;
+		}
+
+		if (!bits.readBit())
+		{
+			return bits.read(7) - 63;
+		}
+
+		if (!bits.readBit())
+		{
+			return bits.read(9) - 255;
+		}
+
+		if (!bits.readBit())
+		{
+			return bits.read(12) - 2047;
+		}
+
+		if (!bits.readBit())
+		{
+			return (int) bits.read(32);
+		}
+
+		return bits.read(64);
+	}
+
+	private int readValue()
+	{
+		if (!bits.readBit())
+		{
+			return 0;
+		}
+
+		if (bits.readBit())
+		{
+			leading = (int) bits.read(5);
+
+			int length = (int) bits.read(5) + 1;
+
+			trailing = 32 - leading - length;
+
+			if (trailing < 0)
+			{
+				throw new IllegalStateException("Invalid block, bad value window");
+			}
+		}
+
+		return (int) bits.read(32 - leading - trailing) << trailing;
+	}
+}
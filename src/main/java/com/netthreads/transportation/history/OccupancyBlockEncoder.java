@@ -0,0 +1,237 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+import com.netthreads.transportation.parser.data.CarParkData;
+
+/**
+ * Streaming encoder of one occupancy series into a compressed block.
+ * 
+ * Follows the Gorilla time series format. The first sample is written in
+ * full. After it each time is written as the change in the interval between
+ * samples, a single bit when a car park is polled at a steady rate. Each
+ * occupancy is XORed with the one before, an unchanged count is a single bit
+ * and a small change only writes the bits which differ.
+ * 
+ * <pre>
+ * time, delta of delta    '0' zero
+ *                         '10' 7 bits, '110' 9 bits, '1110' 12 bits,
+ *                         '11110' 32 bits, '11111' 64 bits
+ * occupancy, XOR          '0' unchanged
+ *                         '10' bits inside the previous window
+ *                         '11' 5 bits leading zeros, 5 bits length - 1, bits
+ * </pre>
+ * 
+ * The block starts with the sample count as a varint. Not thread safe.
+ * 
+ */
+public class OccupancyBlockEncoder
+{
+	private final BitWriter bits;
+
+	private int count = 0;
+
+	private long lastTime;
+	private long lastDelta;
+	private int lastValue;
+
+	// Meaningful bit window of the last XOR written in full.
+	private int leading = -1;
+	private int trailing = 0;
+
+	/**
+	 * Construct encoder.
+	 * 
+	 */
+	public OccupancyBlockEncoder()
+	{
+		this(256);
+	}
+
+	/**
+	 * Construct encoder.
+	 * 
+	 * @param capacity
+	 *            Initial buffer size in bytes.
+	 */
+	public OccupancyBlockEncoder(int capacity)
+	{
+		bits = new BitWriter(capacity);
+	}
+
+	/**
+	 * Add the occupancy of a car park.
+	 * 
+	 * @param timeMillis
+	 * @param data
+	 */
+	public void add(long timeMillis, CarParkData data)
+	{
+		add(timeMillis, data.getOccupiedSpacesValue());
+	}
+
+	/**
+	 * Add sample.
+	 * 
+	 * @param timeMillis
+	 * @param occupiedSpaces
+	 *            Count or ValueParser.INVALID_INT.
+	 */
+	public void add(long timeMillis, int occupiedSpaces)
+	{
+		if (count == 0)
+		{
+			bits.write(timeMillis, 64);
+			bits.write(occupiedSpaces, 32);
+		}
+		else
+		{
+			long delta = timeMillis - lastTime;
+
+			writeTime(delta - lastDelta);
+			writeValue(occupiedSpaces ^ lastValue);
+
+			lastDelta = delta;
+		}
+
+		lastTime = timeMillis;
+		lastValue = occupiedSpaces;
+
+		count++;
+	}
+
+	/**
+	 * Number of samples.
+	 * 
+	 * @return The count.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Encoded size.
+	 * 
+	 * @return The size in bytes.
+	 */
+	public int getByteCount()
+	{
+		return varintSize(count) + bits.getByteCount();
+	}
+
+	/**
+	 * Copy of the block so far, decode with OccupancyBlockDecoder. Samples
+	 * can still be added afterwards.
+	 * 
+	 * @return The block.
+	 */
+	public byte[] toByteArray()
+	{
+		byte[] block = new byte[getByteCount()];
+
+		int position = 0;
+		int value = count;
+		while ((value & ~0x7f) != 0)
+		{
+			block[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		block[position++] = (byte) value;
+
+		System.arraycopy(bits.getBuffer(), 0, block, position, bits.getByteCount());
+
+		return block;
+	}
+
+	private void writeTime(long dod)
+	{
+		if (dod == 0)
+		{
+			bits.write(0, 1);
+		}
+		else if (dod >= -63 && dod <= 64)
+		{
+			bits.write(0x2, 2);
+			bits.write(dod + 63, 7);
+		}
+		else if (dod >= -255 && dod <= 256)
+		{
+			bits.write(0x6, 3);
+			bits.write(dod + 255, 9);
+		}
+		else if (dod >= -2047 && dod <= 2048)
+		{
+			bits.write(0xe, 4);
+			bits.write(dod + 2047, 12);
+		}
+		else if (dod >= Integer.MIN_VALUE && dod <= Integer.MAX_VALUE)
+		{
+			bits.write(0x1e, 5);
+			bits.write(dod, 32);
+		}
+		else
+		{
+			bits.write(0x1f, 5);
+			bits.write(dod, 64);
+		}
+	}
+
+	private void writeValue(int xor)
+	{
+		if (xor == 0)
+		{
+			bits.write(0, 1);
+			return;
+		}
+
+		int xorLeading = Math.min(31, Integer.numberOfLeadingZeros(xor));
+		int xorTrailing = Integer.numberOfTrailingZeros(xor);
+
+		if (leading >= 0 && xorLeading >= leading && xorTrailing >= trailing)
+		{
+			bits.write(0x2, 2);
+			bits.write(xor >>> trailing, 32 - leading - trailing);
+		}
+		else
+		{
+			int length = 32 - xorLeading - xorTrailing;
+
+			bits.write(0x3, 2);
+			bits.write(xorLeading, 5);
+			bits.write(length - 1, 5);
+			bits.write(xor >>> xorTrailing, length);
+
+			leading = xorLeading;
+			trailing = xorTrailing;
+		}
+	}
+
+	private static int varintSize(int value)
+	{
+		int size = 1;
+		while ((value & ~0x7f) != 0)
+		{
+			value >>>= 7;
+			size++;
+		}
+
+		return size;
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+/**
+ * Occupancy of one car park at one time.
+ * 
+ */
+public class OccupancyEntry
+{
+	private final long timeMillis;
+	private final String id;
+	private final int occupiedSpaces;
+	private final int totalCapacity;
+	private final String status;
+
+	/**
+	 * Construct entry.
+	 * 
+	 * @param timeMillis
+	 * @param id
+	 * @param occupiedSpaces
+	 *            Count or ValueParser.INVALID_INT.
+	 * @param totalCapacity
+	 *            Count or ValueParser.INVALID_INT.
+	 * @param status
+	 *            Car park status, may be null.
+	 */
+	public OccupancyEntry(long timeMillis, String id, int occupiedSpaces, int totalCapacity, String status)
+	{
+		this.timeMillis = timeMillis;
+		this.id = id;
+		this.occupiedSpaces = occupiedSpaces;
+		this.totalCapacity = totalCapacity;
+		this.status = status;
+	}
+
+	public long getTimeMillis()
+	{
+		return timeMillis;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public int getOccupiedSpaces()
+	{
+		return occupiedSpaces;
+	}
+
+	public int getTotalCapacity()
+	{
+		return totalCapacity;
+	}
+
+	public String getStatus()
+	{
+		return status;
+	}
+
+	@Override
+	public String toString()
+	{
+		String text = timeMillis + ", " + id + ", " + occupiedSpaces + ", " + totalCapacity + ", " + status;
+
+		return text;
+	}
+}
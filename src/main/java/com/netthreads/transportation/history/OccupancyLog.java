@@ -0,0 +1,624 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.netthreads.transportation.parser.data.CarParkData;
+
+/**
+ * Append only log of car park occupancy, one entry per car park per fetch.
+ * 
+ * The log is a directory of fixed size segment files, each memory mapped.
+ * When an entry does not fit in the active segment it is flushed and a new
+ * segment started. Each entry is written as:
+ * 
+ * <pre>
+ * length        int, of the payload
+ * checksum      int, CRC32 of the payload
+ * payload       time long, occupied spaces int, total capacity int,
+ *               id and status as short length (-1 for null) and UTF-8
+ * </pre>
+ * 
+ * Unused space is zero, a zero length marks the end of a segment. On open the
+ * tail of the last segment is checked and anything after the last whole
+ * entry, such as an entry cut short by a crash, is discarded.
+ * 
+ * Each segment keeps the range of times it holds so a scan only reads the
+ * segments overlapping its window.
+ * 
+ * Thread safe.
+ * 
+ */
+public class OccupancyLog
+{
+	public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+	private static final int MAGIC = 0x54584f4c;
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 8;
+	private static final int ENTRY_HEADER_SIZE = 8;
+	private static final int MINIMUM_PAYLOAD_SIZE = 20;
+	private static final int MINIMUM_SEGMENT_SIZE = 1024;
+
+	private static final String SEGMENT_PREFIX = "occupancy-";
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File directory;
+	private final int segmentSize;
+
+	private final List<Segment> segments = new ArrayList<Segment>();
+
+	private final CRC32 crc = new CRC32();
+	private final ByteBuffer scratch;
+
+	private boolean closed = false;
+
+	// Statistics.
+	private long appended = 0;
+	private long recovered = 0;
+	private long discardedBytes = 0;
+
+	/**
+	 * Open log with the default segment size.
+	 * 
+	 * @param directory
+	 * 
+	 * @throws IOException
+	 */
+	public OccupancyLog(File directory) throws IOException
+	{
+		this(directory, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Open log, creating the directory if needed.
+	 * 
+	 * @param directory
+	 * @param segmentSize
+	 *            Size of new segment files in bytes.
+	 * 
+	 * @throws IOException
+	 */
+	public OccupancyLog(File directory, int segmentSize) throws IOException
+	{
+		if (segmentSize < MINIMUM_SEGMENT_SIZE)
+		{
+			throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Unable to create " + directory);
+		}
+
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+
+		scratch = ByteBuffer.allocate(MINIMUM_SEGMENT_SIZE - HEADER_SIZE - ENTRY_HEADER_SIZE);
+
+		open();
+	}
+
+	/**
+	 * Append the occupancy of every car park from a fetch and flush it to
+	 * disk.
+	 * 
+	 * @param timeMillis
+	 *            Time of the fetch.
+	 * @param list
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void append(long timeMillis, List<CarParkData> list) throws IOException
+	{
+		checkOpen();
+
+		for (CarParkData data : list)
+		{
+			write(timeMillis, data.getId(), data.getOccupiedSpacesValue(), data.getTotalCapacityValue(), data.getCarParkStatus());
+		}
+
+		flush();
+	}
+
+	/**
+	 * Append one entry. Not flushed to disk until flush(), but visible to
+	 * scans and safe from a process crash once written.
+	 * 
+	 * @param entry
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void append(OccupancyEntry entry) throws IOException
+	{
+		checkOpen();
+
+		write(entry.getTimeMillis(), entry.getId(), entry.getOccupiedSpaces(), entry.getTotalCapacity(), entry.getStatus());
+	}
+
+	/**
+	 * Flush the active segment to disk.
+	 * 
+	 */
+	public synchronized void flush()
+	{
+		checkOpen();
+
+		if (!segments.isEmpty())
+		{
+			active().buffer.force();
+		}
+	}
+
+	/**
+	 * Entries in a time window, both ends included.
+	 * 
+	 * @param id
+	 *            Car park id, null for every car park.
+	 * @param fromMillis
+	 * @param toMillis
+	 * 
+	 * @return The entries in the order written.
+	 */
+	public synchronized List<OccupancyEntry> scan(String id, long fromMillis, long toMillis)
+	{
+		checkOpen();
+
+		List<OccupancyEntry> result = new ArrayList<OccupancyEntry>();
+
+		byte[] key = (id != null) ? id.getBytes(UTF_8) : null;
+
+		for (Segment segment : segments)
+		{
+			if (segment.count == 0 || segment.maxTime < fromMillis || segment.minTime > toMillis)
+			{
+				continue;
+			}
+
+			ByteBuffer buffer = segment.buffer;
+
+			int position = HEADER_SIZE;
+			while (position < segment.position)
+			{
+				int length = buffer.getInt(position);
+				int payload = position + ENTRY_HEADER_SIZE;
+
+				long time = buffer.getLong(payload);
+
+				if (time >= fromMillis && time <= toMillis && (key == null || matches(buffer, payload + 16, key)))
+				{
+					result.add(decode(buffer, payload));
+				}
+
+				position = payload + length;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Number of segment files.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized int getSegmentCount()
+	{
+		return segments.size();
+	}
+
+	/**
+	 * Number of entries appended since open.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getAppended()
+	{
+		return appended;
+	}
+
+	/**
+	 * Number of entries found on open.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getRecovered()
+	{
+		return recovered;
+	}
+
+	/**
+	 * Bytes of partial or damaged entries discarded on open.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getDiscardedBytes()
+	{
+		return discardedBytes;
+	}
+
+	/**
+	 * Flush and release the segments. The log can not be used afterwards,
+	 * appending, flushing or scanning throws IllegalStateException. Closing
+	 * again does nothing.
+	 * 
+	 */
+	public synchronized void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+
+		flush();
+
+		segments.clear();
+
+		closed = true;
+	}
+
+	private void checkOpen()
+	{
+		if (closed)
+		{
+			throw new IllegalStateException("Log closed");
+		}
+	}
+
+	/**
+	 * Load existing segments and recover the tail of the last.
+	 * 
+	 */
+	private void open() throws IOException
+	{
+		File[] files = directory.listFiles();
+
+		List<File> segmentFiles = new ArrayList<File>();
+		for (File file : files != null ? files : new File[0])
+		{
+			String name = file.getName();
+
+			if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+			{
+				segmentFiles.add(file);
+			}
+		}
+
+		// Zero padded sequence numbers sort by name.
+		File[] sorted = segmentFiles.toArray(new File[segmentFiles.size()]);
+		Arrays.sort(sorted);
+
+		for (int index = 0; index < sorted.length; index++)
+		{
+			File file = sorted[index];
+			boolean last = index == sorted.length - 1;
+
+			String name = file.getName();
+			long sequence = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+
+			Segment segment = map(file, sequence, (int) Math.max(HEADER_SIZE, Math.min(Integer.MAX_VALUE, file.length())));
+
+			MappedByteBuffer buffer = segment.buffer;
+
+			if (last && buffer.getInt(0) == 0 && buffer.getInt(4) == 0)
+			{
+				// Crashed while starting the segment.
+				buffer.putInt(0, MAGIC);
+				buffer.putInt(4, VERSION);
+			}
+
+			if (buffer.getInt(0) != MAGIC)
+			{
+				throw new IOException("Invalid segment " + file);
+			}
+
+			if (buffer.getInt(4) != VERSION)
+			{
+				throw new IOException("Invalid segment version " + buffer.getInt(4) + " in " + file);
+			}
+
+			recover(segment, last);
+
+			segments.add(segment);
+		}
+	}
+
+	/**
+	 * Find the end of the whole entries in a segment. In the tail segment
+	 * anything which follows is zeroed, ready for the next append.
+	 * 
+	 */
+	private void recover(Segment segment, boolean tail)
+	{
+		MappedByteBuffer buffer = segment.buffer;
+		int capacity = buffer.capacity();
+
+		int position = HEADER_SIZE;
+		while (position + ENTRY_HEADER_SIZE <= capacity)
+		{
+			int length = buffer.getInt(position);
+			int payload = position + ENTRY_HEADER_SIZE;
+
+			if (length < MINIMUM_PAYLOAD_SIZE || length > capacity - payload || !valid(buffer, payload, length, buffer.getInt(position + 4)))
+			{
+				break;
+			}
+
+			segment.add(buffer.getLong(payload));
+			recovered++;
+
+			position = payload + length;
+		}
+
+		segment.position = position;
+
+		if (!tail)
+		{
+			return;
+		}
+
+		int end = position;
+		while (end < capacity && buffer.get(end) == 0)
+		{
+			end++;
+		}
+
+		if (end < capacity)
+		{
+			// Anything after the last whole entry is a partial write.
+			int last = capacity;
+			while (buffer.get(last - 1) == 0)
+			{
+				last--;
+			}
+
+			discardedBytes += last - position;
+
+			for (int index = position; index < last; index++)
+			{
+				buffer.put(index, (byte) 0);
+			}
+
+			buffer.force();
+		}
+	}
+
+	private boolean valid(ByteBuffer buffer, int payload, int length, int checksum)
+	{
+		ByteBuffer content = buffer.duplicate();
+		content.limit(payload + length);
+		content.position(payload);
+
+		crc.reset();
+		crc.update(content);
+
+		return (int) crc.getValue() == checksum;
+	}
+
+	/**
+	 * Write entry, lock held.
+	 * 
+	 */
+	private void write(long timeMillis, String id, int occupiedSpaces, int totalCapacity, String status) throws IOException
+	{
+		if (id == null)
+		{
+			throw new IllegalArgumentException("Invalid entry, no id");
+		}
+
+		scratch.clear();
+		scratch.putLong(timeMillis);
+		scratch.putInt(occupiedSpaces);
+		scratch.putInt(totalCapacity);
+		putString(id);
+		putString(status);
+
+		int length = scratch.position();
+
+		crc.reset();
+		crc.update(scratch.array(), 0, length);
+
+		Segment segment = segments.isEmpty() ? null : active();
+
+		if (segment == null || segment.position + ENTRY_HEADER_SIZE + length > segment.buffer.capacity())
+		{
+			segment = roll(segment);
+		}
+
+		MappedByteBuffer buffer = segment.buffer;
+		int position = segment.position;
+
+		// Payload first, so a torn write leaves a zero or bad length.
+		for (int index = 0; index < length; index++)
+		{
+			buffer.put(position + ENTRY_HEADER_SIZE + index, scratch.get(index));
+		}
+
+		buffer.putInt(position + 4, (int) crc.getValue());
+		buffer.putInt(position, length);
+
+		segment.position = position + ENTRY_HEADER_SIZE + length;
+		segment.add(timeMillis);
+
+		appended++;
+	}
+
+	private void putString(String value)
+	{
+		if (value == null)
+		{
+			scratch.putShort((short) -1);
+			return;
+		}
+
+		byte[] bytes = value.getBytes(UTF_8);
+
+		if (bytes.length > scratch.remaining() - 2)
+		{
+			throw new IllegalArgumentException("Invalid entry, value too long " + value);
+		}
+
+		scratch.putShort((short) bytes.length);
+		scratch.put(bytes);
+	}
+
+	/**
+	 * Flush the full segment and start the next.
+	 * 
+	 */
+	private Segment roll(Segment full) throws IOException
+	{
+		long sequence = 1;
+
+		if (full != null)
+		{
+			full.buffer.force();
+
+			sequence = full.sequence + 1;
+		}
+
+		File file = new File(directory, String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+
+		Segment segment = map(file, sequence, segmentSize);
+
+		segment.buffer.putInt(0, MAGIC);
+		segment.buffer.putInt(4, VERSION);
+		segment.buffer.force();
+
+		segments.add(segment);
+
+		return segment;
+	}
+
+	private static Segment map(File file, long sequence, int size) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try
+		{
+			// Mapping past the end extends the file with zeroes.
+			MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+			return new Segment(sequence, buffer);
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+	}
+
+	private Segment active()
+	{
+		return segments.get(segments.size() - 1);
+	}
+
+	private static boolean matches(ByteBuffer buffer, int position, byte[] key)
+	{
+		if (buffer.getShort(position) != key.length)
+		{
+			return false;
+		}
+
+		for (int index = 0; index < key.length; index++)
+		{
+			if (buffer.get(position + 2 + index) != key[index])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static OccupancyEntry decode(ByteBuffer buffer, int payload)
+	{
+		long time = buffer.getLong(payload);
+		int occupiedSpaces = buffer.getInt(payload + 8);
+		int totalCapacity = buffer.getInt(payload + 12);
+
+		int position = payload + 16;
+
+		String id = getString(buffer, position);
+		position += 2 + Math.max(0, buffer.getShort(position));
+
+		String status = getString(buffer, position);
+
+		return new OccupancyEntry(time, id, occupiedSpaces, totalCapacity, status);
+	}
+
+	private static String getString(ByteBuffer buffer, int position)
+	{
+		int length = buffer.getShort(position);
+
+		if (length < 0)
+		{
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		for (int index = 0; index < length; index++)
+		{
+			bytes[index] = buffer.get(position + 2 + index);
+		}
+
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Mapped segment file with its write position and time range.
+	 * 
+	 */
+	private static class Segment
+	{
+		private final long sequence;
+		private final MappedByteBuffer buffer;
+
+		private int position = HEADER_SIZE;
+		private int count = 0;
+		private long minTime = Long.MAX_VALUE;
+		private long maxTime = Long.MIN_VALUE;
+
+		private Segment(long sequence, MappedByteBuffer buffer)
+		{
+			this.sequence = sequence;
+			this.buffer = buffer;
+		}
+
+		private void add(long time)
+		{
+			minTime = Math.min(minTime, time);
+			maxTime = Math.max(maxTime, time);
+
+			count++;
+		}
+	}
+}
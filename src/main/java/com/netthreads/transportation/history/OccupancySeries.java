@@ -0,0 +1,184 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.history;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netthreads.transportation.parser.data.CarParkData;
+
+/**
+ * Compressed occupancy history of every car park, one series per car park id.
+ * 
+ * Each fetch is appended to the open block of every series. A block is sealed
+ * once it holds the configured number of samples, a day at one minute
+ * resolution by default, and a new one started.
+ * 
+ * Thread safe.
+ * 
+ */
+public class OccupancySeries
+{
+	public static final int DEFAULT_SAMPLES_PER_BLOCK = 1440;
+
+	private final int samplesPerBlock;
+
+	private final Map<String, Series> series = new HashMap<String, Series>();
+
+	// Statistics.
+	private long samples = 0;
+
+	/**
+	 * Construct series with the default block size.
+	 * 
+	 */
+	public OccupancySeries()
+	{
+		this(DEFAULT_SAMPLES_PER_BLOCK);
+	}
+
+	/**
+	 * Construct series.
+	 * 
+	 * @param samplesPerBlock
+	 */
+	public OccupancySeries(int samplesPerBlock)
+	{
+		if (samplesPerBlock < 1)
+		{
+			throw new IllegalArgumentException("Invalid samples per block " + samplesPerBlock);
+		}
+
+		this.samplesPerBlock = samplesPerBlock;
+	}
+
+	/**
+	 * Append the occupancy of every car park from a fetch.
+	 * 
+	 * @param timeMillis
+	 *            Time of the fetch.
+	 * @param list
+	 */
+	public synchronized void append(long timeMillis, List<CarParkData> list)
+	{
+		for (CarParkData data : list)
+		{
+			append(timeMillis, data);
+		}
+	}
+
+	/**
+	 * Append the occupancy of one car park.
+	 * 
+	 * @param timeMillis
+	 * @param data
+	 */
+	public synchronized void append(long timeMillis, CarParkData data)
+	{
+		Series entry = series.get(data.getId());
+		if (entry == null)
+		{
+			entry = new Series();
+			series.put(data.getId(), entry);
+		}
+
+		if (entry.open.getCount() == samplesPerBlock)
+		{
+			entry.sealed.add(entry.open.toByteArray());
+			entry.open = new OccupancyBlockEncoder();
+		}
+
+		entry.open.add(timeMillis, data);
+
+		samples++;
+	}
+
+	/**
+	 * Blocks of a car park, oldest first, the last one a copy of the open
+	 * block.
+	 * 
+	 * @param id
+	 * 
+	 * @return The blocks, empty if the car park is unknown.
+	 */
+	public synchronized List<byte[]> getBlocks(String id)
+	{
+		List<byte[]> blocks = new ArrayList<byte[]>();
+
+		Series entry = series.get(id);
+		if (entry != null)
+		{
+			blocks.addAll(entry.sealed);
+			blocks.add(entry.open.toByteArray());
+		}
+
+		return blocks;
+	}
+
+	/**
+	 * Car park ids with a series.
+	 * 
+	 * @return The ids.
+	 */
+	public synchronized List<String> getIds()
+	{
+		return new ArrayList<String>(series.keySet());
+	}
+
+	/**
+	 * Number of samples appended.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getSampleCount()
+	{
+		return samples;
+	}
+
+	/**
+	 * Compressed size of every series.
+	 * 
+	 * @return The size in bytes.
+	 */
+	public synchronized long getByteCount()
+	{
+		long bytes = 0;
+
+		for (Series entry : series.values())
+		{
+			for (byte[] block : entry.sealed)
+			{
+				bytes += block.length;
+			}
+
+			bytes += entry.open.getByteCount();
+		}
+
+		return bytes;
+	}
+
+	private static class Series
+	{
+		private final List<byte[]> sealed = new ArrayList<byte[]>();
+
+		private OccupancyBlockEncoder open = new OccupancyBlockEncoder();
+	}
+}
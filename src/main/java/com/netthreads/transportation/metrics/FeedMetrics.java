@@ -0,0 +1,297 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.netthreads.transportation.parser.FetchMetrics;
+import com.netthreads.transportation.parser.MetricsListener;
+import com.netthreads.transportation.parser.StreamParser;
+
+/**
+ * Running totals of the fetches of one feed, published as an MXBean.
+ * 
+ * Set as the metrics listener of the feed's stream parser, the totals are
+ * updated once per fetch so measuring costs a few counters per fetch on top
+ * of the parser's own byte count and timing.
+ * 
+ * Thread safe.
+ * 
+ */
+public class FeedMetrics implements MetricsListener, FeedMetricsMXBean
+{
+	public static final String DOMAIN = "com.netthreads.transportation";
+
+	private static final String UNKNOWN_CAUSE = "unknown";
+
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	private final String name;
+	private final Clock clock;
+
+	private long fetches = 0;
+	private long errors = 0;
+	private long cancelled = 0;
+	private final Map<String, Long> errorsByCause = new TreeMap<String, Long>();
+	private String lastError = null;
+
+	private long records = 0;
+	private long tokens = 0;
+	private long bytes = 0;
+	private int lastRecords = 0;
+
+	private long lastDurationNanos = 0;
+	private long maxDurationNanos = 0;
+	private long totalDurationNanos = 0;
+
+	private long lastSuccessTime = 0;
+
+	/**
+	 * Construct metrics.
+	 * 
+	 * @param name
+	 *            Feed name.
+	 */
+	public FeedMetrics(String name)
+	{
+		this(name, Clock.systemUTC());
+	}
+
+	/**
+	 * Construct metrics.
+	 * 
+	 * @param name
+	 *            Feed name.
+	 * @param clock
+	 *            Time source for the last success time.
+	 */
+	public FeedMetrics(String name, Clock clock)
+	{
+		this.name = name;
+		this.clock = clock;
+	}
+
+	@Override
+	public synchronized void fetchComplete(FetchMetrics metrics)
+	{
+		fetches++;
+
+		records += metrics.getRecords();
+		tokens += metrics.getTokens();
+		bytes += metrics.getBytes();
+		lastRecords = metrics.getRecords();
+
+		lastDurationNanos = metrics.getDurationNanos();
+		maxDurationNanos = Math.max(maxDurationNanos, lastDurationNanos);
+		totalDurationNanos += lastDurationNanos;
+
+		switch (metrics.getState())
+		{
+			case StreamParser.DONE:
+				lastSuccessTime = clock.millis();
+				break;
+
+			case StreamParser.CANCELLED:
+				cancelled++;
+				break;
+
+			case StreamParser.ERROR:
+				errors++;
+
+				Exception error = metrics.getError();
+
+				String cause = (error != null) ? error.getClass().getSimpleName() : UNKNOWN_CAUSE;
+
+				Long count = errorsByCause.get(cause);
+				errorsByCause.put(cause, count != null ? count + 1 : 1L);
+
+				lastError = (error != null) ? error.toString() : cause;
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Register with the platform MBean server.
+	 * 
+	 * @return The name registered.
+	 * 
+	 * @throws JMException
+	 */
+	public ObjectName register() throws JMException
+	{
+		return register(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	/**
+	 * Register with an MBean server.
+	 * 
+	 * @param server
+	 * 
+	 * @return The name registered.
+	 * 
+	 * @throws JMException
+	 */
+	public ObjectName register(MBeanServer server) throws JMException
+	{
+		ObjectName objectName = getObjectName();
+
+		server.registerMBean(this, objectName);
+
+		return objectName;
+	}
+
+	/**
+	 * Unregister from an MBean server.
+	 * 
+	 * @param server
+	 * 
+	 * @throws JMException
+	 */
+	public void unregister(MBeanServer server) throws JMException
+	{
+		server.unregisterMBean(getObjectName());
+	}
+
+	/**
+	 * JMX name, e.g. com.netthreads.transportation:type=FeedMetrics,name=traffic
+	 * 
+	 * @return The name.
+	 * 
+	 * @throws JMException
+	 */
+	public ObjectName getObjectName() throws JMException
+	{
+		return new ObjectName(DOMAIN + ":type=FeedMetrics,name=" + ObjectName.quote(name));
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	@Override
+	public synchronized long getFetchCount()
+	{
+		return fetches;
+	}
+
+	@Override
+	public synchronized long getErrorCount()
+	{
+		return errors;
+	}
+
+	@Override
+	public synchronized long getCancelledCount()
+	{
+		return cancelled;
+	}
+
+	@Override
+	public synchronized Map<String, Long> getErrorsByCause()
+	{
+		return new TreeMap<String, Long>(errorsByCause);
+	}
+
+	@Override
+	public synchronized String getLastError()
+	{
+		return lastError;
+	}
+
+	@Override
+	public synchronized long getRecordCount()
+	{
+		return records;
+	}
+
+	@Override
+	public synchronized long getTokenCount()
+	{
+		return tokens;
+	}
+
+	@Override
+	public synchronized long getByteCount()
+	{
+		return bytes;
+	}
+
+	@Override
+	public synchronized int getLastRecordCount()
+	{
+		return lastRecords;
+	}
+
+	@Override
+	public synchronized double getLastDurationMillis()
+	{
+		return lastDurationNanos / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public synchronized double getMaxDurationMillis()
+	{
+		return maxDurationNanos / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public synchronized double getMeanDurationMillis()
+	{
+		return fetches > 0 ? totalDurationNanos / NANOS_PER_MILLI / fetches : 0;
+	}
+
+	@Override
+	public synchronized long getLastSuccessTime()
+	{
+		return lastSuccessTime;
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		fetches = 0;
+		errors = 0;
+		cancelled = 0;
+		errorsByCause.clear();
+		lastError = null;
+
+		records = 0;
+		tokens = 0;
+		bytes = 0;
+		lastRecords = 0;
+
+		lastDurationNanos = 0;
+		maxDurationNanos = 0;
+		totalDurationNanos = 0;
+
+		lastSuccessTime = 0;
+	}
+}
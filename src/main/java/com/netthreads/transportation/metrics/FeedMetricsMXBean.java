@@ -0,0 +1,73 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the fetch measurements of one feed.
+ * 
+ */
+public interface FeedMetricsMXBean
+{
+	public String getName();
+
+	public long getFetchCount();
+
+	public long getErrorCount();
+
+	public long getCancelledCount();
+
+	/**
+	 * Failed fetches by exception class, e.g. XmlPullParserException or
+	 * SocketTimeoutException.
+	 * 
+	 * @return Count by cause.
+	 */
+	public Map<String, Long> getErrorsByCause();
+
+	public String getLastError();
+
+	public long getRecordCount();
+
+	public long getTokenCount();
+
+	public long getByteCount();
+
+	public int getLastRecordCount();
+
+	public double getLastDurationMillis();
+
+	public double getMaxDurationMillis();
+
+	public double getMeanDurationMillis();
+
+	/**
+	 * Time of the last fetch which completed.
+	 * 
+	 * @return Milliseconds since the epoch, 0 if none.
+	 */
+	public long getLastSuccessTime();
+
+	/**
+	 * Clear the measurements.
+	 * 
+	 */
+	public void reset();
+}
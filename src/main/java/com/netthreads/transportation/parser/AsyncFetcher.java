@@ -0,0 +1,322 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+/**
+ * Runs fetches of one stream parser on an executor and returns a future of
+ * the result.
+ * 
+ * A fetch can be given a deadline and can be cancelled from any thread, with
+ * cancel() or by cancelling the future. Cancelling stops the parse loop,
+ * interrupts a read blocked on the stream and closes the stream. The future
+ * then completes, or is already cancelled, and the result carries the records
+ * parsed so far.
+ * 
+ * The stream parser runs one fetch at a time, a fetch requested while another
+ * is running completes at once with BUSY.
+ * 
+ */
+public class AsyncFetcher<T>
+{
+	private final StreamParser<T> streamParser;
+	private final Executor executor;
+	
+	private final AtomicReference<Fetch> current = new AtomicReference<Fetch>();
+	
+	/**
+	 * Construct fetcher.
+	 * 
+	 * @param streamParser
+	 * @param executor
+	 *            Runs the parse.
+	 */
+	public AsyncFetcher(StreamParser<T> streamParser, Executor executor)
+	{
+		this.streamParser = streamParser;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Fetch without a deadline.
+	 * 
+	 * @param stream
+	 * @param dataFactory
+	 * @param pullParser
+	 * 
+	 * @return The future result.
+	 */
+	public CompletableFuture<FetchResult<T>> fetch(InputStream stream, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		return fetch(stream, dataFactory, pullParser, 0, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Fetch, cancelling if not finished by the deadline.
+	 * 
+	 * @param stream
+	 *            Closed when the fetch finishes.
+	 * @param dataFactory
+	 * @param pullParser
+	 * @param timeout
+	 *            Zero or less for no deadline.
+	 * @param unit
+	 * 
+	 * @return The future result.
+	 */
+	public CompletableFuture<FetchResult<T>> fetch(InputStream stream, DataFactory<T> dataFactory, PullParser<T> pullParser, long timeout, TimeUnit unit)
+	{
+		final Fetch fetch = new Fetch(new CancellableInputStream(stream));
+		
+		if (!current.compareAndSet(null, fetch))
+		{
+			return CompletableFuture.completedFuture(new FetchResult<T>(StreamParser.BUSY, Collections.<T> emptyList(), false, null));
+		}
+		
+		// Cancelling the future cancels the fetch.
+		fetch.future.whenComplete(new BiConsumer<FetchResult<T>, Throwable>()
+		{
+			@Override
+			public void accept(FetchResult<T> result, Throwable throwable)
+			{
+				if (fetch.future.isCancelled())
+				{
+					fetch.cancel(false);
+				}
+			}
+		});
+		
+		if (timeout > 0)
+		{
+			fetch.deadline = Deadlines.SCHEDULER.schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					fetch.cancel(true);
+				}
+			}, timeout, unit);
+		}
+		
+		try
+		{
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					fetch.run(dataFactory, pullParser);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			fetch.finish();
+			
+			fetch.future.completeExceptionally(e);
+		}
+		
+		return fetch.future;
+	}
+	
+	/**
+	 * Cancel the running fetch, if any.
+	 * 
+	 */
+	public void cancel()
+	{
+		Fetch fetch = current.get();
+		
+		if (fetch != null)
+		{
+			fetch.cancel(false);
+		}
+	}
+	
+	/**
+	 * Is a fetch running.
+	 * 
+	 * @return True if running.
+	 */
+	public boolean isBusy()
+	{
+		return current.get() != null;
+	}
+	
+	/**
+	 * One fetch and its outcome.
+	 * 
+	 * The outcome leaves RUNNING once, either cancelled or finished. Only a
+	 * cancel which gets there first touches the stream parser, under the lock
+	 * finish() takes, so a late cancel cannot reach the next fetch.
+	 * 
+	 */
+	private class Fetch
+	{
+		private static final int RUNNING = 0;
+		private static final int CANCELLED = 1;
+		private static final int TIMED_OUT = 2;
+		private static final int FINISHED = 3;
+		
+		private final CancellableInputStream stream;
+		private final CompletableFuture<FetchResult<T>> future = new CompletableFuture<FetchResult<T>>();
+		
+		private final AtomicInteger outcome = new AtomicInteger(RUNNING);
+		private volatile ScheduledFuture<?> deadline = null;
+		
+		private Fetch(CancellableInputStream stream)
+		{
+			this.stream = stream;
+		}
+		
+		private void run(DataFactory<T> dataFactory, PullParser<T> pullParser)
+		{
+			List<T> records = new ArrayList<T>();
+			int state = StreamParser.ERROR;
+			Exception error = null;
+			
+			int result;
+			
+			try
+			{
+				if (outcome.get() == RUNNING)
+				{
+					state = streamParser.fetch(stream, records, dataFactory, pullParser);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				// Thrown while opening the stream, the parse records its own.
+				error = e;
+			}
+			finally
+			{
+				result = finish();
+			}
+			
+			// A cancelled read surfaces as a parse error.
+			if (result != FINISHED)
+			{
+				state = StreamParser.CANCELLED;
+			}
+			else if (state != StreamParser.DONE && state != StreamParser.CANCELLED)
+			{
+				state = StreamParser.ERROR;
+				
+				if (error == null)
+				{
+					error = streamParser.getError();
+				}
+			}
+			
+			future.complete(new FetchResult<T>(state, records, result == TIMED_OUT, error));
+		}
+		
+		private void cancel(boolean byDeadline)
+		{
+			synchronized (this)
+			{
+				if (outcome.compareAndSet(RUNNING, byDeadline ? TIMED_OUT : CANCELLED))
+				{
+					streamParser.cancel();
+					stream.cancel();
+				}
+			}
+		}
+		
+		/**
+		 * Settle the outcome and release the stream and the fetcher.
+		 * 
+		 * @return The outcome.
+		 */
+		private int finish()
+		{
+			int result;
+			
+			synchronized (this)
+			{
+				outcome.compareAndSet(RUNNING, FINISHED);
+				
+				result = outcome.get();
+			}
+			
+			ScheduledFuture<?> pending = deadline;
+			
+			if (pending != null)
+			{
+				pending.cancel(false);
+			}
+			
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing more to read.
+			}
+			
+			current.compareAndSet(this, null);
+			
+			return result;
+		}
+	}
+	
+	/**
+	 * Shared timer for fetch deadlines, created on first use.
+	 * 
+	 */
+	private static class Deadlines
+	{
+		private static final ScheduledThreadPoolExecutor SCHEDULER;
+		
+		static
+		{
+			SCHEDULER = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "fetch-deadline");
+					
+					thread.setDaemon(true);
+					
+					return thread;
+				}
+			});
+			
+			SCHEDULER.setRemoveOnCancelPolicy(true);
+		}
+	}
+}
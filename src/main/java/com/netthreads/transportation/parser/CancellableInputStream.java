@@ -0,0 +1,151 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Input stream whose reads can be cancelled from another thread.
+ * 
+ * Cancelling interrupts a thread blocked in read() and closes the underlying
+ * stream, which also unblocks socket reads that ignore interrupts. Every read
+ * after cancel() throws InterruptedIOException.
+ * 
+ */
+public class CancellableInputStream extends FilterInputStream
+{
+	private volatile boolean cancelled = false;
+	
+	// Thread currently inside read, guarded by this.
+	private Thread reader = null;
+	
+	/**
+	 * Construct stream.
+	 * 
+	 * @param stream
+	 */
+	public CancellableInputStream(InputStream stream)
+	{
+		super(stream);
+	}
+	
+	@Override
+	public int read() throws IOException
+	{
+		begin();
+		try
+		{
+			return super.read();
+		}
+		finally
+		{
+			end();
+		}
+	}
+	
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		begin();
+		try
+		{
+			return super.read(buffer, offset, length);
+		}
+		finally
+		{
+			end();
+		}
+	}
+	
+	@Override
+	public long skip(long count) throws IOException
+	{
+		begin();
+		try
+		{
+			return super.skip(count);
+		}
+		finally
+		{
+			end();
+		}
+	}
+	
+	/**
+	 * Cancel reading. Safe to call from any thread, more than once.
+	 * 
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+		
+		synchronized (this)
+		{
+			if (reader != null)
+			{
+				reader.interrupt();
+			}
+		}
+		
+		try
+		{
+			in.close();
+		}
+		catch (IOException e)
+		{
+			// Closing is only a means to unblock the reader.
+		}
+	}
+	
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+	
+	private synchronized void begin() throws InterruptedIOException
+	{
+		if (cancelled)
+		{
+			throw new InterruptedIOException("Read cancelled");
+		}
+		
+		reader = Thread.currentThread();
+	}
+	
+	private void end() throws InterruptedIOException
+	{
+		synchronized (this)
+		{
+			reader = null;
+			
+			if (!cancelled)
+			{
+				return;
+			}
+			
+			// Don't leave our interrupt behind on a pooled thread.
+			Thread.interrupted();
+		}
+		
+		throw new InterruptedIOException("Read cancelled");
+	}
+}
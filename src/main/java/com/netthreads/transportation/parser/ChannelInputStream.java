@@ -0,0 +1,173 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Input stream reading a channel through a caller supplied buffer, so one
+ * buffer can serve every fetch of a stream parser.
+ * 
+ * Reads as large as the buffer go straight to the caller's array.
+ * 
+ */
+public class ChannelInputStream extends InputStream
+{
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Construct stream.
+	 * 
+	 * @param channel
+	 *            Source.
+	 * @param buffer
+	 *            Read buffer, not used by anything else while the stream is
+	 *            read.
+	 */
+	public ChannelInputStream(ReadableByteChannel channel, byte[] buffer)
+	{
+		if (buffer.length == 0)
+		{
+			throw new IllegalArgumentException("Invalid buffer size " + buffer.length);
+		}
+
+		this.channel = channel;
+		this.buffer = ByteBuffer.wrap(buffer);
+
+		// Start empty.
+		this.buffer.limit(0);
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!buffer.hasRemaining() && fill() < 0)
+		{
+			return -1;
+		}
+
+		return buffer.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+
+		if (!buffer.hasRemaining())
+		{
+			if (length >= buffer.capacity())
+			{
+				// No point copying through the buffer.
+				return readFully(ByteBuffer.wrap(bytes, offset, length));
+			}
+
+			if (fill() < 0)
+			{
+				return -1;
+			}
+		}
+
+		int count = Math.min(length, buffer.remaining());
+
+		buffer.get(bytes, offset, count);
+
+		return count;
+	}
+
+	@Override
+	public long skip(long length) throws IOException
+	{
+		long skipped = 0;
+
+		while (skipped < length)
+		{
+			if (!buffer.hasRemaining() && fill() < 0)
+			{
+				break;
+			}
+
+			int count = (int) Math.min(length - skipped, buffer.remaining());
+
+			buffer.position(buffer.position() + count);
+
+			skipped += count;
+		}
+
+		return skipped;
+	}
+
+	@Override
+	public int available()
+	{
+		return buffer.remaining();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 * Refill buffer from the channel.
+	 * 
+	 * @return Bytes read or -1 at the end of the channel.
+	 * 
+	 * @throws IOException
+	 */
+	private int fill() throws IOException
+	{
+		buffer.clear();
+
+		int count = readFully(buffer);
+
+		buffer.flip();
+
+		return count;
+	}
+
+	/**
+	 * Read at least one byte, a non blocking channel may return none.
+	 * 
+	 * @param target
+	 * 
+	 * @return Bytes read or -1 at the end of the channel.
+	 * 
+	 * @throws IOException
+	 */
+	private int readFully(ByteBuffer target) throws IOException
+	{
+		int count;
+		do
+		{
+			count = channel.read(target);
+		}
+		while (count == 0);
+
+		return count;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of feed payloads.
+ * 
+ */
+public final class Compression
+{
+	public static final int NONE = 0;
+	public static final int GZIP = 1;
+	public static final int DEFLATE = 2;
+
+	// Bytes of compressed input read at a time.
+	public static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+
+	private Compression()
+	{
+	}
+
+	/**
+	 * Compression named by a HTTP Content-Encoding.
+	 * 
+	 * @param encoding
+	 *            Header value, null for none.
+	 * 
+	 * @return The compression.
+	 */
+	public static int forContentEncoding(String encoding)
+	{
+		if (encoding == null || encoding.isEmpty() || encoding.equalsIgnoreCase("identity"))
+		{
+			return NONE;
+		}
+		else if (encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip"))
+		{
+			return GZIP;
+		}
+		else if (encoding.equalsIgnoreCase("deflate"))
+		{
+			return DEFLATE;
+		}
+
+		throw new IllegalArgumentException("Invalid content encoding " + encoding);
+	}
+
+	/**
+	 * Decompressing stream. Closing it releases the decompressor but leaves
+	 * the input open.
+	 * 
+	 * @param stream
+	 *            Compressed input.
+	 * @param compression
+	 *            NONE, GZIP or DEFLATE (zlib wrapped, as HTTP deflate).
+	 * @param bufferSize
+	 *            Bytes of compressed input read at a time.
+	 * 
+	 * @return Stream of uncompressed bytes, or the input for NONE.
+	 * 
+	 * @throws IOException
+	 *             if the gzip header is unreadable.
+	 */
+	public static InputStream open(InputStream stream, int compression, int bufferSize) throws IOException
+	{
+		switch (compression)
+		{
+			case NONE:
+				return stream;
+
+			case GZIP:
+				return new GZIPInputStream(unclosed(stream), bufferSize);
+
+			case DEFLATE:
+				return new InflaterInputStream(unclosed(stream), new Inflater(), bufferSize)
+				{
+					@Override
+					public void close() throws IOException
+					{
+						super.close();
+
+						// Not the default inflater so not ended by close.
+						inf.end();
+					}
+				};
+
+			default:
+				throw new IllegalArgumentException("Invalid compression " + compression);
+		}
+	}
+
+	/**
+	 * Stream which ignores close, the caller owns the input.
+	 * 
+	 */
+	private static InputStream unclosed(InputStream stream)
+	{
+		return new FilterInputStream(stream)
+		{
+			@Override
+			public void close()
+			{
+			}
+		};
+	}
+}
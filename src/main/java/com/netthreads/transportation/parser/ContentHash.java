@@ -0,0 +1,98 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * 64 bit FNV-1a hash of a sequence of string fields or of raw bytes.
+ * 
+ * Usage: hash = ContentHash.add(ContentHash.START, a); hash =
+ * ContentHash.add(hash, b); ...
+ * 
+ */
+public final class ContentHash
+{
+	public static final long START = 0xcbf29ce484222325L;
+
+	private static final long PRIME = 0x100000001b3L;
+
+	// Mixed in after each field so ("ab", "") and ("a", "b") differ.
+	private static final char SEPARATOR = '\u001f';
+	private static final char NULL = '\u0000';
+
+	private ContentHash()
+	{
+	}
+
+	/**
+	 * Add field to hash.
+	 * 
+	 * @param hash
+	 * @param text
+	 *            May be null.
+	 * 
+	 * @return The new hash.
+	 */
+	public static long add(long hash, String text)
+	{
+		if (text == null)
+		{
+			return mix(mix(hash, NULL), SEPARATOR);
+		}
+
+		int length = text.length();
+		for (int index = 0; index < length; index++)
+		{
+			hash = mix(hash, text.charAt(index));
+		}
+
+		return mix(hash, SEPARATOR);
+	}
+
+	/**
+	 * Add bytes to hash.
+	 * 
+	 * @param hash
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * 
+	 * @return The new hash.
+	 */
+	public static long add(long hash, byte[] buffer, int offset, int length)
+	{
+		int end = offset + length;
+		for (int index = offset; index < end; index++)
+		{
+			hash ^= buffer[index] & 0xff;
+			hash *= PRIME;
+		}
+
+		return hash;
+	}
+
+	private static long mix(long hash, char c)
+	{
+		hash ^= c & 0xff;
+		hash *= PRIME;
+		hash ^= c >>> 8;
+		hash *= PRIME;
+
+		return hash;
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which counts the bytes read through it.
+ * 
+ */
+public class CountingInputStream extends FilterInputStream
+{
+	private long count = 0;
+
+	/**
+	 * Construct stream.
+	 * 
+	 * @param stream
+	 */
+	public CountingInputStream(InputStream stream)
+	{
+		super(stream);
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int value = super.read();
+
+		if (value >= 0)
+		{
+			count++;
+		}
+
+		return value;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		int read = super.read(buffer, offset, length);
+
+		if (read > 0)
+		{
+			count += read;
+		}
+
+		return read;
+	}
+
+	@Override
+	public long skip(long length) throws IOException
+	{
+		long skipped = super.skip(length);
+
+		count += skipped;
+
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	/**
+	 * Bytes read so far.
+	 * 
+	 * @return The count.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+}
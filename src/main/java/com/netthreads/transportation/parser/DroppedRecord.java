@@ -0,0 +1,89 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Record left out of a lenient fetch because it could not be parsed.
+ * 
+ */
+public class DroppedRecord
+{
+	private final int index;
+	private final String id;
+	private final int offset;
+	private final Exception error;
+
+	/**
+	 * Construct dropped record.
+	 * 
+	 * @param index
+	 *            Position of the record in the document, from zero.
+	 * @param id
+	 *            Record id attribute or null if it could not be read.
+	 * @param offset
+	 *            Byte offset of the record start tag.
+	 * @param error
+	 *            Cause.
+	 */
+	public DroppedRecord(int index, String id, int offset, Exception error)
+	{
+		this.index = index;
+		this.id = id;
+		this.offset = offset;
+		this.error = error;
+	}
+
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public int getOffset()
+	{
+		return offset;
+	}
+
+	public Exception getError()
+	{
+		return error;
+	}
+
+	/**
+	 * Why the record was dropped.
+	 * 
+	 * @return The error message.
+	 */
+	public String getReason()
+	{
+		return error.getMessage();
+	}
+
+	@Override
+	public String toString()
+	{
+		String text = index + ", " + id + ", " + offset + ", " + getReason();
+
+		return text;
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Stack of open element tag ids indexed by document depth.
+ * 
+ * Keeps a count of open elements per tag id so "inside element X" checks are
+ * a single array read. Positions are taken from the XML parser depth so stale
+ * entries left by a cancelled or failed fetch are discarded on the next tag.
+ * 
+ */
+public class ElementStack
+{
+	public static final int NOT_FOUND = -1;
+
+	private static final int INITIAL_DEPTH = 32;
+
+	private int[] stack = new int[INITIAL_DEPTH];
+	private final int[] open;
+
+	private int depth = 0;
+	private int tracked = 0;
+
+	/**
+	 * Construct stack.
+	 * 
+	 * @param idCount
+	 *            Number of tag ids, see TagTable.getIdCount().
+	 */
+	public ElementStack(int idCount)
+	{
+		open = new int[idCount];
+	}
+
+	/**
+	 * Open element.
+	 * 
+	 * @param level
+	 *            The depth of the element, 1 for the root.
+	 * @param id
+	 */
+	public void push(int level, int id)
+	{
+		truncate(level - 1);
+
+		// Fill in any ancestors we did not see.
+		while (depth < level - 1)
+		{
+			append(TagTable.UNKNOWN);
+		}
+
+		append(id);
+	}
+
+	/**
+	 * Close element.
+	 * 
+	 * @param level
+	 *            The depth of the element, 1 for the root.
+	 * 
+	 * @return The id of the element or NOT_FOUND if it was never opened.
+	 */
+	public int pop(int level)
+	{
+		truncate(level);
+
+		if (depth != level || depth == 0)
+		{
+			return NOT_FOUND;
+		}
+
+		int id = stack[--depth];
+
+		open[id]--;
+		if (id != TagTable.UNKNOWN)
+		{
+			tracked--;
+		}
+
+		return id;
+	}
+
+	/**
+	 * Innermost open element.
+	 * 
+	 * @return The tag id or UNKNOWN if no element is open.
+	 */
+	public int top()
+	{
+		return depth > 0 ? stack[depth - 1] : TagTable.UNKNOWN;
+	}
+
+	/**
+	 * Inside element test.
+	 * 
+	 * @param id
+	 * 
+	 * @return True if an element with this id is open.
+	 */
+	public boolean isOpen(int id)
+	{
+		return open[id] > 0;
+	}
+
+	/**
+	 * Inside any known element.
+	 * 
+	 * @return True if an element with a tag id other than UNKNOWN is open.
+	 */
+	public boolean inTrackedElement()
+	{
+		return tracked > 0;
+	}
+
+	/**
+	 * Current depth.
+	 * 
+	 * @return The number of open elements.
+	 */
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Discard all open elements.
+	 * 
+	 */
+	public void clear()
+	{
+		truncate(0);
+	}
+
+	/**
+	 * Add element on top of stack.
+	 * 
+	 * @param id
+	 */
+	private void append(int id)
+	{
+		if (depth == stack.length)
+		{
+			int[] grown = new int[stack.length * 2];
+			System.arraycopy(stack, 0, grown, 0, depth);
+			stack = grown;
+		}
+
+		stack[depth++] = id;
+
+		open[id]++;
+		if (id != TagTable.UNKNOWN)
+		{
+			tracked++;
+		}
+	}
+
+	/**
+	 * Discard open elements deeper than level.
+	 * 
+	 * @param level
+	 */
+	private void truncate(int level)
+	{
+		while (depth > level)
+		{
+			int id = stack[--depth];
+
+			open[id]--;
+			if (id != TagTable.UNKNOWN)
+			{
+				tracked--;
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Record with an identity and a hash of its content, so successive fetches
+ * of a feed can be compared record by record.
+ * 
+ */
+public interface FeedRecord
+{
+	/**
+	 * Identity of the record, the situationRecord id attribute.
+	 * 
+	 * @return The id.
+	 */
+	public String getId();
+
+	/**
+	 * Hash of every field. Records with equal content have equal hashes,
+	 * different content collides with negligible probability.
+	 * 
+	 * @return The hash.
+	 */
+	public long getContentHash();
+}
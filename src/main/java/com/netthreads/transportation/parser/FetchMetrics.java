@@ -0,0 +1,89 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Measurements of one fetch.
+ * 
+ */
+public class FetchMetrics
+{
+	private final int state;
+	private final long durationNanos;
+	private final long tokens;
+	private final int records;
+	private final long bytes;
+	private final Exception error;
+
+	/**
+	 * Construct metrics.
+	 * 
+	 * @param state
+	 *            StreamParser state code.
+	 * @param durationNanos
+	 *            Time spent parsing, excluding any time paused.
+	 * @param tokens
+	 *            XML tokens read, including skipped ones.
+	 * @param records
+	 *            Records passed to the sink.
+	 * @param bytes
+	 *            Bytes read from the stream.
+	 * @param error
+	 *            Cause of an ERROR state or null.
+	 */
+	public FetchMetrics(int state, long durationNanos, long tokens, int records, long bytes, Exception error)
+	{
+		this.state = state;
+		this.durationNanos = durationNanos;
+		this.tokens = tokens;
+		this.records = records;
+		this.bytes = bytes;
+		this.error = error;
+	}
+
+	public int getState()
+	{
+		return state;
+	}
+
+	public long getDurationNanos()
+	{
+		return durationNanos;
+	}
+
+	public long getTokens()
+	{
+		return tokens;
+	}
+
+	public int getRecords()
+	{
+		return records;
+	}
+
+	public long getBytes()
+	{
+		return bytes;
+	}
+
+	public Exception getError()
+	{
+		return error;
+	}
+}
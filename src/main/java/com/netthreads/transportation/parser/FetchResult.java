@@ -0,0 +1,91 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.util.List;
+
+/**
+ * Outcome of an asynchronous fetch.
+ * 
+ * The records are complete for DONE and the partial list parsed before the
+ * fetch stopped for CANCELLED and ERROR.
+ * 
+ */
+public class FetchResult<T>
+{
+	private final int state;
+	private final List<T> records;
+	private final boolean timedOut;
+	private final Exception error;
+	
+	/**
+	 * Construct result.
+	 * 
+	 * @param state
+	 *            StreamParser state code.
+	 * @param records
+	 * @param timedOut
+	 *            True if cancelled by the deadline.
+	 * @param error
+	 *            Exception thrown out of the parse or null.
+	 */
+	public FetchResult(int state, List<T> records, boolean timedOut, Exception error)
+	{
+		this.state = state;
+		this.records = records;
+		this.timedOut = timedOut;
+		this.error = error;
+	}
+	
+	public int getState()
+	{
+		return state;
+	}
+	
+	public List<T> getRecords()
+	{
+		return records;
+	}
+	
+	/**
+	 * Number of records parsed, partial unless the state is DONE.
+	 * 
+	 * @return The count.
+	 */
+	public int getRecordCount()
+	{
+		return records.size();
+	}
+	
+	public boolean isTimedOut()
+	{
+		return timedOut;
+	}
+	
+	public Exception getError()
+	{
+		return error;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "FetchResult [state=" + state + ", records=" + records.size() + ", timedOut=" + timedOut + ", error=" + error + "]";
+	}
+}
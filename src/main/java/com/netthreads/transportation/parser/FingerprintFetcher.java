@@ -0,0 +1,204 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fetches a feed, skipping the parse when the raw bytes are identical to the
+ * last successful fetch.
+ * 
+ * The stream is read into a reusable buffer and hashed as it is read. If the
+ * fingerprint, hash and length, matches the last successful fetch the
+ * records of that fetch are returned again, otherwise the buffer is parsed.
+ * The repeated records are the same instances as before, don't recycle them.
+ * 
+ * One instance per feed, not thread safe.
+ * 
+ */
+public class FingerprintFetcher<T>
+{
+	private static final int INITIAL_BUFFER_SIZE = 32 * 1024;
+
+	private final StreamParser<T> streamParser;
+
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+	// Last successful fetch.
+	private long lastHash = 0;
+	private int lastLength = -1;
+	private List<T> lastRecords = Collections.emptyList();
+
+	private boolean lastSkipped = false;
+	private Exception error = null;
+
+	// Statistics.
+	private long parsed = 0;
+	private long skipped = 0;
+
+	/**
+	 * Construct fetcher.
+	 * 
+	 * @param streamParser
+	 */
+	public FingerprintFetcher(StreamParser<T> streamParser)
+	{
+		this.streamParser = streamParser;
+	}
+
+	/**
+	 * Read and, if changed, parse data into list.
+	 * 
+	 * @param stream
+	 * @param list
+	 * @param dataFactory
+	 * @param pullParser
+	 * 
+	 * @return State, DONE with the previous records if the data is unchanged.
+	 */
+	public int fetch(InputStream stream, List<T> list, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		lastSkipped = false;
+		error = null;
+
+		long hash = ContentHash.START;
+		int length = 0;
+
+		try
+		{
+			int count;
+			while ((count = stream.read(buffer, length, buffer.length - length)) >= 0)
+			{
+				hash = ContentHash.add(hash, buffer, length, count);
+				length += count;
+
+				if (length == buffer.length)
+				{
+					byte[] grown = new byte[buffer.length * 2];
+					System.arraycopy(buffer, 0, grown, 0, length);
+					buffer = grown;
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			error = e;
+
+			return StreamParser.ERROR;
+		}
+
+		if (length == lastLength && hash == lastHash)
+		{
+			skipped++;
+			lastSkipped = true;
+
+			list.addAll(lastRecords);
+
+			return StreamParser.DONE;
+		}
+
+		parsed++;
+
+		int start = list.size();
+
+		int state = streamParser.fetch(new ByteArrayInputStream(buffer, 0, length), list, dataFactory, pullParser);
+
+		if (state == StreamParser.DONE)
+		{
+			lastHash = hash;
+			lastLength = length;
+			lastRecords = Collections.unmodifiableList(new ArrayList<T>(list.subList(start, list.size())));
+		}
+		else if (state == StreamParser.ERROR)
+		{
+			error = streamParser.getError();
+		}
+
+		return state;
+	}
+
+	/**
+	 * Forget the last fetch, the next fetch is always parsed.
+	 * 
+	 */
+	public void reset()
+	{
+		lastHash = 0;
+		lastLength = -1;
+		lastRecords = Collections.emptyList();
+		lastSkipped = false;
+		error = null;
+	}
+
+	/**
+	 * Was the parse of the last fetch skipped.
+	 * 
+	 * @return True if skipped.
+	 */
+	public boolean isLastSkipped()
+	{
+		return lastSkipped;
+	}
+
+	/**
+	 * Cause of the ERROR state of the last fetch, from reading the stream or
+	 * from the parse.
+	 * 
+	 * @return The exception or null.
+	 */
+	public Exception getError()
+	{
+		return error;
+	}
+
+	/**
+	 * Number of fetches parsed.
+	 * 
+	 * @return The count.
+	 */
+	public long getParsed()
+	{
+		return parsed;
+	}
+
+	/**
+	 * Number of fetches whose parse was skipped.
+	 * 
+	 * @return The count.
+	 */
+	public long getSkipped()
+	{
+		return skipped;
+	}
+
+	/**
+	 * Fingerprint of the last successful fetch.
+	 * 
+	 * @return The hash of the raw bytes.
+	 */
+	public long getFingerprint()
+	{
+		return lastHash;
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.util.List;
+
+/**
+ * Sink which collects every record into a list.
+ * 
+ */
+public class ListRecordSink<T> implements RecordSink<T>
+{
+	private List<T> list;
+	
+	public ListRecordSink(List<T> list)
+	{
+		this.list = list;
+	}
+	
+	@Override
+	public int accept(T record)
+	{
+		list.add(record);
+		
+		return CONTINUE;
+	}
+	
+	public List<T> getList()
+	{
+		return list;
+	}
+}
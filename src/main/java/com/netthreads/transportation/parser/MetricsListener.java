@@ -0,0 +1,36 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Receives the measurements of each completed fetch.
+ * 
+ * Called on the fetching thread once the fetch is done, cancelled or has
+ * failed, not when it pauses. Keep it quick.
+ * 
+ */
+public interface MetricsListener
+{
+	/**
+	 * Fetch complete.
+	 * 
+	 * @param metrics
+	 */
+	public void fetchComplete(FetchMetrics metrics);
+}
@@ -0,0 +1,316 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Parses one large document on a fork join pool.
+ * 
+ * The document is cut at record start tags into chunks of about the chunk
+ * size. Each chunk is parsed behind the document preamble, the bytes before
+ * the first record, so the enclosing elements are open, by its own
+ * StreamParserImpl and PullParser. Parsing of a chunk stops after its last
+ * record. The records are then merged in document order.
+ * 
+ * Pull parsers only see the elements of their records, anything a pull
+ * parser takes from elements around a record comes from the preamble.
+ * 
+ */
+public class ParallelParser<T>
+{
+	public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	private final XmlPullParserFactory factory;
+	private final PullParserFactory<T> pullParserFactory;
+	private final DataFactory<T> dataFactory;
+	private final String recordTag;
+	private final ForkJoinPool pool;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private final RecordBoundaries boundaries = new RecordBoundaries();
+
+	// Cause of the ERROR state of the last parse.
+	private Exception error = null;
+
+	/**
+	 * Construct parser.
+	 * 
+	 * @param factory
+	 *            Shared XML parser factory.
+	 * @param pullParserFactory
+	 *            Creates the pull parser of each chunk.
+	 * @param dataFactory
+	 *            Called from the pool threads.
+	 * @param recordTag
+	 *            Record element, e.g. TrafficData.TAG_SITUATION_RECORD.
+	 * @param pool
+	 *            Runs the chunks.
+	 */
+	public ParallelParser(XmlPullParserFactory factory, PullParserFactory<T> pullParserFactory, DataFactory<T> dataFactory, String recordTag, ForkJoinPool pool)
+	{
+		this.factory = factory;
+		this.pullParserFactory = pullParserFactory;
+		this.dataFactory = dataFactory;
+		this.recordTag = recordTag;
+		this.pool = pool;
+	}
+
+	/**
+	 * Parse document into list.
+	 * 
+	 * @param document
+	 * @param length
+	 *            Bytes of the document used.
+	 * @param list
+	 *            Receives the records in document order.
+	 * 
+	 * @return DONE or ERROR, the records of a failed chunk and any after it
+	 *         are not added.
+	 */
+	public synchronized int parse(byte[] document, int length, List<T> list)
+	{
+		error = null;
+
+		int records = boundaries.scan(document, length, recordTag);
+
+		List<Chunk<T>> chunks = new ArrayList<Chunk<T>>();
+
+		int preamble = 0;
+
+		if (records == 0)
+		{
+			// Nothing to split on.
+			chunks.add(new Chunk<T>(0, length, 0, true));
+		}
+		else
+		{
+			preamble = boundaries.getOffset(0);
+		}
+
+		int first = 0;
+		while (first < records)
+		{
+			int start = boundaries.getOffset(first);
+
+			// Whole records up to about the chunk size, at least one.
+			int last = first + 1;
+			while (last < records && boundaries.getOffset(last) - start < chunkSize)
+			{
+				last++;
+			}
+
+			boolean end = last == records;
+
+			chunks.add(new Chunk<T>(start, end ? length : boundaries.getOffset(last), last - first, end));
+
+			first = last;
+		}
+
+		pool.invoke(new ChunkTask(document, preamble, chunks, 0, chunks.size()));
+
+		return merge(chunks, list);
+	}
+
+	/**
+	 * Add chunk records to list up to the first failed chunk.
+	 * 
+	 */
+	private int merge(List<Chunk<T>> chunks, List<T> list)
+	{
+		int size = 0;
+		for (Chunk<T> chunk : chunks)
+		{
+			size += chunk.records.size();
+		}
+
+		if (list instanceof ArrayList)
+		{
+			((ArrayList<T>) list).ensureCapacity(list.size() + size);
+		}
+
+		for (Chunk<T> chunk : chunks)
+		{
+			if (chunk.state != StreamParser.DONE)
+			{
+				error = chunk.error;
+
+				return StreamParser.ERROR;
+			}
+
+			list.addAll(chunk.records);
+		}
+
+		return StreamParser.DONE;
+	}
+
+	/**
+	 * Parse one chunk with its own parsers.
+	 * 
+	 * @param document
+	 * @param preamble
+	 *            Length of the preamble.
+	 * @param chunk
+	 */
+	private void parseChunk(byte[] document, int preamble, final Chunk<T> chunk)
+	{
+		try
+		{
+			StreamParserImpl<T> streamParser = new StreamParserImpl<T>(factory);
+			PullParser<T> pullParser = pullParserFactory.createPullParser(streamParser.getParser());
+
+			InputStream stream = new ByteArrayInputStream(document, chunk.start, chunk.end - chunk.start);
+			if (preamble > 0)
+			{
+				stream = new SequenceInputStream(new ByteArrayInputStream(document, 0, preamble), stream);
+			}
+
+			RecordSink<T> sink = new RecordSink<T>()
+			{
+				@Override
+				public int accept(T record)
+				{
+					chunk.records.add(record);
+
+					// Next chunk takes over at the following record.
+					return (!chunk.last && chunk.records.size() == chunk.expected) ? STOP : CONTINUE;
+				}
+			};
+
+			int state = streamParser.fetch(stream, sink, dataFactory, pullParser);
+
+			if (state == StreamParser.CANCELLED && !chunk.last && chunk.records.size() == chunk.expected)
+			{
+				state = StreamParser.DONE;
+			}
+
+			chunk.state = state;
+			chunk.error = streamParser.getError();
+		}
+		catch (XmlPullParserException e)
+		{
+			chunk.state = StreamParser.ERROR;
+			chunk.error = e;
+		}
+	}
+
+	/**
+	 * Splits the chunk range in half until one chunk is left.
+	 * 
+	 */
+	private class ChunkTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] document;
+		private final int preamble;
+		// Tasks are never serialized.
+		private final transient List<Chunk<T>> chunks;
+		private final int from;
+		private final int to;
+
+		ChunkTask(byte[] document, int preamble, List<Chunk<T>> chunks, int from, int to)
+		{
+			this.document = document;
+			this.preamble = preamble;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (to - from == 1)
+			{
+				parseChunk(document, preamble, chunks.get(from));
+			}
+			else
+			{
+				int middle = (from + to) >>> 1;
+
+				invokeAll(new ChunkTask(document, preamble, chunks, from, middle), new ChunkTask(document, preamble, chunks, middle, to));
+			}
+		}
+	}
+
+	/**
+	 * Byte range of whole records and what parsing it gave.
+	 * 
+	 */
+	private static class Chunk<T>
+	{
+		final int start;
+		final int end;
+		final int expected;
+		final boolean last;
+
+		final List<T> records = new ArrayList<T>();
+		int state = StreamParser.WAITING;
+		Exception error = null;
+
+		Chunk(int start, int end, int expected, boolean last)
+		{
+			this.start = start;
+			this.end = end;
+			this.expected = expected;
+			this.last = last;
+		}
+	}
+
+	/**
+	 * Approximate bytes per chunk, a chunk always holds at least one record.
+	 * 
+	 * @param chunkSize
+	 */
+	public void setChunkSize(int chunkSize)
+	{
+		if (chunkSize < 1)
+		{
+			throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+		}
+
+		this.chunkSize = chunkSize;
+	}
+
+	public int getChunkSize()
+	{
+		return chunkSize;
+	}
+
+	/**
+	 * Cause of the ERROR state of the last parse.
+	 * 
+	 * @return The error or null.
+	 */
+	public synchronized Exception getError()
+	{
+		return error;
+	}
+}
@@ -33,6 +33,15 @@ public interface PullParser<T>
 	 */
 	public boolean processStartTag(String tag);
 
+	/**
+	 * Skip the element just started. Called after processStartTag, if true
+	 * the content of the element is passed over without being dispatched and
+	 * the next call is processEndTag for the element.
+	 * 
+	 * @return True if the element holds no wanted data.
+	 */
+	public boolean skipElement();
+
 	/**
 	 * Process end of tag.
 	 * 
@@ -49,6 +58,16 @@ public interface PullParser<T>
 	 */
 	public void processText(String text);
 
+	/**
+	 * Process text in tag straight from the XML parser buffer. A String is
+	 * only created if the text is kept.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 */
+	public void processText(char[] buffer, int start, int length);
+
 	/**
 	 * Populate a record with data read.
 	 * 
@@ -62,6 +81,13 @@ public interface PullParser<T>
 	 */
 	public void reset();
 
+	/**
+	 * Restore the settings of a new parser, for a parser handed on to another
+	 * user.
+	 * 
+	 */
+	public void restoreDefaults();
+
 	/**
 	 * Within a target tag.
 	 * 
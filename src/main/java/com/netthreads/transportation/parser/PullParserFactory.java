@@ -0,0 +1,38 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Creates the pull parser which reads records from an XML parser.
+ * 
+ */
+public interface PullParserFactory<T>
+{
+	/**
+	 * Create pull parser.
+	 * 
+	 * @param parser
+	 *            The XML parser the pull parser will read from.
+	 * 
+	 * @return The pull parser.
+	 */
+	public PullParser<T> createPullParser(XmlPullParser parser);
+}
@@ -0,0 +1,217 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the record start tags in a document, the points where it
+ * can be cut and parsing picked up again.
+ * 
+ * Start tags are matched as "<" + tag followed by white space, "/" or ">",
+ * so longer element names sharing the prefix are not taken. Comments and
+ * CDATA sections are skipped. One left open is not, so that it cannot hide
+ * the record start tags after it, and is counted as unterminated. The
+ * encoding must be ASCII compatible, as UTF-8 and ISO-8859-1 are.
+ * 
+ * Not thread safe, the offsets are reused by the next scan.
+ * 
+ */
+public class RecordBoundaries
+{
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	private static final byte[] COMMENT = { '<', '!', '-', '-' };
+	private static final byte[] COMMENT_END = { '-', '-', '>' };
+	private static final byte[] CDATA = { '<', '!', '[', 'C', 'D', 'A', 'T', 'A', '[' };
+	private static final byte[] CDATA_END = { ']', ']', '>' };
+
+	private int[] offsets = new int[64];
+	private int count = 0;
+	private int unterminated = 0;
+
+	/**
+	 * Find the record start tags.
+	 * 
+	 * @param document
+	 * @param length
+	 *            Bytes of the document used.
+	 * @param recordTag
+	 *            Record element name.
+	 * 
+	 * @return The number of records found.
+	 */
+	public int scan(byte[] document, int length, String recordTag)
+	{
+		byte[] tag = ("<" + recordTag).getBytes(ASCII);
+
+		count = 0;
+		unterminated = 0;
+
+		// Set once an end marker is missing, none follows after that.
+		boolean commentOpen = false;
+		boolean cdataOpen = false;
+
+		int index = 0;
+		while (index + tag.length < length)
+		{
+			if (document[index] != '<')
+			{
+				index++;
+			}
+			else if (!commentOpen && matches(document, length, index, COMMENT))
+			{
+				int end = skipTo(document, length, index + COMMENT.length, COMMENT_END);
+
+				if (end < 0)
+				{
+					commentOpen = true;
+					unterminated++;
+					index += COMMENT.length;
+				}
+				else
+				{
+					index = end;
+				}
+			}
+			else if (!cdataOpen && matches(document, length, index, CDATA))
+			{
+				int end = skipTo(document, length, index + CDATA.length, CDATA_END);
+
+				if (end < 0)
+				{
+					cdataOpen = true;
+					unterminated++;
+					index += CDATA.length;
+				}
+				else
+				{
+					index = end;
+				}
+			}
+			else
+			{
+				if (matches(document, length, index, tag))
+				{
+					byte next = document[index + tag.length];
+
+					if (next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\r' || next == '\n')
+					{
+						if (count == offsets.length)
+						{
+							offsets = Arrays.copyOf(offsets, count * 2);
+						}
+
+						offsets[count++] = index;
+					}
+				}
+
+				index++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Number of records found by the last scan.
+	 * 
+	 * @return The count.
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Number of comments and CDATA sections left open in the last scan.
+	 * 
+	 * @return The count.
+	 */
+	public int getUnterminated()
+	{
+		return unterminated;
+	}
+
+	/**
+	 * Offset of a record start tag.
+	 * 
+	 * @param index
+	 *            Record index, from zero.
+	 * 
+	 * @return The byte offset.
+	 */
+	public int getOffset(int index)
+	{
+		if (index < 0 || index >= count)
+		{
+			throw new IndexOutOfBoundsException("Invalid record index " + index);
+		}
+
+		return offsets[index];
+	}
+
+	/**
+	 * Drop the offsets.
+	 * 
+	 */
+	public void clear()
+	{
+		count = 0;
+		unterminated = 0;
+	}
+
+	private static boolean matches(byte[] document, int length, int index, byte[] text)
+	{
+		if (index + text.length > length)
+		{
+			return false;
+		}
+
+		for (int offset = 0; offset < text.length; offset++)
+		{
+			if (document[index + offset] != text[offset])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Offset after the end marker, or -1 if there is none.
+	 * 
+	 */
+	private static int skipTo(byte[] document, int length, int index, byte[] end)
+	{
+		while (index < length)
+		{
+			if (matches(document, length, index, end))
+			{
+				return index + end.length;
+			}
+
+			index++;
+		}
+
+		return -1;
+	}
+}
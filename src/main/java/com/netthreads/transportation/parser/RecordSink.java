@@ -0,0 +1,43 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Receives records as soon as they are parsed.
+ * 
+ * The sink is called on the parsing thread so a slow sink slows the parse
+ * rather than letting records pile up. Returning PAUSE suspends the fetch
+ * until StreamParser.resume is called, returning STOP ends it.
+ * 
+ */
+public interface RecordSink<T>
+{
+	public static final int CONTINUE = 0;
+	public static final int PAUSE = 1;
+	public static final int STOP = 2;
+	
+	/**
+	 * Accept record.
+	 * 
+	 * @param record
+	 * 
+	 * @return CONTINUE, PAUSE or STOP.
+	 */
+	public int accept(T record);
+}
@@ -0,0 +1,150 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Data factory which hands out recycled records from a bounded pool.
+ * 
+ * Contract: a record passed to release() must no longer be referenced by the
+ * caller, it will be handed out again by createRecord() and overwritten by
+ * the next populateRecord(). Records which are never released are simply
+ * garbage collected. Releasing into a full pool drops the record.
+ * 
+ * Use with a RecordSink which handles each record and releases it before
+ * returning, then a fetch creates no record objects once the pool is warm.
+ * 
+ * That is the only saving. The text of each field still comes from the XML
+ * parser as a new String, so a fetch still makes garbage for every record.
+ * 
+ */
+public class RecyclingDataFactory<T> implements DataFactory<T>
+{
+	private final DataFactory<T> dataFactory;
+
+	private final Object[] pool;
+	private int size = 0;
+
+	// Statistics.
+	private long created = 0;
+	private long recycled = 0;
+	private long dropped = 0;
+
+	/**
+	 * Construct factory.
+	 * 
+	 * @param dataFactory
+	 *            Creates new records when the pool is empty.
+	 * @param capacity
+	 *            Maximum number of pooled records.
+	 */
+	public RecyclingDataFactory(DataFactory<T> dataFactory, int capacity)
+	{
+		if (capacity < 1)
+		{
+			throw new IllegalArgumentException("Invalid pool capacity " + capacity);
+		}
+
+		this.dataFactory = dataFactory;
+		this.pool = new Object[capacity];
+	}
+
+	/**
+	 * Take record from pool or create a new one.
+	 * 
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public synchronized T createRecord()
+	{
+		if (size > 0)
+		{
+			T record = (T) pool[--size];
+			pool[size] = null;
+
+			recycled++;
+
+			return record;
+		}
+
+		created++;
+
+		return dataFactory.createRecord();
+	}
+
+	/**
+	 * Return record to the pool.
+	 * 
+	 * @param record
+	 * 
+	 * @return True if pooled, false if the pool was full.
+	 */
+	public synchronized boolean release(T record)
+	{
+		if (size == pool.length)
+		{
+			dropped++;
+
+			return false;
+		}
+
+		pool[size++] = record;
+
+		return true;
+	}
+
+	/**
+	 * Number of records waiting in the pool.
+	 * 
+	 * @return The pool size.
+	 */
+	public synchronized int getPooled()
+	{
+		return size;
+	}
+
+	/**
+	 * Number of records created by the underlying factory.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getCreated()
+	{
+		return created;
+	}
+
+	/**
+	 * Number of records handed out from the pool.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getRecycled()
+	{
+		return recycled;
+	}
+
+	/**
+	 * Number of released records dropped because the pool was full.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getDropped()
+	{
+		return dropped;
+	}
+}
@@ -34,6 +34,7 @@ public interface StreamParser<T>
 	public static final int DONE = 2;
 	public static final int CANCELLED = 3;
 	public static final int ERROR = 4;
+	public static final int PAUSED = 5;
 	
 	/**
 	 * Parse data into a list of objects of type T.
@@ -45,12 +46,43 @@ public interface StreamParser<T>
 	 */
 	public int fetch(InputStream stream, List<T> list, DataFactory<T> dataFactory, PullParser<T> parser);
 	
+	/**
+	 * Parse data passing each object of type T to the sink as soon as it is
+	 * complete.
+	 * 
+	 * @param stream
+	 * @param sink
+	 * @param dataFactory
+	 * @param parser
+	 * 
+	 * @return State, PAUSED if the sink asked to pause.
+	 */
+	public int fetch(InputStream stream, RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> parser);
+	
+	/**
+	 * Continue a paused fetch from the next record.
+	 * 
+	 * @param sink
+	 * @param dataFactory
+	 * @param parser
+	 * 
+	 * @return State, unchanged if the parser is not paused.
+	 */
+	public int resume(RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> parser);
+	
 	/**
 	 * Reset parser(s).
 	 * 
 	 */
 	public void reset();
 	
+	/**
+	 * Restore the settings of a new parser, for a parser handed on to another
+	 * user.
+	 * 
+	 */
+	public void restoreDefaults();
+	
 	/**
 	 * Cancel fetch
 	 */
@@ -63,6 +95,21 @@ public interface StreamParser<T>
 	 */
 	public int getState();
 	
+	/**
+	 * Number of records produced by the current or last fetch, including a
+	 * partial count for a cancelled or failed fetch.
+	 * 
+	 * @return The record count.
+	 */
+	public int getRecordCount();
+	
+	/**
+	 * Cause of the ERROR state of the current or last fetch.
+	 * 
+	 * @return The exception or null.
+	 */
+	public Exception getError();
+	
 	/**
 	 * Alas, we need access to this for some stuff.
 	 * 
@@ -18,9 +18,16 @@
  */
 package com.netthreads.transportation.parser;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -29,25 +36,101 @@ import org.xmlpull.v1.XmlPullParserFactory;
 /**
  * Stream parser implementation.
  * 
+ * In lenient mode the document is read into memory first. When a record
+ * fails to parse it is dropped and parsing carries on from the start tag of
+ * the next record, behind the document preamble so the elements enclosing
+ * the records are open again. Dropped records are listed with the cause.
+ * 
  */
 public class StreamParserImpl<T> implements StreamParser<T>
 {
 	public static final String TEXT_LINK_DELIMETER = ";";
 	public static final String TEXT_TITLE_DELIMETER = " ";
 	
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	public static final int DEFAULT_READ_BUFFER_SIZE = 32 * 1024;
+	
 	private XmlPullParserFactory factory = null;
 	private XmlPullParser parser = null;
 	
-	// Control
-	private int state = WAITING;
+	// Control, written by the parsing thread and by cancel() from any thread.
+	private final AtomicInteger state = new AtomicInteger(WAITING);
+	
+	// Records passed to the sink by the current fetch.
+	private volatile int recordCount = 0;
+	
+	// Cause of the ERROR state.
+	private volatile Exception error = null;
+	
+	// Measurements, only taken with a listener.
+	private volatile MetricsListener metricsListener = null;
+	private CountingInputStream counter = null;
+	private long tokens = 0;
+	private long parseNanos = 0;
+	
+	// Start and length of text in the parser buffer.
+	private final int[] holder = new int[2];
+	
+	// Sink asked to pause, state moves to PAUSED once the parse loop is left.
+	private boolean pausing = false;
+	
+	// Input, read buffer kept between fetches.
+	private int readBufferSize = DEFAULT_READ_BUFFER_SIZE;
+	private byte[] readBuffer = null;
+	private String encoding = null;
+	private InputStream decoder = null;
+	
+	// Lenient mode, record element to resynchronise on or null if strict.
+	private String recordTag = null;
+	private byte[] document = null;
+	private int documentLength = 0;
+	private final RecordBoundaries boundaries = new RecordBoundaries();
+	private int boundaryCount = 0;
+	
+	// Records started and completed since the last resynchronisation, and
+	// the document index of the first.
+	private int segmentRecord = 0;
+	private int segmentStarted = 0;
+	private int segmentCompleted = 0;
+	private boolean resumed = false;
+	
+	private final List<DroppedRecord> dropped = new ArrayList<DroppedRecord>();
 	
 	public StreamParserImpl() throws XmlPullParserException
 	{
-		factory = XmlPullParserFactory.newInstance();
+		this(createFactory());
+	}
+	
+	/**
+	 * Construct with shared factory. Use this to avoid the factory service
+	 * lookup when creating many parsers.
+	 * 
+	 * @param factory
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	public StreamParserImpl(XmlPullParserFactory factory) throws XmlPullParserException
+	{
+		this.factory = factory;
+		
+		parser = factory.newPullParser();
+	}
+	
+	/**
+	 * Create non namespace aware pull parser factory.
+	 * 
+	 * @return The factory.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	public static XmlPullParserFactory createFactory() throws XmlPullParserException
+	{
+		XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
 		
 		factory.setNamespaceAware(false);
 		
-		parser = factory.newPullParser();
+		return factory;
 	}
 	
 	/**
@@ -60,26 +143,249 @@ public class StreamParserImpl<T> implements StreamParser<T>
 	@Override
 	public int fetch(InputStream stream, List<T> list, DataFactory<T> dataFactory, PullParser<T> pullParser)
 	{
-		state = BUSY;
+		return fetch(stream, new ListRecordSink<T>(list), dataFactory, pullParser);
+	}
+	
+	/**
+	 * Fetch and parse data, pushing records to the sink.
+	 * 
+	 * @param stream
+	 * @param sink
+	 * @param dataFactory
+	 */
+	@Override
+	public int fetch(InputStream stream, RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		return fetch(stream, Compression.NONE, null, sink, dataFactory, pullParser);
+	}
+	
+	/**
+	 * Fetch and parse data read from a channel through the reusable read
+	 * buffer.
+	 * 
+	 * @param channel
+	 *            Source, left open.
+	 * @param compression
+	 *            Compression.NONE, GZIP or DEFLATE.
+	 * @param charset
+	 *            Document encoding or null to detect it.
+	 * @param sink
+	 * @param dataFactory
+	 * @param pullParser
+	 * 
+	 * @return State
+	 */
+	public int fetch(ReadableByteChannel channel, int compression, Charset charset, RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		if (readBuffer == null || readBuffer.length != readBufferSize)
+		{
+			readBuffer = new byte[readBufferSize];
+		}
 		
+		return fetch(new ChannelInputStream(channel, readBuffer), compression, charset, sink, dataFactory, pullParser);
+	}
+	
+	/**
+	 * Fetch and parse data from a possibly compressed stream.
+	 * 
+	 * Metrics count the bytes read from the stream, before decompression.
+	 * 
+	 * @param stream
+	 *            Source, left open.
+	 * @param compression
+	 *            Compression.NONE, GZIP or DEFLATE.
+	 * @param charset
+	 *            Document encoding or null to detect it.
+	 * @param sink
+	 * @param dataFactory
+	 * @param pullParser
+	 * 
+	 * @return State
+	 */
+	public int fetch(InputStream stream, int compression, Charset charset, RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
 		reset();
 		
+		// A cancel arriving since the reset wins.
+		if (!state.compareAndSet(WAITING, BUSY))
+		{
+			complete();
+			
+			return state.get();
+		}
+		
+		encoding = (charset != null) ? charset.name() : null;
+		
+		if (metricsListener != null)
+		{
+			counter = new CountingInputStream(stream);
+			stream = counter;
+		}
+		
 		try
 		{
+			if (compression != Compression.NONE)
+			{
+				decoder = Compression.open(stream, compression, readBufferSize);
+				stream = decoder;
+			}
+			
+			if (recordTag != null)
+			{
+				stream = buffer(stream);
+			}
+			
 			// Assign stream of input.
-			parser.setInput(stream, null);
+			parser.setInput(stream, encoding);
+		}
+		catch (XmlPullParserException e)
+		{
+			// Oops
+			fail(e);
+			
+			complete();
+			
+			return state.get();
+		}
+		catch (IOException e)
+		{
+			fail(e);
+			
+			complete();
+			
+			return state.get();
+		}
+		
+		return parse(sink, dataFactory, pullParser);
+	}
+	
+	/**
+	 * Continue paused fetch.
+	 * 
+	 * @param sink
+	 * @param dataFactory
+	 */
+	@Override
+	public int resume(RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		if (!state.compareAndSet(PAUSED, BUSY))
+		{
+			return state.get();
+		}
+		
+		return parse(sink, dataFactory, pullParser);
+	}
+	
+	/**
+	 * Parse from current position until the end of the document, or until
+	 * cancelled or paused.
+	 * 
+	 * @param sink
+	 * @param dataFactory
+	 * @param pullParser
+	 * 
+	 * @return State
+	 */
+	private int parse(RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		boolean measure = metricsListener != null;
+		long started = measure ? System.nanoTime() : 0;
+		
+		boolean parsing = true;
+		
+		while (parsing)
+		{
+			parsing = false;
 			
+			try
+			{
+				parseTokens(sink, dataFactory, pullParser);
+			}
+			catch (XmlPullParserException e)
+			{
+				// Oops, unless cancelled while reading.
+				parsing = recover(e, pullParser);
+			}
+			catch (IOException e)
+			{
+				// Oops, unless cancelled while reading.
+				parsing = recover(e, pullParser);
+			}
+			catch (RuntimeException e)
+			{
+				// Thrown by the sink, data factory or pull parser.
+				fail(e);
+			}
+		}
+		
+		if (measure)
+		{
+			parseNanos += System.nanoTime() - started;
+		}
+		
+		// Paused last, once done with the fields, so a cancel can finish the
+		// fetch from another thread.
+		if (pausing)
+		{
+			pausing = false;
+			
+			if (state.compareAndSet(BUSY, PAUSED))
+			{
+				return PAUSED;
+			}
+		}
+		
+		state.compareAndSet(BUSY, DONE);
+		
+		complete();
+		
+		return state.get();
+	}
+	
+	/**
+	 * Pass tokens to the pull parser until the end of the document, or until
+	 * cancelled or paused.
+	 * 
+	 * @param sink
+	 * @param dataFactory
+	 * @param pullParser
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	private void parseTokens(RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser) throws XmlPullParserException, IOException
+	{
+		long count = 0;
+		
+		try
+		{
 			int type; // received event type
 			
-			while (((type = parser.nextToken()) != XmlPullParser.END_DOCUMENT) && (state != CANCELLED))
+			while ((state.get() == BUSY) && !pausing && ((type = parser.nextToken()) != XmlPullParser.END_DOCUMENT))
 			{
+				count++;
+				
 				if (type == XmlPullParser.TEXT)
 				{
-					String text = parser.getText();
+					char[] buffer = parser.getTextCharacters(holder);
 					
-					if (text != null)
+					if (buffer != null)
 					{
-						pullParser.processText(text.trim());
+						// Trim in place, as String.trim.
+						int start = holder[0];
+						int end = start + holder[1];
+						
+						while (start < end && buffer[start] <= ' ')
+						{
+							start++;
+						}
+						
+						while (end > start && buffer[end - 1] <= ' ')
+						{
+							end--;
+						}
+						
+						pullParser.processText(buffer, start, end - start);
 					}
 				}
 				else if (type == XmlPullParser.START_TAG)
@@ -88,55 +394,335 @@ public class StreamParserImpl<T> implements StreamParser<T>
 					
 					if (startTag != null)
 					{
+						if (recordTag != null && recordTag.equals(startTag))
+						{
+							segmentStarted++;
+						}
+						
 						pullParser.processStartTag(startTag);
-					}
-				}
-				else if (type == XmlPullParser.END_TAG)
-				{
-					String endTag = parser.getName();
-					
-					if (endTag != null)
-					{
-						if (pullParser.processEndTag(endTag))
+						
+						if (pullParser.skipElement())
 						{
-							// Create a new holding record
-							T data = dataFactory.createRecord();
-							
-							pullParser.populateRecord(data);
+							count += skipSubTree();
 							
-							list.add(data);
+							processEndTag(sink, dataFactory, pullParser);
 						}
 					}
 				}
+				else if (type == XmlPullParser.END_TAG)
+				{
+					processEndTag(sink, dataFactory, pullParser);
+				}
 			}
 		}
-		catch (XmlPullParserException e)
+		finally
 		{
-			// Oops
-			state = ERROR;
+			tokens += count;
 		}
-		catch (IOException e)
+	}
+	
+	/**
+	 * Drop the record being parsed and continue from the next one, or fail.
+	 * 
+	 * @param e
+	 * @param pullParser
+	 * 
+	 * @return True to continue parsing.
+	 */
+	private boolean recover(Exception e, PullParser<T> pullParser)
+	{
+		if (recordTag == null || state.get() != BUSY)
 		{
-			// Oops
-			state = ERROR;
+			fail(e);
+			
+			return false;
 		}
 		
-		if (state != CANCELLED && state != ERROR)
+		int record = segmentRecord + segmentCompleted;
+		
+		// Inside a record, or in the start tag of the record resumed at.
+		if (segmentStarted > segmentCompleted || (resumed && segmentStarted == 0))
+		{
+			dropped.add(new DroppedRecord(record, idOf(record), boundaries.getOffset(record), e));
+			
+			record++;
+		}
+		else if (record >= boundaryCount || (!resumed && segmentCompleted == 0))
 		{
-			state = DONE;
+			// Before the first record or after the last, nothing to skip.
+			fail(e);
+			
+			return false;
+		}
+		
+		// Otherwise between records, resume at the next one.
+		
+		pullParser.reset();
+		
+		segmentRecord = record;
+		segmentStarted = 0;
+		segmentCompleted = 0;
+		resumed = true;
+		
+		if (record >= boundaryCount)
+		{
+			// Dropped the last record.
+			return false;
+		}
+		
+		try
+		{
+			// Preamble opens the enclosing elements again.
+			InputStream preamble = new ByteArrayInputStream(document, 0, boundaries.getOffset(0));
+			InputStream rest = new ByteArrayInputStream(document, boundaries.getOffset(record), documentLength - boundaries.getOffset(record));
+			
+			parser.setInput(new SequenceInputStream(preamble, rest), encoding);
+		}
+		catch (XmlPullParserException restart)
+		{
+			fail(restart);
+			
+			return false;
 		}
 		
-		return state;
+		return true;
 	}
 	
 	/**
-	 * Stops the handler process.
+	 * Read the document into memory and find the record start tags.
+	 * 
+	 * @param stream
+	 * 
+	 * @return Stream over the document.
+	 * 
+	 * @throws IOException
+	 */
+	private InputStream buffer(InputStream stream) throws IOException
+	{
+		if (document == null)
+		{
+			document = new byte[64 * 1024];
+		}
+		
+		int length = 0;
+		int count;
+		while ((count = stream.read(document, length, document.length - length)) != -1)
+		{
+			length += count;
+			
+			if (length == document.length)
+			{
+				document = Arrays.copyOf(document, document.length * 2);
+			}
+		}
+		
+		documentLength = length;
+		
+		boundaryCount = boundaries.scan(document, length, recordTag);
+		
+		return new ByteArrayInputStream(document, 0, length);
+	}
+	
+	/**
+	 * Id attribute of a record start tag.
+	 * 
+	 * @param record
+	 * 
+	 * @return The id or null if not found.
+	 */
+	private String idOf(int record)
+	{
+		int end = (record + 1 < boundaryCount) ? boundaries.getOffset(record + 1) : documentLength;
+		
+		for (int index = boundaries.getOffset(record); index + 4 < end && document[index] != '>'; index++)
+		{
+			if (document[index] == 'i' && document[index + 1] == 'd' && document[index + 2] == '=' && document[index - 1] <= ' ')
+			{
+				byte quote = document[index + 3];
+				
+				int start = index + 4;
+				int close = start;
+				while (close < end && document[close] != quote)
+				{
+					close++;
+				}
+				
+				return close < end ? new String(document, start, close - start, UTF_8) : null;
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Move to ERROR unless cancelled, keeping the cause.
+	 * 
+	 * @param e
+	 */
+	private void fail(Exception e)
+	{
+		if (state.compareAndSet(BUSY, ERROR))
+		{
+			error = e;
+		}
+	}
+	
+	/**
+	 * Release the decompressor and report the finished fetch to the metrics
+	 * listener.
+	 * 
+	 */
+	private void complete()
+	{
+		releaseDecoder();
+		
+		MetricsListener listener = metricsListener;
+		
+		if (listener != null)
+		{
+			long bytes = (counter != null) ? counter.getCount() : 0;
+			
+			listener.fetchComplete(new FetchMetrics(state.get(), parseNanos, tokens, recordCount, bytes, error));
+		}
+		
+		counter = null;
+	}
+	
+	/**
+	 * Close the decompressor, which leaves the input open.
+	 * 
+	 */
+	private void releaseDecoder()
+	{
+		if (decoder != null)
+		{
+			try
+			{
+				decoder.close();
+			}
+			catch (IOException e)
+			{
+				// Nothing held but the decompressor.
+			}
+			
+			decoder = null;
+		}
+	}
+	
+	/**
+	 * Pass end tag to the pull parser and hand over the record if complete.
+	 * 
+	 * @param sink
+	 * @param dataFactory
+	 * @param pullParser
+	 */
+	private void processEndTag(RecordSink<T> sink, DataFactory<T> dataFactory, PullParser<T> pullParser)
+	{
+		String endTag = parser.getName();
+		
+		if (endTag != null)
+		{
+			if (pullParser.processEndTag(endTag))
+			{
+				// Create a new holding record
+				T data = dataFactory.createRecord();
+				
+				pullParser.populateRecord(data);
+				
+				recordCount++;
+				segmentCompleted++;
+				
+				int action = sink.accept(data);
+				if (action == RecordSink.PAUSE)
+				{
+					pause();
+				}
+				else if (action == RecordSink.STOP)
+				{
+					cancel();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Move to the end tag of the current element without reporting its
+	 * content, as XmlPullParser.skipSubTree() in later versions of the API.
+	 * 
+	 * @return The number of tokens skipped.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	private int skipSubTree() throws XmlPullParserException, IOException
+	{
+		int level = 1;
+		int count = 0;
+		
+		while (level > 0)
+		{
+			int type = parser.next();
+			
+			count++;
+			
+			if (type == XmlPullParser.START_TAG)
+			{
+				level++;
+			}
+			else if (type == XmlPullParser.END_TAG)
+			{
+				level--;
+			}
+			else if (type == XmlPullParser.END_DOCUMENT)
+			{
+				throw new XmlPullParserException("Unexpected end of document", parser, null);
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Suspend the parse loop after the current record.
+	 * 
+	 */
+	private void pause()
+	{
+		pausing = true;
+	}
+	
+	/**
+	 * Stops the handler process. Safe to call from any thread, the parse loop
+	 * stops before the next token. A read blocked on the stream is not
+	 * interrupted, see AsyncFetcher for that.
+	 * 
+	 * Only a starting, running or paused fetch is cancelled, a finished one
+	 * keeps its DONE or ERROR state. A paused fetch is finished here as no
+	 * parse is running to do it.
 	 * 
 	 */
 	@Override
 	public void cancel()
 	{
-		state = CANCELLED;
+		while (true)
+		{
+			int current = state.get();
+			
+			if (current != WAITING && current != BUSY && current != PAUSED)
+			{
+				return;
+			}
+			
+			if (state.compareAndSet(current, CANCELLED))
+			{
+				if (current == PAUSED)
+				{
+					complete();
+				}
+				
+				return;
+			}
+		}
 	}
 	
 	/**
@@ -146,7 +732,40 @@ public class StreamParserImpl<T> implements StreamParser<T>
 	@Override
 	public void reset()
 	{
-		state = WAITING;
+		state.set(WAITING);
+		
+		recordCount = 0;
+		error = null;
+		pausing = false;
+		
+		boundaryCount = 0;
+		documentLength = 0;
+		segmentRecord = 0;
+		segmentStarted = 0;
+		segmentCompleted = 0;
+		resumed = false;
+		dropped.clear();
+		
+		counter = null;
+		tokens = 0;
+		parseNanos = 0;
+		
+		releaseDecoder();
+		encoding = null;
+	}
+	
+	/**
+	 * Restore the settings of a new parser: strict, unmeasured and with the
+	 * default read buffer size.
+	 * 
+	 */
+	@Override
+	public void restoreDefaults()
+	{
+		setLenient(null);
+		
+		metricsListener = null;
+		readBufferSize = DEFAULT_READ_BUFFER_SIZE;
 	}
 	
 	/**
@@ -166,7 +785,99 @@ public class StreamParserImpl<T> implements StreamParser<T>
 	@Override
 	public int getState()
 	{
-		return state;
+		return state.get();
+	}
+	
+	/**
+	 * Return number of records passed to the sink.
+	 * 
+	 */
+	@Override
+	public int getRecordCount()
+	{
+		return recordCount;
 	}
 	
+	/**
+	 * Return cause of the ERROR state.
+	 * 
+	 */
+	@Override
+	public Exception getError()
+	{
+		return error;
+	}
+	
+	/**
+	 * Report each completed fetch. Measuring counts the bytes read through a
+	 * wrapper stream and times each fetch, the tokens are always counted.
+	 * 
+	 * @param metricsListener
+	 *            The listener or null to stop measuring.
+	 */
+	public void setMetricsListener(MetricsListener metricsListener)
+	{
+		this.metricsListener = metricsListener;
+	}
+	
+	public MetricsListener getMetricsListener()
+	{
+		return metricsListener;
+	}
+	
+	/**
+	 * Size of the read buffer for channels and of the compressed input read at
+	 * a time.
+	 * 
+	 * @param readBufferSize
+	 */
+	public void setReadBufferSize(int readBufferSize)
+	{
+		if (readBufferSize < 1)
+		{
+			throw new IllegalArgumentException("Invalid read buffer size " + readBufferSize);
+		}
+		
+		this.readBufferSize = readBufferSize;
+	}
+	
+	public int getReadBufferSize()
+	{
+		return readBufferSize;
+	}
+	
+	/**
+	 * Drop records which fail to parse rather than stopping. The document is
+	 * read into memory before parsing.
+	 * 
+	 * @param recordTag
+	 *            Element of each record, e.g. TrafficData.TAG_SITUATION_RECORD,
+	 *            or null to stop at the first error.
+	 */
+	public void setLenient(String recordTag)
+	{
+		this.recordTag = recordTag;
+		
+		if (recordTag == null)
+		{
+			document = null;
+			boundaries.clear();
+		}
+	}
+	
+	public boolean isLenient()
+	{
+		return recordTag != null;
+	}
+	
+	/**
+	 * Records dropped by the current or last lenient fetch.
+	 * 
+	 * @return The records, in document order.
+	 */
+	public List<DroppedRecord> getDropped()
+	{
+		return dropped;
+	}
+
 }
@@ -0,0 +1,109 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Stream parser and its pull parser leased from a StreamParserPool.
+ * 
+ * A lease belongs to one thread until it is released, release it in a finally
+ * block. Neither parser may be used after release.
+ * 
+ */
+public class StreamParserLease<T>
+{
+	private final StreamParserPool<T> pool;
+	private final StreamParser<T> streamParser;
+	private final PullParser<T> pullParser;
+	
+	private boolean leased = false;
+	
+	/**
+	 * Construct lease.
+	 * 
+	 * @param pool
+	 * @param streamParser
+	 * @param pullParser
+	 */
+	StreamParserLease(StreamParserPool<T> pool, StreamParser<T> streamParser, PullParser<T> pullParser)
+	{
+		this.pool = pool;
+		this.streamParser = streamParser;
+		this.pullParser = pullParser;
+	}
+	
+	/**
+	 * Parse data into a list with the leased parsers.
+	 * 
+	 * @param stream
+	 * @param list
+	 * @param dataFactory
+	 * 
+	 * @return State
+	 */
+	public int fetch(InputStream stream, List<T> list, DataFactory<T> dataFactory)
+	{
+		return streamParser.fetch(stream, list, dataFactory, pullParser);
+	}
+	
+	/**
+	 * Parse data into a sink with the leased parsers.
+	 * 
+	 * @param stream
+	 * @param sink
+	 * @param dataFactory
+	 * 
+	 * @return State
+	 */
+	public int fetch(InputStream stream, RecordSink<T> sink, DataFactory<T> dataFactory)
+	{
+		return streamParser.fetch(stream, sink, dataFactory, pullParser);
+	}
+	
+	/**
+	 * Return the parsers to the pool.
+	 * 
+	 */
+	public void release()
+	{
+		pool.release(this);
+	}
+	
+	public StreamParser<T> getStreamParser()
+	{
+		return streamParser;
+	}
+	
+	public PullParser<T> getPullParser()
+	{
+		return pullParser;
+	}
+	
+	boolean isLeased()
+	{
+		return leased;
+	}
+	
+	void setLeased(boolean leased)
+	{
+		this.leased = leased;
+	}
+}
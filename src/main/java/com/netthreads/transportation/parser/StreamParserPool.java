@@ -0,0 +1,368 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Bounded, thread safe pool of stream parsers for concurrent fetches.
+ * 
+ * Every parser is created from one shared XmlPullParserFactory so the factory
+ * lookup happens once per pool. Parsers are created on demand up to the pool
+ * size, after that lease() waits for a release. Each lease pairs a stream
+ * parser with the pull parser built on its XML parser, the pair is never
+ * split.
+ * 
+ * Release restores the settings of both parsers to their defaults, so no
+ * setting made for one lease reaches the next.
+ * 
+ */
+public class StreamParserPool<T>
+{
+	private final XmlPullParserFactory factory;
+	private final PullParserFactory<T> pullParserFactory;
+	private final int size;
+	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	
+	private final ArrayDeque<StreamParserLease<T>> idle;
+	private int created = 0;
+	
+	// Statistics.
+	private long leases = 0;
+	private long waits = 0;
+	private long timeouts = 0;
+	private long totalWaitNanos = 0;
+	private long maxWaitNanos = 0;
+	
+	/**
+	 * Construct pool with its own factory.
+	 * 
+	 * @param pullParserFactory
+	 * @param size
+	 *            Maximum number of parsers.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	public StreamParserPool(PullParserFactory<T> pullParserFactory, int size) throws XmlPullParserException
+	{
+		this(StreamParserImpl.createFactory(), pullParserFactory, size);
+	}
+	
+	/**
+	 * Construct pool.
+	 * 
+	 * @param factory
+	 *            Shared XML parser factory.
+	 * @param pullParserFactory
+	 * @param size
+	 *            Maximum number of parsers.
+	 */
+	public StreamParserPool(XmlPullParserFactory factory, PullParserFactory<T> pullParserFactory, int size)
+	{
+		if (size < 1)
+		{
+			throw new IllegalArgumentException("Invalid pool size " + size);
+		}
+		
+		this.factory = factory;
+		this.pullParserFactory = pullParserFactory;
+		this.size = size;
+		this.idle = new ArrayDeque<StreamParserLease<T>>(size);
+	}
+	
+	/**
+	 * Lease parsers, waiting as long as it takes for one to be free.
+	 * 
+	 * @return The lease.
+	 * 
+	 * @throws InterruptedException
+	 * @throws XmlPullParserException
+	 *             If a new parser could not be created.
+	 */
+	public StreamParserLease<T> lease() throws InterruptedException, XmlPullParserException
+	{
+		return lease(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Lease parsers, waiting up to the timeout for one to be free.
+	 * 
+	 * @param timeout
+	 * @param unit
+	 * 
+	 * @return The lease or null if the timeout elapsed.
+	 * 
+	 * @throws InterruptedException
+	 * @throws XmlPullParserException
+	 *             If a new parser could not be created.
+	 */
+	public StreamParserLease<T> lease(long timeout, TimeUnit unit) throws InterruptedException, XmlPullParserException
+	{
+		long start = System.nanoTime();
+		long remaining = unit.toNanos(timeout);
+		boolean waited = false;
+		
+		lock.lockInterruptibly();
+		try
+		{
+			while (idle.isEmpty() && created == size)
+			{
+				if (remaining <= 0)
+				{
+					timeouts++;
+					
+					recordWait(waited, start);
+					
+					return null;
+				}
+				
+				waited = true;
+				
+				remaining = available.awaitNanos(remaining);
+			}
+			
+			StreamParserLease<T> lease = idle.poll();
+			
+			if (lease == null)
+			{
+				lease = create();
+			}
+			
+			lease.setLeased(true);
+			
+			leases++;
+			
+			recordWait(waited, start);
+			
+			return lease;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Return lease to the pool. Releasing a lease twice does nothing.
+	 * 
+	 * @param lease
+	 */
+	public void release(StreamParserLease<T> lease)
+	{
+		lock.lock();
+		try
+		{
+			if (!lease.isLeased())
+			{
+				return;
+			}
+			
+			lease.setLeased(false);
+			
+			// Drop any state left from an abandoned fetch, and the settings
+			// made for this lease.
+			lease.getStreamParser().reset();
+			lease.getStreamParser().restoreDefaults();
+			lease.getPullParser().reset();
+			lease.getPullParser().restoreDefaults();
+			
+			idle.push(lease);
+			
+			available.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Create new stream parser and pull parser pair. Called with the lock
+	 * held, the shared factory is not thread safe.
+	 * 
+	 * @return The new lease.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	private StreamParserLease<T> create() throws XmlPullParserException
+	{
+		StreamParser<T> streamParser = new StreamParserImpl<T>(factory);
+		PullParser<T> pullParser = pullParserFactory.createPullParser(streamParser.getParser());
+		
+		created++;
+		
+		return new StreamParserLease<T>(this, streamParser, pullParser);
+	}
+	
+	private void recordWait(boolean waited, long start)
+	{
+		if (waited)
+		{
+			long wait = System.nanoTime() - start;
+			
+			waits++;
+			totalWaitNanos += wait;
+			maxWaitNanos = Math.max(maxWaitNanos, wait);
+		}
+	}
+	
+	/**
+	 * Maximum number of parsers.
+	 * 
+	 * @return The pool size.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/**
+	 * Number of parsers created so far.
+	 * 
+	 * @return The count.
+	 */
+	public int getCreated()
+	{
+		lock.lock();
+		try
+		{
+			return created;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Number of parsers currently free.
+	 * 
+	 * @return The count.
+	 */
+	public int getIdle()
+	{
+		lock.lock();
+		try
+		{
+			return idle.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Number of successful leases.
+	 * 
+	 * @return The count.
+	 */
+	public long getLeases()
+	{
+		lock.lock();
+		try
+		{
+			return leases;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Number of lease calls which had to wait for a release.
+	 * 
+	 * @return The count.
+	 */
+	public long getWaits()
+	{
+		lock.lock();
+		try
+		{
+			return waits;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Number of lease calls which timed out.
+	 * 
+	 * @return The count.
+	 */
+	public long getTimeouts()
+	{
+		lock.lock();
+		try
+		{
+			return timeouts;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Total time spent waiting for a release.
+	 * 
+	 * @return Nanoseconds.
+	 */
+	public long getTotalWaitNanos()
+	{
+		lock.lock();
+		try
+		{
+			return totalWaitNanos;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Longest single wait for a release.
+	 * 
+	 * @return Nanoseconds.
+	 */
+	public long getMaxWaitNanos()
+	{
+		lock.lock();
+		try
+		{
+			return maxWaitNanos;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+}
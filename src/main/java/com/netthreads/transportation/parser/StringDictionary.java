@@ -0,0 +1,315 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded dictionary of canonical String instances for field values which
+ * repeat across records and fetches, such as road names and statuses.
+ * 
+ * Values are looked up straight from a range of the XML parser character
+ * buffer, so a value already in the dictionary costs no allocation and every
+ * record shares the one instance. Once the dictionary holds its capacity new
+ * values are returned as fresh Strings and not added.
+ * 
+ * Lock free open addressed table, share one dictionary between parsers on
+ * any number of threads.
+ * 
+ */
+public class StringDictionary
+{
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final String EMPTY = "";
+
+	// Probes before a value is treated as not cached.
+	private static final int MAX_PROBES = 16;
+
+	private final int capacity;
+
+	private final AtomicReferenceArray<String> table;
+	private final int mask;
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	// Statistics.
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Construct dictionary with the default capacity.
+	 * 
+	 */
+	public StringDictionary()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct dictionary.
+	 * 
+	 * @param capacity
+	 *            Maximum number of values held.
+	 */
+	public StringDictionary(int capacity)
+	{
+		if (capacity < 1 || capacity > (1 << 28))
+		{
+			throw new IllegalArgumentException("Invalid dictionary capacity " + capacity);
+		}
+
+		this.capacity = capacity;
+
+		// At most half full.
+		int length = Integer.highestOneBit(capacity) << 2;
+
+		table = new AtomicReferenceArray<String>(length);
+		mask = length - 1;
+	}
+
+	/**
+	 * Canonical instance of a character range.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 * 
+	 * @return The value.
+	 */
+	public String intern(char[] buffer, int start, int length)
+	{
+		if (length == 0)
+		{
+			return EMPTY;
+		}
+
+		// Same hash as String.hashCode(), which Strings cache.
+		int hash = 0;
+		for (int index = start; index < start + length; index++)
+		{
+			hash = 31 * hash + buffer[index];
+		}
+
+		int slot = spread(hash) & mask;
+
+		for (int probe = 0; probe < MAX_PROBES;)
+		{
+			String candidate = table.get(slot);
+
+			if (candidate == null)
+			{
+				String value = new String(buffer, start, length);
+
+				if (add(slot, value))
+				{
+					misses.increment();
+
+					return value;
+				}
+
+				if (table.get(slot) == null)
+				{
+					// Full.
+					misses.increment();
+
+					return value;
+				}
+
+				// Lost a race for the slot, look at what won.
+				continue;
+			}
+
+			if (candidate.hashCode() == hash && matches(candidate, buffer, start, length))
+			{
+				hits.increment();
+
+				return candidate;
+			}
+
+			slot = (slot + 1) & mask;
+			probe++;
+		}
+
+		misses.increment();
+
+		return new String(buffer, start, length);
+	}
+
+	/**
+	 * Canonical instance of a value.
+	 * 
+	 * @param value
+	 * 
+	 * @return The value, null for null.
+	 */
+	public String intern(String value)
+	{
+		if (value == null || value.isEmpty())
+		{
+			return value;
+		}
+
+		int hash = value.hashCode();
+		int slot = spread(hash) & mask;
+
+		for (int probe = 0; probe < MAX_PROBES;)
+		{
+			String candidate = table.get(slot);
+
+			if (candidate == null)
+			{
+				if (add(slot, value) || table.get(slot) == null)
+				{
+					misses.increment();
+
+					return value;
+				}
+
+				continue;
+			}
+
+			if (candidate.hashCode() == hash && candidate.equals(value))
+			{
+				hits.increment();
+
+				return candidate;
+			}
+
+			slot = (slot + 1) & mask;
+			probe++;
+		}
+
+		misses.increment();
+
+		return value;
+	}
+
+	/**
+	 * Remove every value. Values handed out stay valid.
+	 * 
+	 */
+	public void clear()
+	{
+		for (int slot = 0; slot < table.length(); slot++)
+		{
+			if (table.getAndSet(slot, null) != null)
+			{
+				size.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Number of values held.
+	 * 
+	 * @return The size.
+	 */
+	public int getSize()
+	{
+		return size.get();
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Number of lookups which found the value.
+	 * 
+	 * @return The count.
+	 */
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Number of lookups which created a String.
+	 * 
+	 * @return The count.
+	 */
+	public long getMisses()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Fraction of lookups which found the value.
+	 * 
+	 * @return The rate, 0 to 1.
+	 */
+	public double getHitRate()
+	{
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+
+		return total > 0 ? (double) hitCount / total : 0;
+	}
+
+	/**
+	 * Claim an empty slot if below capacity.
+	 * 
+	 * @return True if the value was added.
+	 */
+	private boolean add(int slot, String value)
+	{
+		if (size.incrementAndGet() > capacity)
+		{
+			size.decrementAndGet();
+
+			return false;
+		}
+
+		if (table.compareAndSet(slot, null, value))
+		{
+			return true;
+		}
+
+		size.decrementAndGet();
+
+		return false;
+	}
+
+	private static boolean matches(String candidate, char[] buffer, int start, int length)
+	{
+		if (candidate.length() != length)
+		{
+			return false;
+		}
+
+		for (int index = 0; index < length; index++)
+		{
+			if (candidate.charAt(index) != buffer[start + index])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+}
@@ -0,0 +1,137 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Symbol table mapping tag names to integer ids.
+ * 
+ * XPP3 interns element names so a lookup is normally an identity compare
+ * against the cached hash of the name. Parsers which do not intern names fall
+ * back to String.equals. Several names can share an id.
+ * 
+ * The table is built once and is read only afterwards, so it can be shared
+ * between threads.
+ * 
+ */
+public class TagTable
+{
+	public static final int UNKNOWN = 0;
+
+	private final String[] names;
+	private final int[] ids;
+	private final int mask;
+
+	private int size = 0;
+	private int idCount = 1;
+
+	/**
+	 * Construct table.
+	 * 
+	 * @param capacity
+	 *            Maximum number of names.
+	 */
+	public TagTable(int capacity)
+	{
+		// Keep load factor at or below 0.5.
+		int length = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+
+		names = new String[length];
+		ids = new int[length];
+		mask = length - 1;
+	}
+
+	/**
+	 * Add tag name.
+	 * 
+	 * @param name
+	 * @param id
+	 *            Must be greater than UNKNOWN.
+	 * 
+	 * @return This table.
+	 */
+	public TagTable add(String name, int id)
+	{
+		if (id <= UNKNOWN)
+		{
+			throw new IllegalArgumentException("Invalid tag id " + id);
+		}
+
+		if (size * 2 >= names.length)
+		{
+			throw new IllegalStateException("Tag table full");
+		}
+
+		// Interned so that XPP3 names match on identity.
+		String key = name.intern();
+
+		int index = key.hashCode() & mask;
+		while (names[index] != null && !names[index].equals(key))
+		{
+			index = (index + 1) & mask;
+		}
+
+		if (names[index] == null)
+		{
+			size++;
+		}
+
+		names[index] = key;
+		ids[index] = id;
+
+		idCount = Math.max(idCount, id + 1);
+
+		return this;
+	}
+
+	/**
+	 * Look up tag id.
+	 * 
+	 * @param name
+	 * 
+	 * @return The id or UNKNOWN.
+	 */
+	public int lookup(String name)
+	{
+		int index = name.hashCode() & mask;
+
+		String key;
+		while ((key = names[index]) != null)
+		{
+			if (key == name || key.equals(name))
+			{
+				return ids[index];
+			}
+
+			index = (index + 1) & mask;
+		}
+
+		return UNKNOWN;
+	}
+
+	/**
+	 * Number of ids, i.e. highest id plus one.
+	 * 
+	 * @return The id count.
+	 */
+	public int getIdCount()
+	{
+		return idCount;
+	}
+
+}
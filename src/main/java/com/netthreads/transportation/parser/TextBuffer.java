@@ -0,0 +1,116 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Turns ranges of the XML parser character buffer into Strings.
+ * 
+ * Holds a scratch buffer for whitespace collapsing so one instance belongs to
+ * one pull parser and is not thread safe.
+ * 
+ */
+public class TextBuffer
+{
+	private static final String EMPTY = "";
+
+	private char[] scratch = new char[256];
+
+	/**
+	 * String of character range.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 * 
+	 * @return The text, the shared empty string for an empty range.
+	 */
+	public String toString(char[] buffer, int start, int length)
+	{
+		return length == 0 ? EMPTY : new String(buffer, start, length);
+	}
+
+	/**
+	 * String of character range with every run of two or more whitespace
+	 * characters replaced by a single space.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 * 
+	 * @return The collapsed text.
+	 */
+	public String toCollapsedString(char[] buffer, int start, int length)
+	{
+		int end = start + length;
+
+		// Only copy if there is something to collapse.
+		int index = start;
+		while (index < end - 1 && !(isWhitespace(buffer[index]) && isWhitespace(buffer[index + 1])))
+		{
+			index++;
+		}
+
+		if (index >= end - 1)
+		{
+			return toString(buffer, start, length);
+		}
+
+		if (scratch.length < length)
+		{
+			scratch = new char[Math.max(length, scratch.length * 2)];
+		}
+
+		int count = index - start;
+		System.arraycopy(buffer, start, scratch, 0, count);
+
+		while (index < end)
+		{
+			char c = buffer[index];
+
+			if (isWhitespace(c) && index + 1 < end && isWhitespace(buffer[index + 1]))
+			{
+				while (index < end && isWhitespace(buffer[index]))
+				{
+					index++;
+				}
+
+				scratch[count++] = ' ';
+			}
+			else
+			{
+				scratch[count++] = c;
+				index++;
+			}
+		}
+
+		return new String(scratch, 0, count);
+	}
+
+	/**
+	 * Whitespace as matched by the regular expression \s.
+	 * 
+	 * @param c
+	 * 
+	 * @return True if whitespace.
+	 */
+	public static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+	}
+}
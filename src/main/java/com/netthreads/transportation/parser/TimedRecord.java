@@ -0,0 +1,42 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+/**
+ * Record with a validity period.
+ * 
+ */
+public interface TimedRecord extends FeedRecord
+{
+	/**
+	 * Start of the validity period.
+	 * 
+	 * @return Milliseconds since the epoch or ValueParser.INVALID_TIME if
+	 *         missing.
+	 */
+	public long getOverallStartTimeMillis();
+
+	/**
+	 * End of the validity period.
+	 * 
+	 * @return Milliseconds since the epoch or ValueParser.INVALID_TIME if
+	 *         open ended.
+	 */
+	public long getOverallEndTimeMillis();
+}
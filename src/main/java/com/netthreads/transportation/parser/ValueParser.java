@@ -0,0 +1,456 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser;
+
+import java.util.TimeZone;
+
+/**
+ * Allocation free parsing of the numeric and time values in the feeds.
+ * 
+ * Malformed or missing values never throw, they return the INVALID sentinel
+ * for the type.
+ * 
+ */
+public final class ValueParser
+{
+	public static final int INVALID_INT = Integer.MIN_VALUE;
+	public static final float INVALID_FLOAT = Float.NaN;
+	public static final long INVALID_TIME = Long.MIN_VALUE;
+
+	// Fixed point coordinates are in millionths of a degree.
+	public static final int FIXED_POINT_SCALE = 1000000;
+	private static final int FIXED_POINT_DIGITS = 6;
+
+	// Feed times without an offset are Glasgow local time.
+	public static final TimeZone FEED_TIME_ZONE = TimeZone.getTimeZone("Europe/London");
+
+	private static final long MILLIS_PER_SECOND = 1000L;
+	private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+	private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+	private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18 };
+
+	private ValueParser()
+	{
+	}
+
+	/**
+	 * Parse optionally signed decimal integer.
+	 * 
+	 * @param text
+	 * 
+	 * @return The value or INVALID_INT.
+	 */
+	public static int parseInt(CharSequence text)
+	{
+		if (text == null)
+		{
+			return INVALID_INT;
+		}
+
+		int length = text.length();
+		int index = 0;
+		boolean negative = false;
+
+		if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+'))
+		{
+			negative = text.charAt(0) == '-';
+			index++;
+		}
+
+		if (index == length)
+		{
+			return INVALID_INT;
+		}
+
+		long value = 0;
+		for (; index < length; index++)
+		{
+			int digit = text.charAt(index) - '0';
+			if (digit < 0 || digit > 9)
+			{
+				return INVALID_INT;
+			}
+
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE)
+			{
+				return INVALID_INT;
+			}
+		}
+
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Parse decimal number without exponent, e.g. "46" or "-4.25".
+	 * 
+	 * @param text
+	 * 
+	 * @return The value or INVALID_FLOAT.
+	 */
+	public static float parseFloat(CharSequence text)
+	{
+		double value = parseDouble(text);
+
+		return Double.isNaN(value) ? INVALID_FLOAT : (float) value;
+	}
+
+	/**
+	 * Parse decimal number without exponent.
+	 * 
+	 * @param text
+	 * 
+	 * @return The value or NaN.
+	 */
+	public static double parseDouble(CharSequence text)
+	{
+		if (text == null)
+		{
+			return Double.NaN;
+		}
+
+		int length = text.length();
+		int index = 0;
+		boolean negative = false;
+
+		if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+'))
+		{
+			negative = text.charAt(0) == '-';
+			index++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+
+		for (; index < length; index++)
+		{
+			char c = text.charAt(index);
+
+			if (c == '.' && fractionDigits < 0)
+			{
+				fractionDigits = 0;
+			}
+			else if (c >= '0' && c <= '9')
+			{
+				// Ignore digits beyond what a double can hold.
+				if (digits < 18)
+				{
+					mantissa = mantissa * 10 + (c - '0');
+					digits++;
+
+					if (fractionDigits >= 0)
+					{
+						fractionDigits++;
+					}
+				}
+				else if (fractionDigits < 0)
+				{
+					return Double.NaN;
+				}
+			}
+			else
+			{
+				return Double.NaN;
+			}
+		}
+
+		if (digits == 0)
+		{
+			return Double.NaN;
+		}
+
+		double value = (fractionDigits > 0) ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parse decimal degrees into fixed point millionths of a degree, rounding
+	 * half away from zero.
+	 * 
+	 * @param text
+	 * 
+	 * @return The value or INVALID_INT.
+	 */
+	public static int parseFixedPoint(CharSequence text)
+	{
+		if (text == null)
+		{
+			return INVALID_INT;
+		}
+
+		int length = text.length();
+		int index = 0;
+		boolean negative = false;
+
+		if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+'))
+		{
+			negative = text.charAt(0) == '-';
+			index++;
+		}
+
+		long value = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		boolean roundUp = false;
+
+		for (; index < length; index++)
+		{
+			char c = text.charAt(index);
+
+			if (c == '.' && fractionDigits < 0)
+			{
+				fractionDigits = 0;
+			}
+			else if (c >= '0' && c <= '9')
+			{
+				digits++;
+
+				if (fractionDigits < FIXED_POINT_DIGITS)
+				{
+					value = value * 10 + (c - '0');
+
+					if (fractionDigits >= 0)
+					{
+						fractionDigits++;
+					}
+
+					if (value > Integer.MAX_VALUE)
+					{
+						return INVALID_INT;
+					}
+				}
+				else if (fractionDigits == FIXED_POINT_DIGITS)
+				{
+					// First dropped digit decides rounding.
+					roundUp = c >= '5';
+					fractionDigits++;
+				}
+			}
+			else
+			{
+				return INVALID_INT;
+			}
+		}
+
+		if (digits == 0)
+		{
+			return INVALID_INT;
+		}
+
+		// Scale up to six decimal places.
+		for (int i = Math.max(fractionDigits, 0); i < FIXED_POINT_DIGITS; i++)
+		{
+			value *= 10;
+		}
+
+		if (roundUp)
+		{
+			value++;
+		}
+
+		if (value > Integer.MAX_VALUE)
+		{
+			return INVALID_INT;
+		}
+
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Parse ISO-8601 date time, e.g. "2015-03-06T10:15:00". Seconds, fraction
+	 * of seconds and an offset ("Z", "+01:00", "+0100") are optional. Times
+	 * without an offset are in the FEED_TIME_ZONE.
+	 * 
+	 * @param text
+	 * 
+	 * @return Milliseconds since the epoch or INVALID_TIME.
+	 */
+	public static long parseDateTime(CharSequence text)
+	{
+		if (text == null || text.length() < 16)
+		{
+			return INVALID_TIME;
+		}
+
+		int year = digits(text, 0, 4);
+		int month = digits(text, 5, 2);
+		int day = digits(text, 8, 2);
+		int hour = digits(text, 11, 2);
+		int minute = digits(text, 14, 2);
+
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour < 0 || hour > 23 || minute < 0 || minute > 59)
+		{
+			return INVALID_TIME;
+		}
+
+		if (text.charAt(4) != '-' || text.charAt(7) != '-' || (text.charAt(10) != 'T' && text.charAt(10) != ' ') || text.charAt(13) != ':')
+		{
+			return INVALID_TIME;
+		}
+
+		int length = text.length();
+		int index = 16;
+
+		int second = 0;
+		int millis = 0;
+
+		if (index < length && text.charAt(index) == ':')
+		{
+			second = digits(text, index + 1, 2);
+			if (second < 0 || second > 59)
+			{
+				return INVALID_TIME;
+			}
+			index += 3;
+
+			if (index < length && (text.charAt(index) == '.' || text.charAt(index) == ','))
+			{
+				index++;
+
+				int start = index;
+				int scale = 100;
+				while (index < length && text.charAt(index) >= '0' && text.charAt(index) <= '9')
+				{
+					millis += (text.charAt(index) - '0') * scale;
+					scale /= 10;
+					index++;
+				}
+
+				if (index == start)
+				{
+					return INVALID_TIME;
+				}
+			}
+		}
+
+		long local = (daysFromCivil(year, month, day) * MILLIS_PER_DAY) + (hour * MILLIS_PER_HOUR) + (minute * MILLIS_PER_MINUTE) + (second * MILLIS_PER_SECOND) + millis;
+
+		if (index == length)
+		{
+			// No offset, use feed local time.
+			return local - FEED_TIME_ZONE.getOffset(local - FEED_TIME_ZONE.getRawOffset());
+		}
+
+		char zone = text.charAt(index);
+		if (zone == 'Z' && index + 1 == length)
+		{
+			return local;
+		}
+
+		if (zone == '+' || zone == '-')
+		{
+			int offsetHours = digits(text, index + 1, 2);
+			int offsetMinutes;
+
+			if (index + 6 == length && text.charAt(index + 3) == ':')
+			{
+				offsetMinutes = digits(text, index + 4, 2);
+			}
+			else if (index + 5 == length)
+			{
+				offsetMinutes = digits(text, index + 3, 2);
+			}
+			else if (index + 3 == length)
+			{
+				offsetMinutes = 0;
+			}
+			else
+			{
+				return INVALID_TIME;
+			}
+
+			if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59)
+			{
+				return INVALID_TIME;
+			}
+
+			long offset = (offsetHours * MILLIS_PER_HOUR) + (offsetMinutes * MILLIS_PER_MINUTE);
+
+			return zone == '+' ? local - offset : local + offset;
+		}
+
+		return INVALID_TIME;
+	}
+
+	/**
+	 * Read fixed number of decimal digits.
+	 * 
+	 * @return The value or -1 if malformed.
+	 */
+	private static int digits(CharSequence text, int start, int count)
+	{
+		if (start + count > text.length())
+		{
+			return -1;
+		}
+
+		int value = 0;
+		for (int index = start; index < start + count; index++)
+		{
+			int digit = text.charAt(index) - '0';
+			if (digit < 0 || digit > 9)
+			{
+				return -1;
+			}
+
+			value = value * 10 + digit;
+		}
+
+		return value;
+	}
+
+	private static int daysInMonth(int year, int month)
+	{
+		switch (month)
+		{
+			case 2:
+				boolean leap = (year % 4 == 0) && ((year % 100 != 0) || (year % 400 == 0));
+				return leap ? 29 : 28;
+
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+
+			default:
+				return 31;
+		}
+	}
+
+	/**
+	 * Days since 1970-01-01 of a proleptic Gregorian date.
+	 * 
+	 */
+	private static long daysFromCivil(int year, int month, int day)
+	{
+		year -= (month <= 2) ? 1 : 0;
+
+		long era = (year >= 0 ? year : year - 399) / 400;
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
@@ -18,11 +18,24 @@
  */
 package com.netthreads.transportation.parser.data;
 
+import com.netthreads.transportation.parser.ContentHash;
+import com.netthreads.transportation.parser.LocatedRecord;
+import com.netthreads.transportation.parser.ValueParser;
+
 /**
  * Car Park data class.
  * 
+ * The numeric values are also parsed once, when set, into primitive fields.
+ * Missing or malformed values read as the ValueParser INVALID sentinels.
+ * 
+ * The text is kept alongside the primitives, which costs about 20 bytes more
+ * per record. The String getters return the feed text as it was sent,
+ * including malformed values and the original decimal places, and the
+ * content hash and record diff compare that text. Formatting it back from
+ * the primitives could not reproduce either.
+ * 
  */
-public class CarParkData
+public class CarParkData implements LocatedRecord
 {
 	// ------------------------------------------------------------------------
 	// Constants
@@ -36,6 +49,26 @@ public class CarParkData
 	public static final String TEXT_CAR_PARK_STATUS = "carParkStatus";
 	public static final String TEXT_OCCUPIED_SPACES = "occupiedSpaces";
 	public static final String TEXT_TOTAL_CAPACITY = "totalCapacity";
+	public static final String TEXT_VALIDITY = "validity";
+	public static final String TEXT_GROUP_OF_LOCATIONS = "groupOfLocations";
+
+	// Common carParkStatus values.
+	public static final String STATUS_ENOUGH_SPACES_AVAILABLE = "enoughSpacesAvailable";
+	public static final String STATUS_SPACES_AVAILABLE = "spacesAvailable";
+	public static final String STATUS_ALMOST_FULL = "almostFull";
+	public static final String STATUS_CAR_PARK_FULL = "carParkFull";
+	public static final String STATUS_CAR_PARK_CLOSED = "carParkClosed";
+
+	// Field projection bits, the id is always read.
+	public static final int FIELD_ID = 1;
+	public static final int FIELD_LATITUDE = 1 << 1;
+	public static final int FIELD_LONGITUDE = 1 << 2;
+	public static final int FIELD_CAR_PARK_IDENTITY = 1 << 3;
+	public static final int FIELD_CAR_PARK_OCCUPANCY = 1 << 4;
+	public static final int FIELD_CAR_PARK_STATUS = 1 << 5;
+	public static final int FIELD_OCCUPIED_SPACES = 1 << 6;
+	public static final int FIELD_TOTAL_CAPACITY = 1 << 7;
+	public static final int FIELD_ALL = (1 << 8) - 1;
 
 	private String id;
 	private String carParkIdentity;
@@ -46,6 +79,18 @@ public class CarParkData
 	private String longitude;
 	private String totalCapacity;
 
+	// Typed values.
+	private float carParkOccupancyValue = ValueParser.INVALID_FLOAT;
+	private int occupiedSpacesValue = ValueParser.INVALID_INT;
+	private int totalCapacityValue = ValueParser.INVALID_INT;
+	private int latitudeE6 = ValueParser.INVALID_INT;
+	private int longitudeE6 = ValueParser.INVALID_INT;
+
+	// Content hash, computed on first use after a change.
+	private long contentHash;
+	private boolean hashed = false;
+
+	@Override
 	public String getId()
 	{
 		return id;
@@ -54,6 +99,7 @@ public class CarParkData
 	public void setId(String id)
 	{
 		this.id = id;
+		this.hashed = false;
 	}
 
 	public String getCarParkIdentity()
@@ -64,6 +110,7 @@ public class CarParkData
 	public void setCarParkIdentity(String carParkIdentity)
 	{
 		this.carParkIdentity = carParkIdentity;
+		this.hashed = false;
 	}
 
 	public String getCarParkOccupancy()
@@ -74,6 +121,8 @@ public class CarParkData
 	public void setCarParkOccupancy(String carParkOccupancy)
 	{
 		this.carParkOccupancy = carParkOccupancy;
+		this.carParkOccupancyValue = ValueParser.parseFloat(carParkOccupancy);
+		this.hashed = false;
 	}
 
 	public String getCarParkStatus()
@@ -84,6 +133,7 @@ public class CarParkData
 	public void setCarParkStatus(String carParkStatus)
 	{
 		this.carParkStatus = carParkStatus;
+		this.hashed = false;
 	}
 
 	public String getOccupiedSpaces()
@@ -94,6 +144,8 @@ public class CarParkData
 	public void setOccupiedSpaces(String occupiedSpaces)
 	{
 		this.occupiedSpaces = occupiedSpaces;
+		this.occupiedSpacesValue = ValueParser.parseInt(occupiedSpaces);
+		this.hashed = false;
 	}
 
 	public String getTotalCapacity()
@@ -104,6 +156,8 @@ public class CarParkData
 	public void setTotalCapacity(String totalCapacity)
 	{
 		this.totalCapacity = totalCapacity;
+		this.totalCapacityValue = ValueParser.parseInt(totalCapacity);
+		this.hashed = false;
 	}
 
 	public String getLatitude()
@@ -114,6 +168,8 @@ public class CarParkData
 	public void setLatitude(String latitude)
 	{
 		this.latitude = latitude;
+		this.latitudeE6 = ValueParser.parseFixedPoint(latitude);
+		this.hashed = false;
 	}
 
 	public String getLongitude()
@@ -124,6 +180,102 @@ public class CarParkData
 	public void setLongitude(String longitude)
 	{
 		this.longitude = longitude;
+		this.longitudeE6 = ValueParser.parseFixedPoint(longitude);
+		this.hashed = false;
+	}
+
+	/**
+	 * Occupancy percentage.
+	 * 
+	 * @return The value or ValueParser.INVALID_FLOAT (NaN).
+	 */
+	public float getCarParkOccupancyValue()
+	{
+		return carParkOccupancyValue;
+	}
+
+	/**
+	 * Occupied spaces.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT.
+	 */
+	public int getOccupiedSpacesValue()
+	{
+		return occupiedSpacesValue;
+	}
+
+	/**
+	 * Total capacity.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT.
+	 */
+	public int getTotalCapacityValue()
+	{
+		return totalCapacityValue;
+	}
+
+	/**
+	 * Free spaces, total capacity less occupied spaces.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT if either is missing.
+	 */
+	public int getFreeSpacesValue()
+	{
+		if (totalCapacityValue == ValueParser.INVALID_INT || occupiedSpacesValue == ValueParser.INVALID_INT)
+		{
+			return ValueParser.INVALID_INT;
+		}
+
+		return totalCapacityValue - occupiedSpacesValue;
+	}
+
+	/**
+	 * Latitude in millionths of a degree.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT.
+	 */
+	@Override
+	public int getLatitudeE6()
+	{
+		return latitudeE6;
+	}
+
+	/**
+	 * Longitude in millionths of a degree.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT.
+	 */
+	@Override
+	public int getLongitudeE6()
+	{
+		return longitudeE6;
+	}
+
+	/**
+	 * Hash of every field, cached until a field changes.
+	 * 
+	 * @return The hash.
+	 */
+	@Override
+	public long getContentHash()
+	{
+		if (!hashed)
+		{
+			long hash = ContentHash.START;
+			hash = ContentHash.add(hash, id);
+			hash = ContentHash.add(hash, carParkIdentity);
+			hash = ContentHash.add(hash, carParkOccupancy);
+			hash = ContentHash.add(hash, carParkStatus);
+			hash = ContentHash.add(hash, occupiedSpaces);
+			hash = ContentHash.add(hash, latitude);
+			hash = ContentHash.add(hash, longitude);
+			hash = ContentHash.add(hash, totalCapacity);
+
+			contentHash = hash;
+			hashed = true;
+		}
+
+		return contentHash;
 	}
 
 	@Override
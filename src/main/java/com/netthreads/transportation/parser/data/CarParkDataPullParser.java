@@ -20,7 +20,10 @@ package com.netthreads.transportation.parser.data;
 
 import org.xmlpull.v1.XmlPullParser;
 
+import com.netthreads.transportation.parser.ElementStack;
 import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.StringDictionary;
+import com.netthreads.transportation.parser.TextBuffer;
 
 /**
  * This is a _simple_ XML Pull parser for Glasgow Car Park occupancy.
@@ -34,15 +37,20 @@ public class CarParkDataPullParser implements PullParser<CarParkData>
 {
 	private XmlPullParser parser = null;
 
-	// In tag
-	private boolean inSituationRecord = false;
-	private boolean inLatitude = false;
-	private boolean inLongitude = false;
-	private boolean inCarParkIdentity = false;
-	private boolean inCarParkOccupancy = false;
-	private boolean inCarParkStatus = false;
-	private boolean inOccupiedSpaces = false;
-	private boolean inTotalCapacity = false;
+	// Open tags.
+	private final ElementStack stack = new ElementStack(CarParkDataTags.TABLE.getIdCount());
+
+	// Field projection, skip[tag id] is true for elements holding no
+	// projected field.
+	private int projection = CarParkData.FIELD_ALL;
+	private boolean[] skip = CarParkDataTags.skipTable(projection);
+	private boolean skipping = false;
+
+	// Text conversion.
+	private final TextBuffer textBuffer = new TextBuffer();
+
+	// Canonical instances of repeated values, null for none.
+	private StringDictionary dictionary = null;
 
 	// Record values.
 	private String id;
@@ -73,45 +81,32 @@ public class CarParkDataPullParser implements PullParser<CarParkData>
 	@Override
 	public boolean processStartTag(String tag)
 	{
-		if (tag.equals(CarParkData.TEXT_SITUATION_RECORD))
-		{
-			inSituationRecord = true;
+		int tagId = CarParkDataTags.TABLE.lookup(tag);
+
+		stack.push(parser.getDepth(), tagId);
+
+		skipping = skip[tagId];
 
+		if (tagId == CarParkDataTags.SITUATION_RECORD)
+		{
 			String namespace = parser.getNamespace();
 			id = parser.getAttributeValue(namespace, CarParkData.TEXT_ID);
 		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_LATITUDE))
-		{
-			inLatitude = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_LONGITUDE))
-		{
-			inLongitude = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_CAR_PARK_IDENTITY))
-		{
-			inCarParkIdentity = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_CAR_PARK_OCCUPANCY))
-		{
-			inCarParkOccupancy = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_CAR_PARK_STATUS))
-		{
-			inCarParkStatus = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_OCCUPIED_SPACES))
-		{
-			inOccupiedSpaces = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_TOTAL_CAPACITY))
-		{
-			inTotalCapacity = true;
-		}
 
 		return false;
 	}
 
+	/**
+	 * Skip element if it holds no projected field.
+	 * 
+	 * @return True to skip.
+	 */
+	@Override
+	public boolean skipElement()
+	{
+		return skipping;
+	}
+
 	/**
 	 * Process end tag
 	 * 
@@ -120,43 +115,13 @@ public class CarParkDataPullParser implements PullParser<CarParkData>
 	@Override
 	public boolean processEndTag(String tag)
 	{
-		boolean ready = false;
-		if (tag.equals(CarParkData.TEXT_SITUATION_RECORD))
-		{
-			inSituationRecord = false;
-
-			ready = true;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_LATITUDE))
-		{
-			inLatitude = false;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_LONGITUDE))
+		int tagId = stack.pop(parser.getDepth());
+		if (tagId == ElementStack.NOT_FOUND)
 		{
-			inLongitude = false;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_CAR_PARK_IDENTITY))
-		{
-			inCarParkIdentity = false;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_CAR_PARK_OCCUPANCY))
-		{
-			inCarParkOccupancy = false;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_CAR_PARK_STATUS))
-		{
-			inCarParkStatus = false;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_OCCUPIED_SPACES))
-		{
-			inOccupiedSpaces = false;
-		}
-		else if (inSituationRecord && tag.equals(CarParkData.TEXT_TOTAL_CAPACITY))
-		{
-			inTotalCapacity = false;
+			tagId = CarParkDataTags.TABLE.lookup(tag);
 		}
 
-		return ready;
+		return tagId == CarParkDataTags.SITUATION_RECORD;
 	}
 
 	/**
@@ -167,33 +132,59 @@ public class CarParkDataPullParser implements PullParser<CarParkData>
 	@Override
 	public void processText(String text)
 	{
-		if (inSituationRecord && inLongitude)
-		{
-			longitude = text;
-		}
-		else if (inSituationRecord && inLatitude)
-		{
-			latitude = text;
-		}
-		else if (inSituationRecord && inCarParkIdentity)
-		{
-			carParkIdentity = text;
-		}
-		else if (inSituationRecord && inCarParkOccupancy)
-		{
-			carParkOccupancy = text;
-		}
-		else if (inSituationRecord && inCarParkStatus)
-		{
-			carParkStatus = text;
-		}
-		else if (inSituationRecord && inOccupiedSpaces)
+		char[] buffer = text.toCharArray();
+
+		processText(buffer, 0, buffer.length);
+	}
+
+	/**
+	 * Collect text values depending on conditions, only creating a String for
+	 * values we keep.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 */
+	@Override
+	public void processText(char[] buffer, int start, int length)
+	{
+		if (!stack.isOpen(CarParkDataTags.SITUATION_RECORD))
 		{
-			occupiedSpaces = text;
+			return;
 		}
-		else if (inSituationRecord && inTotalCapacity)
+
+		switch (stack.top())
 		{
-			totalCapacity = text;
+			case CarParkDataTags.LONGITUDE:
+				longitude = textBuffer.toString(buffer, start, length);
+				break;
+
+			case CarParkDataTags.LATITUDE:
+				latitude = textBuffer.toString(buffer, start, length);
+				break;
+
+			case CarParkDataTags.CAR_PARK_IDENTITY:
+				carParkIdentity = textBuffer.toString(buffer, start, length);
+				break;
+
+			case CarParkDataTags.CAR_PARK_OCCUPANCY:
+				carParkOccupancy = textBuffer.toString(buffer, start, length);
+				break;
+
+			case CarParkDataTags.CAR_PARK_STATUS:
+				carParkStatus = (dictionary != null) ? dictionary.intern(buffer, start, length) : textBuffer.toString(buffer, start, length);
+				break;
+
+			case CarParkDataTags.OCCUPIED_SPACES:
+				occupiedSpaces = textBuffer.toString(buffer, start, length);
+				break;
+
+			case CarParkDataTags.TOTAL_CAPACITY:
+				totalCapacity = textBuffer.toString(buffer, start, length);
+				break;
+
+			default:
+				break;
 		}
 	}
 
@@ -235,6 +226,52 @@ public class CarParkDataPullParser implements PullParser<CarParkData>
 		totalCapacity = "";
 	}
 
+	/**
+	 * Read all fields, without a dictionary.
+	 * 
+	 */
+	@Override
+	public void restoreDefaults()
+	{
+		setProjection(CarParkData.FIELD_ALL);
+		dictionary = null;
+	}
+
+	/**
+	 * Read only the given fields, the others are left empty. Elements which
+	 * hold no projected field are skipped unread.
+	 * 
+	 * @param fields
+	 *            CarParkData FIELD bits.
+	 */
+	public void setProjection(int fields)
+	{
+		projection = fields;
+		skip = CarParkDataTags.skipTable(fields);
+	}
+
+	public int getProjection()
+	{
+		return projection;
+	}
+
+	/**
+	 * Share one instance of each status, looked up without creating a String
+	 * when already known.
+	 * 
+	 * @param dictionary
+	 *            The dictionary or null to create a String for every value.
+	 */
+	public void setDictionary(StringDictionary dictionary)
+	{
+		this.dictionary = dictionary;
+	}
+
+	public StringDictionary getDictionary()
+	{
+		return dictionary;
+	}
+
 	/**
 	 * Inside tag
 	 * 
@@ -243,7 +280,7 @@ public class CarParkDataPullParser implements PullParser<CarParkData>
 	@Override
 	public boolean inTarget()
 	{
-		return inSituationRecord || inLatitude || inLongitude || inCarParkIdentity || inCarParkOccupancy || inCarParkStatus || inOccupiedSpaces || inTotalCapacity;
+		return stack.inTrackedElement();
 	}
 
 }
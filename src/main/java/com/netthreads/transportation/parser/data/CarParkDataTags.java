@@ -0,0 +1,90 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser.data;
+
+import com.netthreads.transportation.parser.TagTable;
+
+/**
+ * Tag ids of the car park data pull parser.
+ * 
+ */
+final class CarParkDataTags
+{
+	public static final int SITUATION_RECORD = 1;
+	public static final int LATITUDE = 2;
+	public static final int LONGITUDE = 3;
+	public static final int CAR_PARK_IDENTITY = 4;
+	public static final int CAR_PARK_OCCUPANCY = 5;
+	public static final int CAR_PARK_STATUS = 6;
+	public static final int OCCUPIED_SPACES = 7;
+	public static final int TOTAL_CAPACITY = 8;
+	public static final int VALIDITY = 9;
+	public static final int GROUP_OF_LOCATIONS = 10;
+
+	private static final int COORDINATE_FIELDS = CarParkData.FIELD_LATITUDE | CarParkData.FIELD_LONGITUDE;
+
+	public static final TagTable TABLE = new TagTable(10)
+	        .add(CarParkData.TEXT_SITUATION_RECORD, SITUATION_RECORD)
+	        .add(CarParkData.TEXT_LATITUDE, LATITUDE)
+	        .add(CarParkData.TEXT_LONGITUDE, LONGITUDE)
+	        .add(CarParkData.TEXT_CAR_PARK_IDENTITY, CAR_PARK_IDENTITY)
+	        .add(CarParkData.TEXT_CAR_PARK_OCCUPANCY, CAR_PARK_OCCUPANCY)
+	        .add(CarParkData.TEXT_CAR_PARK_STATUS, CAR_PARK_STATUS)
+	        .add(CarParkData.TEXT_OCCUPIED_SPACES, OCCUPIED_SPACES)
+	        .add(CarParkData.TEXT_TOTAL_CAPACITY, TOTAL_CAPACITY)
+	        .add(CarParkData.TEXT_VALIDITY, VALIDITY)
+	        .add(CarParkData.TEXT_GROUP_OF_LOCATIONS, GROUP_OF_LOCATIONS);
+
+	private CarParkDataTags()
+	{
+	}
+
+	/**
+	 * Elements to skip for a field projection, indexed by tag id. An element
+	 * is skipped when nothing inside it is projected.
+	 * 
+	 * @param fields
+	 *            CarParkData FIELD bits.
+	 * 
+	 * @return True for each tag id to skip.
+	 */
+	static boolean[] skipTable(int fields)
+	{
+		boolean[] skip = new boolean[TABLE.getIdCount()];
+
+		// Never read.
+		skip[VALIDITY] = true;
+
+		skip[GROUP_OF_LOCATIONS] = !projected(fields, COORDINATE_FIELDS);
+		skip[LATITUDE] = !projected(fields, CarParkData.FIELD_LATITUDE);
+		skip[LONGITUDE] = !projected(fields, CarParkData.FIELD_LONGITUDE);
+		skip[CAR_PARK_IDENTITY] = !projected(fields, CarParkData.FIELD_CAR_PARK_IDENTITY);
+		skip[CAR_PARK_OCCUPANCY] = !projected(fields, CarParkData.FIELD_CAR_PARK_OCCUPANCY);
+		skip[CAR_PARK_STATUS] = !projected(fields, CarParkData.FIELD_CAR_PARK_STATUS);
+		skip[OCCUPIED_SPACES] = !projected(fields, CarParkData.FIELD_OCCUPIED_SPACES);
+		skip[TOTAL_CAPACITY] = !projected(fields, CarParkData.FIELD_TOTAL_CAPACITY);
+
+		return skip;
+	}
+
+	private static boolean projected(int fields, int wanted)
+	{
+		return (fields & wanted) != 0;
+	}
+}
@@ -18,11 +18,26 @@
  */
 package com.netthreads.transportation.parser.data;
 
+import com.netthreads.transportation.parser.ContentHash;
+import com.netthreads.transportation.parser.LocatedRecord;
+import com.netthreads.transportation.parser.TimedRecord;
+import com.netthreads.transportation.parser.ValueParser;
+
 /**
  * Traffic data class.
  * 
+ * The coordinates and times are also parsed once, when set, into primitive
+ * fields. Missing or malformed values read as the ValueParser INVALID
+ * sentinels.
+ * 
+ * The text is kept alongside the primitives, which costs about 24 bytes more
+ * per record. The String getters return the feed text as it was sent,
+ * including malformed values and the time zone offsets, and the content hash
+ * and record diff compare that text. Formatting it back from the primitives
+ * could not reproduce either.
+ * 
  */
-public class TrafficData
+public class TrafficData implements LocatedRecord, TimedRecord
 {
 	// ------------------------------------------------------------------------
 	// Constants
@@ -47,6 +62,22 @@ public class TrafficData
 	public static final String TAG_TOWN_NAME = "townName";
 	public static final String TAG_OVERALL_START_TIME = "overallStartTime";
 	public static final String TAG_OVERALL_END_TIME = "overallEndTime";
+	public static final String TAG_VALIDITY = "validity";
+	public static final String TAG_GROUP_OF_LOCATIONS = "groupOfLocations";
+	public static final String TAG_POINT_COORDINATES = "pointCoordinates";
+	
+	// Field projection bits, the id is always read.
+	public static final int FIELD_ID = 1;
+	public static final int FIELD_DESCRIPTION = 1 << 1;
+	public static final int FIELD_LOCAL_LINK_NAME = 1 << 2;
+	public static final int FIELD_LINK_NAME = 1 << 3;
+	public static final int FIELD_TOWN_NAME = 1 << 4;
+	public static final int FIELD_TYPE = 1 << 5;
+	public static final int FIELD_LATITUDE = 1 << 6;
+	public static final int FIELD_LONGITUDE = 1 << 7;
+	public static final int FIELD_OVERALL_START_TIME = 1 << 8;
+	public static final int FIELD_OVERALL_END_TIME = 1 << 9;
+	public static final int FIELD_ALL = (1 << 10) - 1;
 	
 	public static final String TEXT_ID = "id";
 	public static final String TEXT_UNKNOWN = "n/a";
@@ -62,6 +93,17 @@ public class TrafficData
 	private String overallStartTime;
 	private String overallEndTime;
 	
+	// Typed values.
+	private int latitudeE6 = ValueParser.INVALID_INT;
+	private int longitudeE6 = ValueParser.INVALID_INT;
+	private long overallStartTimeMillis = ValueParser.INVALID_TIME;
+	private long overallEndTimeMillis = ValueParser.INVALID_TIME;
+	
+	// Content hash, computed on first use after a change.
+	private long contentHash;
+	private boolean hashed = false;
+	
+	@Override
 	public String getId()
 	{
 		return id;
@@ -70,6 +112,7 @@ public class TrafficData
 	public void setId(String id)
 	{
 		this.id = id;
+		this.hashed = false;
 	}
 	
 	public String getLatitude()
@@ -80,6 +123,8 @@ public class TrafficData
 	public void setLatitude(String latitude)
 	{
 		this.latitude = latitude;
+		this.latitudeE6 = ValueParser.parseFixedPoint(latitude);
+		this.hashed = false;
 	}
 	
 	public String getLongitude()
@@ -90,6 +135,8 @@ public class TrafficData
 	public void setLongitude(String longitude)
 	{
 		this.longitude = longitude;
+		this.longitudeE6 = ValueParser.parseFixedPoint(longitude);
+		this.hashed = false;
 	}
 	
 	public String getDescription()
@@ -100,6 +147,7 @@ public class TrafficData
 	public void setDescription(String description)
 	{
 		this.description = description;
+		this.hashed = false;
 	}
 	
 	public String getType()
@@ -110,6 +158,7 @@ public class TrafficData
 	public void setType(String type)
 	{
 		this.type = type;
+		this.hashed = false;
 	}
 	
 	public String getOverallStartTime()
@@ -120,6 +169,8 @@ public class TrafficData
 	public void setOverallStartTime(String overallStartTime)
 	{
 		this.overallStartTime = overallStartTime;
+		this.overallStartTimeMillis = ValueParser.parseDateTime(overallStartTime);
+		this.hashed = false;
 	}
 	
 	public String getOverallEndTime()
@@ -130,6 +181,8 @@ public class TrafficData
 	public void setOverallEndTime(String overallEndTime)
 	{
 		this.overallEndTime = overallEndTime;
+		this.overallEndTimeMillis = ValueParser.parseDateTime(overallEndTime);
+		this.hashed = false;
 	}
 	
 	public String getLocalLinkName()
@@ -140,6 +193,7 @@ public class TrafficData
 	public void setLocalLinkName(String localLinkName)
 	{
 		this.localLinkName = localLinkName;
+		this.hashed = false;
 	}
 	
 	public String getLinkName()
@@ -150,6 +204,7 @@ public class TrafficData
 	public void setLinkName(String linkName)
 	{
 		this.linkName = linkName;
+		this.hashed = false;
 	}
 	
 	public String getTownName()
@@ -160,6 +215,80 @@ public class TrafficData
 	public void setTownName(String townName)
 	{
 		this.townName = townName;
+		this.hashed = false;
+	}
+	
+	/**
+	 * Latitude in millionths of a degree.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT.
+	 */
+	@Override
+	public int getLatitudeE6()
+	{
+		return latitudeE6;
+	}
+	
+	/**
+	 * Longitude in millionths of a degree.
+	 * 
+	 * @return The value or ValueParser.INVALID_INT.
+	 */
+	@Override
+	public int getLongitudeE6()
+	{
+		return longitudeE6;
+	}
+	
+	/**
+	 * Start time.
+	 * 
+	 * @return Milliseconds since the epoch or ValueParser.INVALID_TIME.
+	 */
+	@Override
+	public long getOverallStartTimeMillis()
+	{
+		return overallStartTimeMillis;
+	}
+	
+	/**
+	 * End time.
+	 * 
+	 * @return Milliseconds since the epoch or ValueParser.INVALID_TIME.
+	 */
+	@Override
+	public long getOverallEndTimeMillis()
+	{
+		return overallEndTimeMillis;
+	}
+	
+	/**
+	 * Hash of every field, cached until a field changes.
+	 * 
+	 * @return The hash.
+	 */
+	@Override
+	public long getContentHash()
+	{
+		if (!hashed)
+		{
+			long hash = ContentHash.START;
+			hash = ContentHash.add(hash, id);
+			hash = ContentHash.add(hash, description);
+			hash = ContentHash.add(hash, localLinkName);
+			hash = ContentHash.add(hash, linkName);
+			hash = ContentHash.add(hash, townName);
+			hash = ContentHash.add(hash, type);
+			hash = ContentHash.add(hash, latitude);
+			hash = ContentHash.add(hash, longitude);
+			hash = ContentHash.add(hash, overallStartTime);
+			hash = ContentHash.add(hash, overallEndTime);
+			
+			contentHash = hash;
+			hashed = true;
+		}
+		
+		return contentHash;
 	}
 	
 	@Override
@@ -20,11 +20,17 @@ package com.netthreads.transportation.parser.data;
 
 import org.xmlpull.v1.XmlPullParser;
 
+import com.netthreads.transportation.parser.ElementStack;
 import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.StringDictionary;
+import com.netthreads.transportation.parser.TextBuffer;
 
 /**
  * This is a _simple_ XML Pull parser for Glasgow Traffic Data.
  * 
+ * Tags are mapped to integer ids and tracked on a depth indexed element stack
+ * so each event is handled by a single switch.
+ * 
  * Type: Traffic Data.
  * 
  * Sample URL:
@@ -35,23 +41,20 @@ public class TrafficDataPullParser implements PullParser<TrafficData>
 {
 	private XmlPullParser parser = null;
 	
-	// In tag
-	private boolean inSituationRecord = false;
-	private boolean inLatitude = false;
-	private boolean inLongitude = false;
-	private boolean inNonGeneralPublicComment = false;
-	private boolean inComment = false;
-	private boolean inPoint = false;
-	private boolean inName = false;
-	private boolean inDescriptor = false;
-	private boolean inValue = false;
-	private boolean inEventType = false;
-	private boolean inTpegDescriptorType = false;
-	private boolean inOverallStartTime = false;
-	private boolean inOverallEndTime = false;
+	// Open tags.
+	private final ElementStack stack = new ElementStack(TrafficDataTags.TABLE.getIdCount());
+	
+	// Field projection, skip[tag id] is true for elements holding no
+	// projected field.
+	private int projection = TrafficData.FIELD_ALL;
+	private boolean[] skip = TrafficDataTags.skipTable(projection);
+	private boolean skipping = false;
+	
+	// Text conversion, collapses whitespace over 2 characters in length.
+	private final TextBuffer textBuffer = new TextBuffer();
 	
-	// Remove all whitespace over 2 characters in length.
-	private static final String REGEX_DESCRIPTION = "\\s{2,}";
+	// Canonical instances of repeated values, null for none.
+	private StringDictionary dictionary = null;
 	
 	// Record values.
 	private String id;
@@ -86,77 +89,32 @@ public class TrafficDataPullParser implements PullParser<TrafficData>
 	@Override
 	public boolean processStartTag(String tag)
 	{
-		if (tag.equals(TrafficData.TAG_SITUATION_RECORD))
+		int tagId = TrafficDataTags.TABLE.lookup(tag);
+		
+		stack.push(parser.getDepth(), tagId);
+		
+		skipping = skip[tagId];
+		
+		if (tagId == TrafficDataTags.SITUATION_RECORD)
 		{
-			inSituationRecord = true;
-			
 			String namespace = parser.getNamespace();
 			id = parser.getAttributeValue(namespace, TrafficData.TEXT_ID);
 		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_LATITUDE))
-		{
-			inLatitude = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_LONGITUDE))
-		{
-			inLongitude = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_NON_GENERAL_PUBLIC_COMMENT))
-		{
-			inNonGeneralPublicComment = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_COMMENT))
-		{
-			inComment = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_POINT))
-		{
-			inPoint = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_NAME))
-		{
-			inName = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_DESCRIPTOR))
-		{
-			inDescriptor = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_VALUE))
-		{
-			inValue = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_TPEG_DESCRIPTOR_TYPE))
-		{
-			inTpegDescriptorType = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_OVERALL_START_TIME))
-		{
-			inOverallStartTime = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_OVERALL_END_TIME))
-		{
-			inOverallEndTime = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_NETWORK_MANAGEMENT_TYPE))
-		{
-			inEventType = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_POOR_ROAD_INFRASTRUCTURETYPE))
-		{
-			inEventType = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_PUBLIC_EVENT_TYPE))
-		{
-			inEventType = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_ROAD_MAINTENANCE_TYPE))
-		{
-			inEventType = true;
-		}
 		
 		return false;
 	}
 	
+	/**
+	 * Skip element if it holds no projected field.
+	 * 
+	 * @return True to skip.
+	 */
+	@Override
+	public boolean skipElement()
+	{
+		return skipping;
+	}
+	
 	/**
 	 * Process end tag
 	 * 
@@ -165,89 +123,42 @@ public class TrafficDataPullParser implements PullParser<TrafficData>
 	@Override
 	public boolean processEndTag(String tag)
 	{
-		boolean ready = false;
-		if (tag.equals(TrafficData.TAG_SITUATION_RECORD))
-		{
-			inSituationRecord = false;
-			
-			ready = true;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_LATITUDE))
+		int tagId = stack.pop(parser.getDepth());
+		if (tagId == ElementStack.NOT_FOUND)
 		{
-			inLatitude = false;
+			tagId = TrafficDataTags.TABLE.lookup(tag);
 		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_LONGITUDE))
-		{
-			inLongitude = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_NON_GENERAL_PUBLIC_COMMENT))
-		{
-			inNonGeneralPublicComment = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_COMMENT))
-		{
-			inComment = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_POINT))
-		{
-			inPoint = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_NAME))
-		{
-			inName = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_DESCRIPTOR))
-		{
-			inDescriptor = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_VALUE))
-		{
-			inValue = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_TPEG_DESCRIPTOR_TYPE))
+		
+		boolean ready = false;
+		
+		switch (tagId)
 		{
-			inTpegDescriptorType = false;
+			case TrafficDataTags.SITUATION_RECORD:
+				ready = true;
+				break;
 			
-			// Handle end condition when we have picked up a descriptor value.
-			if (!tempType.isEmpty())
-			{
-				if (tempType.equals(TrafficData.TAG_LOCAL_LINK_NAME))
-				{
-					localLinkName = temp;
-				}
-				else if (tempType.equals(TrafficData.TAG_LINK_NAME))
-				{
-					linkName = temp;
-				}
-				else if (tempType.equals(TrafficData.TAG_TOWN_NAME))
+			case TrafficDataTags.TPEG_DESCRIPTOR_TYPE:
+				// Handle end condition when we have picked up a descriptor
+				// value.
+				if (stack.isOpen(TrafficDataTags.SITUATION_RECORD) && !tempType.isEmpty())
 				{
-					townName = temp;
+					if (tempType.equals(TrafficData.TAG_LOCAL_LINK_NAME) && (projection & TrafficData.FIELD_LOCAL_LINK_NAME) != 0)
+					{
+						localLinkName = temp;
+					}
+					else if (tempType.equals(TrafficData.TAG_LINK_NAME) && (projection & TrafficData.FIELD_LINK_NAME) != 0)
+					{
+						linkName = temp;
+					}
+					else if (tempType.equals(TrafficData.TAG_TOWN_NAME) && (projection & TrafficData.FIELD_TOWN_NAME) != 0)
+					{
+						townName = temp;
+					}
 				}
-			}
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_OVERALL_START_TIME))
-		{
-			inOverallStartTime = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_OVERALL_END_TIME))
-		{
-			inOverallEndTime = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_NETWORK_MANAGEMENT_TYPE))
-		{
-			inEventType = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_POOR_ROAD_INFRASTRUCTURETYPE))
-		{
-			inEventType = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_PUBLIC_EVENT_TYPE))
-		{
-			inEventType = false;
-		}
-		else if (inSituationRecord && tag.equals(TrafficData.TAG_ROAD_MAINTENANCE_TYPE))
-		{
-			inEventType = false;
+				break;
+			
+			default:
+				break;
 		}
 		
 		return ready;
@@ -261,37 +172,72 @@ public class TrafficDataPullParser implements PullParser<TrafficData>
 	@Override
 	public void processText(String text)
 	{
-		if (inSituationRecord && inPoint && inLongitude)
-		{
-			longitude = text;
-		}
-		else if (inSituationRecord && inPoint && inLatitude)
-		{
-			latitude = text;
-		}
-		else if (inSituationRecord && inNonGeneralPublicComment && inComment && inValue)
-		{
-			description = text.replaceAll(REGEX_DESCRIPTION, " ");
-		}
-		else if (inSituationRecord && inPoint && inName && inDescriptor && inValue)
-		{
-			temp = text;
-		}
-		else if (inTpegDescriptorType)
-		{
-			tempType = text;
-		}
-		else if (inEventType)
-		{
-			type = text;
-		}
-		else if (inOverallStartTime)
+		char[] buffer = text.toCharArray();
+		
+		processText(buffer, 0, buffer.length);
+	}
+	
+	/**
+	 * Collect text values depending on conditions, only creating a String for
+	 * values we keep.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 */
+	@Override
+	public void processText(char[] buffer, int start, int length)
+	{
+		if (!stack.isOpen(TrafficDataTags.SITUATION_RECORD))
 		{
-			overallStartTime = text;
+			return;
 		}
-		else if (inOverallEndTime)
+		
+		switch (stack.top())
 		{
-			overallEndTime = text;
+			case TrafficDataTags.LONGITUDE:
+				if (stack.isOpen(TrafficDataTags.POINT))
+				{
+					longitude = textBuffer.toString(buffer, start, length);
+				}
+				break;
+			
+			case TrafficDataTags.LATITUDE:
+				if (stack.isOpen(TrafficDataTags.POINT))
+				{
+					latitude = textBuffer.toString(buffer, start, length);
+				}
+				break;
+			
+			case TrafficDataTags.VALUE:
+				if (stack.isOpen(TrafficDataTags.NON_GENERAL_PUBLIC_COMMENT) && stack.isOpen(TrafficDataTags.COMMENT))
+				{
+					description = textBuffer.toCollapsedString(buffer, start, length);
+				}
+				else if (stack.isOpen(TrafficDataTags.POINT) && stack.isOpen(TrafficDataTags.NAME) && stack.isOpen(TrafficDataTags.DESCRIPTOR))
+				{
+					temp = intern(buffer, start, length);
+				}
+				break;
+			
+			case TrafficDataTags.TPEG_DESCRIPTOR_TYPE:
+				tempType = intern(buffer, start, length);
+				break;
+			
+			case TrafficDataTags.EVENT_TYPE:
+				type = intern(buffer, start, length);
+				break;
+			
+			case TrafficDataTags.OVERALL_START_TIME:
+				overallStartTime = textBuffer.toString(buffer, start, length);
+				break;
+			
+			case TrafficDataTags.OVERALL_END_TIME:
+				overallEndTime = textBuffer.toString(buffer, start, length);
+				break;
+			
+			default:
+				break;
 		}
 	}
 	
@@ -335,6 +281,59 @@ public class TrafficDataPullParser implements PullParser<TrafficData>
 		longitude = "";
 		overallStartTime = "";
 		overallEndTime = "";
+		temp = "";
+		tempType = "";
+	}
+	
+	/**
+	 * Read all fields, without a dictionary.
+	 * 
+	 */
+	@Override
+	public void restoreDefaults()
+	{
+		setProjection(TrafficData.FIELD_ALL);
+		dictionary = null;
+	}
+	
+	/**
+	 * Read only the given fields, the others are left empty. Elements which
+	 * hold no projected field are skipped unread.
+	 * 
+	 * @param fields
+	 *            TrafficData FIELD bits.
+	 */
+	public void setProjection(int fields)
+	{
+		projection = fields;
+		skip = TrafficDataTags.skipTable(fields);
+	}
+	
+	public int getProjection()
+	{
+		return projection;
+	}
+	
+	/**
+	 * Share one instance of each road name, town name and type, looked up
+	 * without creating a String when already known.
+	 * 
+	 * @param dictionary
+	 *            The dictionary or null to create a String for every value.
+	 */
+	public void setDictionary(StringDictionary dictionary)
+	{
+		this.dictionary = dictionary;
+	}
+	
+	public StringDictionary getDictionary()
+	{
+		return dictionary;
+	}
+	
+	private String intern(char[] buffer, int start, int length)
+	{
+		return (dictionary != null) ? dictionary.intern(buffer, start, length) : textBuffer.toString(buffer, start, length);
 	}
 	
 	/**
@@ -345,8 +344,7 @@ public class TrafficDataPullParser implements PullParser<TrafficData>
 	@Override
 	public boolean inTarget()
 	{
-		return inSituationRecord || inLatitude || inLongitude || inNonGeneralPublicComment || inComment || inPoint || inName || inDescriptor || inValue || inEventType || inOverallStartTime || inOverallEndTime;
-		
+		return stack.inTrackedElement();
 	}
-	
+
 }
@@ -18,17 +18,18 @@
  */
 package com.netthreads.transportation.parser.data;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
 import org.xmlpull.v1.XmlPullParser;
 
+import com.netthreads.transportation.parser.ElementStack;
 import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.StringDictionary;
+import com.netthreads.transportation.parser.TextBuffer;
 
 /**
- * This is an alternative implementation of the pull parser. Not as fast but the
- * code is slightly more elegant.
+ * This is an alternative implementation of the pull parser. It shares the tag
+ * table and element stack with TrafficDataPullParser but the element matching
+ * rules differ slightly, e.g. a descriptor value only needs to be inside a
+ * point and the descriptor type must be inside a point.
  * 
  * Type: Traffic Data.
  * 
@@ -40,10 +41,20 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 {
 	private XmlPullParser parser = null;
 	
-	// In tag
+	// Open tags.
+	private final ElementStack stack = new ElementStack(TrafficDataTags.TABLE.getIdCount());
+	
+	// Field projection, skip[tag id] is true for elements holding no
+	// projected field.
+	private int projection = TrafficData.FIELD_ALL;
+	private boolean[] skip = TrafficDataTags.skipTable(projection);
+	private boolean skipping = false;
 	
-	// Remove all whitespace over 2 characters in length.
-	private static final String REGEX_DESCRIPTION = "\\s{2,}";
+	// Text conversion, collapses whitespace over 2 characters in length.
+	private final TextBuffer textBuffer = new TextBuffer();
+	
+	// Canonical instances of repeated values, null for none.
+	private StringDictionary dictionary = null;
 	
 	// Record values.
 	private String id;
@@ -59,34 +70,6 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 	private String overallStartTime;
 	private String overallEndTime;
 	
-	/**
-	 * Tag Map.
-	 */
-	@SuppressWarnings("serial")
-	private Map<String, Boolean> inTagMap = new HashMap<String, Boolean>()
-	{
-		{
-			put(TrafficData.TAG_SITUATION_RECORD, false);
-			put(TrafficData.TAG_LATITUDE, false);
-			put(TrafficData.TAG_LONGITUDE, false);
-			put(TrafficData.TAG_NON_GENERAL_PUBLIC_COMMENT, false);
-			put(TrafficData.TAG_COMMENT, false);
-			put(TrafficData.TAG_VALUE, false);
-			put(TrafficData.TAG_NETWORK_MANAGEMENT_TYPE, false);
-			put(TrafficData.TAG_POOR_ROAD_INFRASTRUCTURETYPE, false);
-			put(TrafficData.TAG_PUBLIC_EVENT_TYPE, false);
-			put(TrafficData.TAG_ROAD_MAINTENANCE_TYPE, false);
-			put(TrafficData.TAG_POINT, false);
-			put(TrafficData.TAG_NAME, false);
-			put(TrafficData.TAG_DESCRIPTOR, false);
-			put(TrafficData.TAG_TPEG_DESCRIPTOR_TYPE, false);
-			put(TrafficData.TAG_LOCAL_LINK_NAME, false);
-			put(TrafficData.TAG_LINK_NAME, false);
-			put(TrafficData.TAG_OVERALL_END_TIME, false);
-			put(TrafficData.TAG_OVERALL_START_TIME, false);
-		}
-	};
-	
 	/**
 	 * Construct parser.
 	 * 
@@ -106,20 +89,32 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 	@Override
 	public boolean processStartTag(String tag)
 	{
-		if (tag.equals(TrafficData.TAG_SITUATION_RECORD))
+		int tagId = TrafficDataTags.TABLE.lookup(tag);
+		
+		stack.push(parser.getDepth(), tagId);
+		
+		skipping = skip[tagId];
+		
+		if (tagId == TrafficDataTags.SITUATION_RECORD)
 		{
 			String namespace = parser.getNamespace();
 			id = parser.getAttributeValue(namespace, TrafficData.TEXT_ID);
 		}
 		
-		if (inTagMap.containsKey(tag))
-		{
-			inTagMap.put(tag, true);
-		}
-		
 		return false;
 	}
 	
+	/**
+	 * Skip element if it holds no projected field.
+	 * 
+	 * @return True to skip.
+	 */
+	@Override
+	public boolean skipElement()
+	{
+		return skipping;
+	}
+	
 	/**
 	 * Process end tag
 	 * 
@@ -128,44 +123,27 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 	@Override
 	public boolean processEndTag(String tag)
 	{
-		boolean ready = false;
-		
-		Boolean inSituationRecord = inTagMap.get(TrafficData.TAG_SITUATION_RECORD);
+		int tagId = stack.pop(parser.getDepth());
+		if (tagId == ElementStack.NOT_FOUND)
+		{
+			tagId = TrafficDataTags.TABLE.lookup(tag);
+		}
 		
-		if (inSituationRecord != null)
+		switch (tagId)
 		{
-			if (tag.equals(TrafficData.TAG_SITUATION_RECORD))
-			{
-				ready = true;
-			}
-			else if (inSituationRecord && tag.equals(TrafficData.TAG_TPEG_DESCRIPTOR_TYPE))
-			{
-				// Handle end condition when we have picked up a descriptor
-				// value.
-				if (!tempType.isEmpty())
+			case TrafficDataTags.SITUATION_RECORD:
+				return true;
+			
+			case TrafficDataTags.TPEG_DESCRIPTOR_TYPE:
+				if (stack.isOpen(TrafficDataTags.SITUATION_RECORD))
 				{
-					if (tempType.equals(TrafficData.TAG_LOCAL_LINK_NAME))
-					{
-						localLinkName = temp;
-					}
-					else if (tempType.equals(TrafficData.TAG_LINK_NAME))
-					{
-						linkName = temp;
-					}
-					else if (tempType.equals(TrafficData.TAG_TOWN_NAME))
-					{
-						townName = temp;
-					}
+					assignDescriptor();
 				}
-			}
+				return false;
 			
-			if (inTagMap.containsKey(tag))
-			{
-				inTagMap.put(tag, false);
-			}
+			default:
+				return false;
 		}
-		
-		return ready;
 	}
 	
 	/**
@@ -176,83 +154,99 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 	@Override
 	public void processText(String text)
 	{
-		// Old way was easier to understand.
-		boolean inSituationRecord = inTagMap.get(TrafficData.TAG_SITUATION_RECORD);
-		boolean inPoint = inTagMap.get(TrafficData.TAG_POINT);
-		boolean inLongitude = inTagMap.get(TrafficData.TAG_LONGITUDE);
+		char[] buffer = text.toCharArray();
+		
+		processText(buffer, 0, buffer.length);
+	}
+	
+	/**
+	 * Collect text values depending on conditions, only creating a String for
+	 * values we keep.
+	 * 
+	 * @param buffer
+	 * @param start
+	 * @param length
+	 */
+	@Override
+	public void processText(char[] buffer, int start, int length)
+	{
+		if (!stack.isOpen(TrafficDataTags.SITUATION_RECORD))
+		{
+			return;
+		}
+		
+		boolean inPoint = stack.isOpen(TrafficDataTags.POINT);
 		
-		if (inSituationRecord)
+		switch (stack.top())
 		{
-			if (inPoint && inLongitude)
-			{
-				longitude = text;
-			}
-			else
-			{
-				boolean inLatitude = inTagMap.get(TrafficData.TAG_LATITUDE);
-				
-				if (inPoint && inLatitude)
+			case TrafficDataTags.LONGITUDE:
+				if (inPoint)
+				{
+					longitude = textBuffer.toString(buffer, start, length);
+				}
+				break;
+			
+			case TrafficDataTags.LATITUDE:
+				if (inPoint)
+				{
+					latitude = textBuffer.toString(buffer, start, length);
+				}
+				break;
+			
+			case TrafficDataTags.VALUE:
+				if (inPoint && stack.isOpen(TrafficDataTags.DESCRIPTOR))
 				{
-					latitude = text;
+					temp = intern(buffer, start, length);
 				}
-				else
+				else if (stack.isOpen(TrafficDataTags.NON_GENERAL_PUBLIC_COMMENT) && stack.isOpen(TrafficDataTags.COMMENT))
 				{
-					boolean inDescriptor = inTagMap.get(TrafficData.TAG_DESCRIPTOR);
-					boolean inValue = inTagMap.get(TrafficData.TAG_VALUE);
-					
-					if (inPoint & inDescriptor && inValue)
-					{
-						temp = text;
-					}
-					else
-					{
-						boolean inTpegDescriptorType = inTagMap.get(TrafficData.TAG_TPEG_DESCRIPTOR_TYPE);
-						
-						if (inPoint && inTpegDescriptorType)
-						{
-							tempType = text;
-						}
-						else
-						{
-							boolean inEventType = inTagMap.get(TrafficData.TAG_NETWORK_MANAGEMENT_TYPE) || inTagMap.get(TrafficData.TAG_POOR_ROAD_INFRASTRUCTURETYPE) || inTagMap.get(TrafficData.TAG_PUBLIC_EVENT_TYPE) || inTagMap.get(TrafficData.TAG_ROAD_MAINTENANCE_TYPE);
-							
-							if (inEventType)
-							{
-								type = text;
-							}
-							else
-							{
-								boolean inOverallStartTime = inTagMap.get(TrafficData.TAG_OVERALL_START_TIME);
-								
-								if (inOverallStartTime)
-								{
-									overallStartTime = text;
-								}
-								else
-								{
-									boolean inOverallEndTime = inTagMap.get(TrafficData.TAG_OVERALL_END_TIME);
-									
-									if (inOverallEndTime)
-									{
-										overallEndTime = text;
-									}
-									else
-									{
-										boolean inNonGeneralPublicComment = inTagMap.get(TrafficData.TAG_NON_GENERAL_PUBLIC_COMMENT);
-										boolean inComment = inTagMap.get(TrafficData.TAG_COMMENT);
-										
-										if (inNonGeneralPublicComment && inComment && inValue)
-										{
-											description = text.replaceAll(REGEX_DESCRIPTION, " ");
-										}
-									}
-									
-								}
-							}
-							
-						}
-					}
+					description = textBuffer.toCollapsedString(buffer, start, length);
 				}
+				break;
+			
+			case TrafficDataTags.TPEG_DESCRIPTOR_TYPE:
+				if (inPoint)
+				{
+					tempType = intern(buffer, start, length);
+				}
+				break;
+			
+			case TrafficDataTags.EVENT_TYPE:
+				type = intern(buffer, start, length);
+				break;
+			
+			case TrafficDataTags.OVERALL_START_TIME:
+				overallStartTime = textBuffer.toString(buffer, start, length);
+				break;
+			
+			case TrafficDataTags.OVERALL_END_TIME:
+				overallEndTime = textBuffer.toString(buffer, start, length);
+				break;
+			
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * Handle end condition when we have picked up a descriptor value.
+	 * 
+	 */
+	private void assignDescriptor()
+	{
+		if (!tempType.isEmpty())
+		{
+			if (tempType.equals(TrafficData.TAG_LOCAL_LINK_NAME) && (projection & TrafficData.FIELD_LOCAL_LINK_NAME) != 0)
+			{
+				localLinkName = temp;
+			}
+			else if (tempType.equals(TrafficData.TAG_LINK_NAME) && (projection & TrafficData.FIELD_LINK_NAME) != 0)
+			{
+				linkName = temp;
+			}
+			else if (tempType.equals(TrafficData.TAG_TOWN_NAME) && (projection & TrafficData.FIELD_TOWN_NAME) != 0)
+			{
+				townName = temp;
 			}
 		}
 	}
@@ -297,6 +291,59 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 		longitude = "";
 		overallStartTime = "";
 		overallEndTime = "";
+		temp = "";
+		tempType = "";
+	}
+	
+	/**
+	 * Read all fields, without a dictionary.
+	 * 
+	 */
+	@Override
+	public void restoreDefaults()
+	{
+		setProjection(TrafficData.FIELD_ALL);
+		dictionary = null;
+	}
+	
+	/**
+	 * Read only the given fields, the others are left empty. Elements which
+	 * hold no projected field are skipped unread.
+	 * 
+	 * @param fields
+	 *            TrafficData FIELD bits.
+	 */
+	public void setProjection(int fields)
+	{
+		projection = fields;
+		skip = TrafficDataTags.skipTable(fields);
+	}
+	
+	public int getProjection()
+	{
+		return projection;
+	}
+	
+	/**
+	 * Share one instance of each road name, town name and type, looked up
+	 * without creating a String when already known.
+	 * 
+	 * @param dictionary
+	 *            The dictionary or null to create a String for every value.
+	 */
+	public void setDictionary(StringDictionary dictionary)
+	{
+		this.dictionary = dictionary;
+	}
+	
+	public StringDictionary getDictionary()
+	{
+		return dictionary;
+	}
+	
+	private String intern(char[] buffer, int start, int length)
+	{
+		return (dictionary != null) ? dictionary.intern(buffer, start, length) : textBuffer.toString(buffer, start, length);
 	}
 	
 	/**
@@ -307,15 +354,7 @@ public class TrafficDataPullParserEx implements PullParser<TrafficData>
 	@Override
 	public boolean inTarget()
 	{
-		boolean state = false;
-		Iterator<Boolean> iterator = inTagMap.values().iterator();
-		while (!state && iterator.hasNext())
-		{
-			Boolean item = iterator.next();
-			state |= item;
-		}
-		
-		return state;
+		return stack.inTrackedElement();
 	}
-	
+
 }
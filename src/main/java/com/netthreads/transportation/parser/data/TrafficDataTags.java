@@ -0,0 +1,113 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.parser.data;
+
+import com.netthreads.transportation.parser.TagTable;
+
+/**
+ * Tag ids shared by the traffic data pull parsers.
+ * 
+ */
+final class TrafficDataTags
+{
+	public static final int SITUATION_RECORD = 1;
+	public static final int LATITUDE = 2;
+	public static final int LONGITUDE = 3;
+	public static final int NON_GENERAL_PUBLIC_COMMENT = 4;
+	public static final int COMMENT = 5;
+	public static final int POINT = 6;
+	public static final int NAME = 7;
+	public static final int DESCRIPTOR = 8;
+	public static final int VALUE = 9;
+	public static final int TPEG_DESCRIPTOR_TYPE = 10;
+	public static final int OVERALL_START_TIME = 11;
+	public static final int OVERALL_END_TIME = 12;
+	public static final int EVENT_TYPE = 13;
+	public static final int GENERAL_PUBLIC_COMMENT = 14;
+	public static final int VALIDITY = 15;
+	public static final int GROUP_OF_LOCATIONS = 16;
+	public static final int POINT_COORDINATES = 17;
+
+	private static final int NAME_FIELDS = TrafficData.FIELD_LOCAL_LINK_NAME | TrafficData.FIELD_LINK_NAME | TrafficData.FIELD_TOWN_NAME;
+	private static final int COORDINATE_FIELDS = TrafficData.FIELD_LATITUDE | TrafficData.FIELD_LONGITUDE;
+	private static final int TIME_FIELDS = TrafficData.FIELD_OVERALL_START_TIME | TrafficData.FIELD_OVERALL_END_TIME;
+
+	public static final TagTable TABLE = new TagTable(20)
+	        .add(TrafficData.TAG_SITUATION_RECORD, SITUATION_RECORD)
+	        .add(TrafficData.TAG_LATITUDE, LATITUDE)
+	        .add(TrafficData.TAG_LONGITUDE, LONGITUDE)
+	        .add(TrafficData.TAG_NON_GENERAL_PUBLIC_COMMENT, NON_GENERAL_PUBLIC_COMMENT)
+	        .add(TrafficData.TAG_COMMENT, COMMENT)
+	        .add(TrafficData.TAG_POINT, POINT)
+	        .add(TrafficData.TAG_NAME, NAME)
+	        .add(TrafficData.TAG_DESCRIPTOR, DESCRIPTOR)
+	        .add(TrafficData.TAG_VALUE, VALUE)
+	        .add(TrafficData.TAG_TPEG_DESCRIPTOR_TYPE, TPEG_DESCRIPTOR_TYPE)
+	        .add(TrafficData.TAG_OVERALL_START_TIME, OVERALL_START_TIME)
+	        .add(TrafficData.TAG_OVERALL_END_TIME, OVERALL_END_TIME)
+	        .add(TrafficData.TAG_NETWORK_MANAGEMENT_TYPE, EVENT_TYPE)
+	        .add(TrafficData.TAG_POOR_ROAD_INFRASTRUCTURETYPE, EVENT_TYPE)
+	        .add(TrafficData.TAG_PUBLIC_EVENT_TYPE, EVENT_TYPE)
+	        .add(TrafficData.TAG_ROAD_MAINTENANCE_TYPE, EVENT_TYPE)
+	        .add(TrafficData.TAG_GENERAL_PUBLIC_COMMENT, GENERAL_PUBLIC_COMMENT)
+	        .add(TrafficData.TAG_VALIDITY, VALIDITY)
+	        .add(TrafficData.TAG_GROUP_OF_LOCATIONS, GROUP_OF_LOCATIONS)
+	        .add(TrafficData.TAG_POINT_COORDINATES, POINT_COORDINATES);
+
+	private TrafficDataTags()
+	{
+	}
+
+	/**
+	 * Elements to skip for a field projection, indexed by tag id. An element
+	 * is skipped when nothing inside it is projected.
+	 * 
+	 * @param fields
+	 *            TrafficData FIELD bits.
+	 * 
+	 * @return True for each tag id to skip.
+	 */
+	static boolean[] skipTable(int fields)
+	{
+		boolean[] skip = new boolean[TABLE.getIdCount()];
+
+		// Never read.
+		skip[GENERAL_PUBLIC_COMMENT] = true;
+
+		skip[NON_GENERAL_PUBLIC_COMMENT] = !projected(fields, TrafficData.FIELD_DESCRIPTION);
+		skip[EVENT_TYPE] = !projected(fields, TrafficData.FIELD_TYPE);
+
+		skip[VALIDITY] = !projected(fields, TIME_FIELDS);
+		skip[OVERALL_START_TIME] = !projected(fields, TrafficData.FIELD_OVERALL_START_TIME);
+		skip[OVERALL_END_TIME] = !projected(fields, TrafficData.FIELD_OVERALL_END_TIME);
+
+		skip[GROUP_OF_LOCATIONS] = !projected(fields, COORDINATE_FIELDS | NAME_FIELDS);
+		skip[POINT_COORDINATES] = !projected(fields, COORDINATE_FIELDS);
+		skip[LATITUDE] = !projected(fields, TrafficData.FIELD_LATITUDE);
+		skip[LONGITUDE] = !projected(fields, TrafficData.FIELD_LONGITUDE);
+		skip[NAME] = !projected(fields, NAME_FIELDS);
+
+		return skip;
+	}
+
+	private static boolean projected(int fields, int wanted)
+	{
+		return (fields & wanted) != 0;
+	}
+}
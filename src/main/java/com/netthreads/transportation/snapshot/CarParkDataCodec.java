@@ -0,0 +1,129 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.snapshot;
+
+import com.netthreads.transportation.parser.data.CarParkData;
+
+/**
+ * Snapshot fields of CarParkData.
+ * 
+ */
+public class CarParkDataCodec implements SnapshotCodec<CarParkData>
+{
+	public static final String NAME = "carParkData";
+
+	private static final int FIELD_ID = 0;
+	private static final int FIELD_CAR_PARK_IDENTITY = 1;
+	private static final int FIELD_CAR_PARK_OCCUPANCY = 2;
+	private static final int FIELD_CAR_PARK_STATUS = 3;
+	private static final int FIELD_OCCUPIED_SPACES = 4;
+	private static final int FIELD_TOTAL_CAPACITY = 5;
+	private static final int FIELD_LATITUDE = 6;
+	private static final int FIELD_LONGITUDE = 7;
+
+	private static final int FIELD_COUNT = 8;
+
+	@Override
+	public String getName()
+	{
+		return NAME;
+	}
+
+	@Override
+	public int getFieldCount()
+	{
+		return FIELD_COUNT;
+	}
+
+	@Override
+	public String getField(CarParkData record, int field)
+	{
+		switch (field)
+		{
+			case FIELD_ID:
+				return record.getId();
+
+			case FIELD_CAR_PARK_IDENTITY:
+				return record.getCarParkIdentity();
+
+			case FIELD_CAR_PARK_OCCUPANCY:
+				return record.getCarParkOccupancy();
+
+			case FIELD_CAR_PARK_STATUS:
+				return record.getCarParkStatus();
+
+			case FIELD_OCCUPIED_SPACES:
+				return record.getOccupiedSpaces();
+
+			case FIELD_TOTAL_CAPACITY:
+				return record.getTotalCapacity();
+
+			case FIELD_LATITUDE:
+				return record.getLatitude();
+
+			case FIELD_LONGITUDE:
+				return record.getLongitude();
+
+			default:
+				throw new IllegalArgumentException("Invalid field " + field);
+		}
+	}
+
+	@Override
+	public void setField(CarParkData record, int field, String value)
+	{
+		switch (field)
+		{
+			case FIELD_ID:
+				record.setId(value);
+				break;
+
+			case FIELD_CAR_PARK_IDENTITY:
+				record.setCarParkIdentity(value);
+				break;
+
+			case FIELD_CAR_PARK_OCCUPANCY:
+				record.setCarParkOccupancy(value);
+				break;
+
+			case FIELD_CAR_PARK_STATUS:
+				record.setCarParkStatus(value);
+				break;
+
+			case FIELD_OCCUPIED_SPACES:
+				record.setOccupiedSpaces(value);
+				break;
+
+			case FIELD_TOTAL_CAPACITY:
+				record.setTotalCapacity(value);
+				break;
+
+			case FIELD_LATITUDE:
+				record.setLatitude(value);
+				break;
+
+			case FIELD_LONGITUDE:
+				record.setLongitude(value);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Invalid field " + field);
+		}
+	}
+}
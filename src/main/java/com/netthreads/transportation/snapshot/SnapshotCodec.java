@@ -0,0 +1,63 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.snapshot;
+
+/**
+ * Maps the fields of a record type to and from a snapshot.
+ * 
+ * Fields are numbered from zero in a fixed order. Changing the order or
+ * number of fields changes the format, bump SnapshotWriter.VERSION.
+ * 
+ */
+public interface SnapshotCodec<T>
+{
+	/**
+	 * Record type name written to the snapshot header.
+	 * 
+	 * @return The name.
+	 */
+	public String getName();
+
+	/**
+	 * Number of fields per record.
+	 * 
+	 * @return The count.
+	 */
+	public int getFieldCount();
+
+	/**
+	 * Read field from record.
+	 * 
+	 * @param record
+	 * @param field
+	 * 
+	 * @return The value, may be null.
+	 */
+	public String getField(T record, int field);
+
+	/**
+	 * Write field to record.
+	 * 
+	 * @param record
+	 * @param field
+	 * @param value
+	 *            The value, may be null.
+	 */
+	public void setField(T record, int field, String value);
+}
@@ -0,0 +1,254 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.netthreads.transportation.parser.DataFactory;
+
+/**
+ * Reads a snapshot written by SnapshotWriter.
+ * 
+ * Files are memory mapped and decoded in place. The checksum, version and
+ * record type are verified before any record is created, a snapshot which
+ * fails is rejected with an IOException and the caller falls back to a live
+ * fetch.
+ * 
+ * Not thread safe.
+ * 
+ */
+public class SnapshotReader<T>
+{
+	// Magic, version and checksum.
+	private static final int MINIMUM_SIZE = 12;
+
+	private final SnapshotCodec<T> codec;
+	private final DataFactory<T> dataFactory;
+
+	private byte[] scratch = new byte[256];
+
+	/**
+	 * Construct reader.
+	 * 
+	 * @param codec
+	 * @param dataFactory
+	 */
+	public SnapshotReader(SnapshotCodec<T> codec, DataFactory<T> dataFactory)
+	{
+		this.codec = codec;
+		this.dataFactory = dataFactory;
+	}
+
+	/**
+	 * Read snapshot file.
+	 * 
+	 * @param file
+	 * 
+	 * @return The records.
+	 * 
+	 * @throws IOException
+	 */
+	public List<T> read(File file) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			// The mapping stays valid once the channel is closed.
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * Read snapshot from the buffer position to its limit.
+	 * 
+	 * @param buffer
+	 * 
+	 * @return The records.
+	 * 
+	 * @throws IOException
+	 */
+	public List<T> read(ByteBuffer buffer) throws IOException
+	{
+		ByteBuffer input = buffer.slice();
+
+		if (input.remaining() < MINIMUM_SIZE)
+		{
+			throw new IOException("Invalid snapshot size " + input.remaining());
+		}
+
+		if (input.getInt() != SnapshotWriter.MAGIC)
+		{
+			throw new IOException("Invalid snapshot header");
+		}
+
+		int version = input.getInt();
+		if (version != SnapshotWriter.VERSION)
+		{
+			throw new IOException("Invalid snapshot version " + version);
+		}
+
+		int end = input.limit() - 4;
+
+		ByteBuffer content = input.duplicate();
+		content.position(0);
+		content.limit(end);
+
+		CRC32 crc = new CRC32();
+		crc.update(content);
+
+		if ((int) crc.getValue() != input.getInt(end))
+		{
+			throw new IOException("Invalid snapshot checksum");
+		}
+
+		input.limit(end);
+
+		try
+		{
+			return decode(input);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Invalid snapshot, truncated");
+		}
+	}
+
+	private List<T> decode(ByteBuffer input) throws IOException
+	{
+		String name = readString(input);
+		if (!codec.getName().equals(name))
+		{
+			throw new IOException("Invalid snapshot record type " + name);
+		}
+
+		int fieldCount = readVarint(input);
+		if (fieldCount != codec.getFieldCount())
+		{
+			throw new IOException("Invalid snapshot field count " + fieldCount);
+		}
+
+		int recordCount = readVarint(input);
+		int dictionarySize = readVarint(input);
+
+		// Every entry and field takes at least a byte.
+		if (dictionarySize > input.remaining() || (long) recordCount * fieldCount > input.remaining())
+		{
+			throw new IOException("Invalid snapshot, truncated");
+		}
+
+		String[] dictionary = new String[dictionarySize + 1];
+		for (int index = 1; index <= dictionarySize; index++)
+		{
+			dictionary[index] = readString(input);
+		}
+
+		List<T> list = new ArrayList<T>(recordCount);
+
+		for (int count = 0; count < recordCount; count++)
+		{
+			T record = dataFactory.createRecord();
+
+			for (int field = 0; field < fieldCount; field++)
+			{
+				int index = readVarint(input);
+				if (index > dictionarySize)
+				{
+					throw new IOException("Invalid snapshot string index " + index);
+				}
+
+				codec.setField(record, field, dictionary[index]);
+			}
+
+			list.add(record);
+		}
+
+		if (input.hasRemaining())
+		{
+			throw new IOException("Invalid snapshot, " + input.remaining() + " trailing bytes");
+		}
+
+		return list;
+	}
+
+	private static int readVarint(ByteBuffer input) throws IOException
+	{
+		int value = 0;
+
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			byte b = input.get();
+
+			value |= (b & 0x7f) << shift;
+
+			if (b >= 0)
+			{
+				if (value < 0)
+				{
+					break;
+				}
+
+				return value;
+			}
+		}
+
+		throw new IOException("Invalid snapshot varint");
+	}
+
+	private String readString(ByteBuffer input) throws IOException
+	{
+		int length = readVarint(input);
+
+		if (length > input.remaining())
+		{
+			throw new BufferUnderflowException();
+		}
+
+		if (input.hasArray())
+		{
+			String value = new String(input.array(), input.arrayOffset() + input.position(), length, SnapshotWriter.UTF_8);
+
+			input.position(input.position() + length);
+
+			return value;
+		}
+
+		if (scratch.length < length)
+		{
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+
+		input.get(scratch, 0, length);
+
+		return new String(scratch, 0, length, SnapshotWriter.UTF_8);
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Writes a list of records as a compact binary snapshot.
+ * 
+ * Layout, integers big endian and counts as unsigned varints:
+ * 
+ * <pre>
+ * magic, version        int, int
+ * record type name      string
+ * field count           varint
+ * record count          varint
+ * dictionary size       varint
+ * dictionary            string per entry
+ * records               varint dictionary index per field, zero for null
+ * checksum              int, CRC32 of everything before it
+ * </pre>
+ * 
+ * Strings are a varint byte length followed by UTF-8. Each distinct string is
+ * written once, so repeated road names and statuses cost a byte or two per
+ * record.
+ * 
+ * Not thread safe.
+ * 
+ */
+public class SnapshotWriter<T>
+{
+	public static final int MAGIC = 0x54584753;
+	public static final int VERSION = 1;
+
+	public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final SnapshotCodec<T> codec;
+
+	/**
+	 * Construct writer.
+	 * 
+	 * @param codec
+	 */
+	public SnapshotWriter(SnapshotCodec<T> codec)
+	{
+		this.codec = codec;
+	}
+
+	/**
+	 * Write snapshot file.
+	 * 
+	 * The snapshot is written to a temporary file beside the target, synced
+	 * and then renamed over it, so a reader never sees a partial file.
+	 * 
+	 * @param file
+	 * @param list
+	 * 
+	 * @throws IOException
+	 */
+	public void write(File file, List<T> list) throws IOException
+	{
+		Output output = encode(list);
+
+		File temporary = new File(file.getPath() + ".tmp");
+
+		FileOutputStream stream = new FileOutputStream(temporary);
+		try
+		{
+			output.writeTo(stream);
+
+			stream.getFD().sync();
+		}
+		finally
+		{
+			stream.close();
+		}
+
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Encode snapshot.
+	 * 
+	 * @param list
+	 * 
+	 * @return The snapshot bytes.
+	 */
+	public byte[] toByteArray(List<T> list)
+	{
+		return encode(list).toByteArray();
+	}
+
+	private Output encode(List<T> list)
+	{
+		int fieldCount = codec.getFieldCount();
+
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		List<String> dictionary = new ArrayList<String>();
+
+		Output records = new Output(list.size() * fieldCount);
+
+		for (T record : list)
+		{
+			for (int field = 0; field < fieldCount; field++)
+			{
+				String value = codec.getField(record, field);
+
+				if (value == null)
+				{
+					records.writeVarint(0);
+				}
+				else
+				{
+					Integer index = indexes.get(value);
+					if (index == null)
+					{
+						dictionary.add(value);
+
+						index = dictionary.size();
+						indexes.put(value, index);
+					}
+
+					records.writeVarint(index);
+				}
+			}
+		}
+
+		Output output = new Output(records.size() + dictionary.size() * 16 + 64);
+
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeString(codec.getName());
+		output.writeVarint(fieldCount);
+		output.writeVarint(list.size());
+		output.writeVarint(dictionary.size());
+
+		for (String value : dictionary)
+		{
+			output.writeString(value);
+		}
+
+		output.write(records.buffer(), 0, records.size());
+
+		CRC32 crc = new CRC32();
+		crc.update(output.buffer(), 0, output.size());
+		output.writeInt((int) crc.getValue());
+
+		return output;
+	}
+
+	/**
+	 * Growing byte buffer with the primitive writes of the format.
+	 * 
+	 */
+	private static class Output extends ByteArrayOutputStream
+	{
+		private Output(int size)
+		{
+			super(size);
+		}
+
+		private byte[] buffer()
+		{
+			return buf;
+		}
+
+		private void writeInt(int value)
+		{
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		private void writeVarint(int value)
+		{
+			while ((value & ~0x7f) != 0)
+			{
+				write((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+
+			write(value);
+		}
+
+		private void writeString(String value)
+		{
+			byte[] bytes = value.getBytes(UTF_8);
+
+			writeVarint(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+	}
+}
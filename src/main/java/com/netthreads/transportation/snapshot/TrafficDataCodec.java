@@ -0,0 +1,145 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.snapshot;
+
+import com.netthreads.transportation.parser.data.TrafficData;
+
+/**
+ * Snapshot fields of TrafficData.
+ * 
+ */
+public class TrafficDataCodec implements SnapshotCodec<TrafficData>
+{
+	public static final String NAME = "trafficData";
+
+	private static final int FIELD_ID = 0;
+	private static final int FIELD_LATITUDE = 1;
+	private static final int FIELD_LONGITUDE = 2;
+	private static final int FIELD_DESCRIPTION = 3;
+	private static final int FIELD_TYPE = 4;
+	private static final int FIELD_OVERALL_START_TIME = 5;
+	private static final int FIELD_OVERALL_END_TIME = 6;
+	private static final int FIELD_LOCAL_LINK_NAME = 7;
+	private static final int FIELD_LINK_NAME = 8;
+	private static final int FIELD_TOWN_NAME = 9;
+
+	private static final int FIELD_COUNT = 10;
+
+	@Override
+	public String getName()
+	{
+		return NAME;
+	}
+
+	@Override
+	public int getFieldCount()
+	{
+		return FIELD_COUNT;
+	}
+
+	@Override
+	public String getField(TrafficData record, int field)
+	{
+		switch (field)
+		{
+			case FIELD_ID:
+				return record.getId();
+
+			case FIELD_LATITUDE:
+				return record.getLatitude();
+
+			case FIELD_LONGITUDE:
+				return record.getLongitude();
+
+			case FIELD_DESCRIPTION:
+				return record.getDescription();
+
+			case FIELD_TYPE:
+				return record.getType();
+
+			case FIELD_OVERALL_START_TIME:
+				return record.getOverallStartTime();
+
+			case FIELD_OVERALL_END_TIME:
+				return record.getOverallEndTime();
+
+			case FIELD_LOCAL_LINK_NAME:
+				return record.getLocalLinkName();
+
+			case FIELD_LINK_NAME:
+				return record.getLinkName();
+
+			case FIELD_TOWN_NAME:
+				return record.getTownName();
+
+			default:
+				throw new IllegalArgumentException("Invalid field " + field);
+		}
+	}
+
+	@Override
+	public void setField(TrafficData record, int field, String value)
+	{
+		switch (field)
+		{
+			case FIELD_ID:
+				record.setId(value);
+				break;
+
+			case FIELD_LATITUDE:
+				record.setLatitude(value);
+				break;
+
+			case FIELD_LONGITUDE:
+				record.setLongitude(value);
+				break;
+
+			case FIELD_DESCRIPTION:
+				record.setDescription(value);
+				break;
+
+			case FIELD_TYPE:
+				record.setType(value);
+				break;
+
+			case FIELD_OVERALL_START_TIME:
+				record.setOverallStartTime(value);
+				break;
+
+			case FIELD_OVERALL_END_TIME:
+				record.setOverallEndTime(value);
+				break;
+
+			case FIELD_LOCAL_LINK_NAME:
+				record.setLocalLinkName(value);
+				break;
+
+			case FIELD_LINK_NAME:
+				record.setLinkName(value);
+				break;
+
+			case FIELD_TOWN_NAME:
+				record.setTownName(value);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Invalid field " + field);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.spatial;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.netthreads.transportation.diff.DiffResult;
+import com.netthreads.transportation.parser.data.CarParkData;
+
+/**
+ * Finds the nearest car parks with free spaces.
+ * 
+ * Keeps a grid index of the car parks current from each fetch. Occupancy
+ * updates replace the car park records, queries see either the old or the
+ * new record and run in parallel with each other and with updates.
+ * 
+ */
+public class CarParkFinder
+{
+	// Statuses of car parks which are open with spaces.
+	public static final Set<String> AVAILABLE_STATUSES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+	        CarParkData.STATUS_ENOUGH_SPACES_AVAILABLE, CarParkData.STATUS_SPACES_AVAILABLE, CarParkData.STATUS_ALMOST_FULL)));
+
+	private final GridIndex<CarParkData> index;
+
+	/**
+	 * Construct finder with the default grid.
+	 * 
+	 */
+	public CarParkFinder()
+	{
+		this(new GridIndex<CarParkData>());
+	}
+
+	/**
+	 * Construct finder.
+	 * 
+	 * @param index
+	 */
+	public CarParkFinder(GridIndex<CarParkData> index)
+	{
+		this.index = index;
+	}
+
+	/**
+	 * Replace every car park.
+	 * 
+	 * @param list
+	 */
+	public void update(List<CarParkData> list)
+	{
+		index.rebuild(list);
+	}
+
+	/**
+	 * Apply the changes between two fetches.
+	 * 
+	 * @param diff
+	 */
+	public void update(DiffResult<CarParkData> diff)
+	{
+		index.update(diff);
+	}
+
+	/**
+	 * Insert or replace one car park, e.g. an occupancy update.
+	 * 
+	 * @param data
+	 */
+	public void update(CarParkData data)
+	{
+		index.put(data);
+	}
+
+	/**
+	 * Nearest open car parks with at least the given free spaces.
+	 * 
+	 * @param latitudeE6
+	 * @param longitudeE6
+	 * @param k
+	 *            Maximum number of car parks.
+	 * @param minFreeSpaces
+	 * 
+	 * @return Up to k car parks, nearest first.
+	 */
+	public List<Neighbour<CarParkData>> nearestAvailable(int latitudeE6, int longitudeE6, int k, int minFreeSpaces)
+	{
+		return nearest(latitudeE6, longitudeE6, k, AVAILABLE_STATUSES, minFreeSpaces);
+	}
+
+	/**
+	 * Nearest car parks with one of the statuses and at least the given free
+	 * spaces. Car parks with unknown capacity are excluded.
+	 * 
+	 * @param latitudeE6
+	 * @param longitudeE6
+	 * @param k
+	 *            Maximum number of car parks.
+	 * @param statuses
+	 *            Accepted carParkStatus values.
+	 * @param minFreeSpaces
+	 * 
+	 * @return Up to k car parks, nearest first.
+	 */
+	public List<Neighbour<CarParkData>> nearest(int latitudeE6, int longitudeE6, int k, final Set<String> statuses, final int minFreeSpaces)
+	{
+		return index.nearest(latitudeE6, longitudeE6, k, new RecordFilter<CarParkData>()
+		{
+			@Override
+			public boolean matches(CarParkData record)
+			{
+				return statuses.contains(record.getCarParkStatus()) && record.getFreeSpacesValue() >= minFreeSpaces;
+			}
+		});
+	}
+
+	/**
+	 * Number of car parks indexed.
+	 * 
+	 * @return The size.
+	 */
+	public int size()
+	{
+		return index.size();
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.spatial;
+
+import com.netthreads.transportation.parser.ValueParser;
+
+/**
+ * Distances between fixed point coordinates.
+ * 
+ */
+public final class GeoMath
+{
+	public static final double EARTH_RADIUS_METRES = 6371008.8;
+
+	// Length of a millionth of a degree of latitude.
+	public static final double METRES_PER_E6 = Math.PI * EARTH_RADIUS_METRES / 180 / ValueParser.FIXED_POINT_SCALE;
+
+	private static final double RADIANS_PER_E6 = Math.PI / 180 / ValueParser.FIXED_POINT_SCALE;
+
+	private GeoMath()
+	{
+	}
+
+	/**
+	 * Great circle distance.
+	 * 
+	 * @param latitudeE6a
+	 * @param longitudeE6a
+	 * @param latitudeE6b
+	 * @param longitudeE6b
+	 * 
+	 * @return Metres.
+	 */
+	public static double distance(int latitudeE6a, int longitudeE6a, int latitudeE6b, int longitudeE6b)
+	{
+		double latitudeA = latitudeE6a * RADIANS_PER_E6;
+		double latitudeB = latitudeE6b * RADIANS_PER_E6;
+
+		double sinLatitude = Math.sin((latitudeB - latitudeA) / 2);
+		double sinLongitude = Math.sin(((double) longitudeE6b - longitudeE6a) * RADIANS_PER_E6 / 2);
+
+		double h = sinLatitude * sinLatitude + Math.cos(latitudeA) * Math.cos(latitudeB) * sinLongitude * sinLongitude;
+
+		return 2 * EARTH_RADIUS_METRES * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+
+	/**
+	 * Millionths of a degree of latitude spanning a distance.
+	 * 
+	 * @param metres
+	 * 
+	 * @return The span, rounded up.
+	 */
+	public static int latitudeSpan(double metres)
+	{
+		return (int) Math.ceil(metres / METRES_PER_E6);
+	}
+
+	/**
+	 * Millionths of a degree of longitude spanning a distance at a latitude.
+	 * 
+	 * @param metres
+	 * @param latitudeE6
+	 * 
+	 * @return The span, rounded up, or a full circle near the poles.
+	 */
+	public static int longitudeSpan(double metres, int latitudeE6)
+	{
+		double cos = Math.cos(latitudeE6 * RADIANS_PER_E6);
+
+		double span = metres / (METRES_PER_E6 * cos);
+
+		return (cos < 1e-6 || span > 360L * ValueParser.FIXED_POINT_SCALE) ? 360 * ValueParser.FIXED_POINT_SCALE : (int) Math.ceil(span);
+	}
+
+	/**
+	 * Has a valid location.
+	 * 
+	 * @param latitudeE6
+	 * @param longitudeE6
+	 * 
+	 * @return True if both coordinates are valid.
+	 */
+	public static boolean isValid(int latitudeE6, int longitudeE6)
+	{
+		return latitudeE6 != ValueParser.INVALID_INT && longitudeE6 != ValueParser.INVALID_INT;
+	}
+}
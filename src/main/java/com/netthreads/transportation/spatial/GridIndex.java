@@ -0,0 +1,668 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.spatial;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.netthreads.transportation.diff.DiffResult;
+import com.netthreads.transportation.parser.LocatedRecord;
+import com.netthreads.transportation.parser.ValueParser;
+
+/**
+ * Uniform grid of records by location for radius, bounding box and nearest
+ * neighbour queries.
+ * 
+ * Coordinates are the fixed point millionths of a degree already parsed into
+ * the records, so queries never parse strings. A query only visits the cells
+ * overlapping its box. Update the index after each fetch, either rebuilt from
+ * the records or incrementally from a RecordDiff result. Records without a
+ * location are not indexed.
+ * 
+ * Boxes do not wrap around the 180th meridian. Thread safe, queries run in
+ * parallel with each other.
+ * 
+ */
+public class GridIndex<T extends LocatedRecord>
+{
+	// 0.01 degree, about 1.1km north to south and 0.6km east to west in
+	// Glasgow.
+	public static final int DEFAULT_CELL_SIZE_E6 = 10000;
+
+	private static final double RADIANS_PER_E6 = Math.PI / 180 / ValueParser.FIXED_POINT_SCALE;
+
+	// Nearest neighbour candidates, farthest on top.
+	private static final Comparator<Candidate<?>> FARTHEST_FIRST = new Comparator<Candidate<?>>()
+	{
+		@Override
+		public int compare(Candidate<?> a, Candidate<?> b)
+		{
+			return Double.compare(b.chord, a.chord);
+		}
+	};
+
+	private final int cellSizeE6;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<Long, List<Entry<T>>> cells = new HashMap<Long, List<Entry<T>>>();
+	private final Map<String, Entry<T>> records = new HashMap<String, Entry<T>>();
+
+	/**
+	 * Construct index with the default cell size.
+	 * 
+	 */
+	public GridIndex()
+	{
+		this(DEFAULT_CELL_SIZE_E6);
+	}
+
+	/**
+	 * Construct index.
+	 * 
+	 * @param cellSizeE6
+	 *            Cell size in millionths of a degree.
+	 */
+	public GridIndex(int cellSizeE6)
+	{
+		if (cellSizeE6 < 1)
+		{
+			throw new IllegalArgumentException("Invalid cell size " + cellSizeE6);
+		}
+
+		this.cellSizeE6 = cellSizeE6;
+	}
+
+	/**
+	 * Replace the contents of the index.
+	 * 
+	 * @param list
+	 */
+	public void rebuild(List<T> list)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			cells.clear();
+			records.clear();
+
+			for (T record : list)
+			{
+				insert(record);
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Apply the changes between two fetches.
+	 * 
+	 * @param diff
+	 */
+	public void update(DiffResult<T> diff)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			for (T record : diff.getRemoved())
+			{
+				delete(record.getId());
+			}
+
+			for (T record : diff.getChanged())
+			{
+				insert(record);
+			}
+
+			for (T record : diff.getAdded())
+			{
+				insert(record);
+			}
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Insert or replace record.
+	 * 
+	 * @param record
+	 * 
+	 * @return True if indexed, false if the record has no location.
+	 */
+	public boolean put(T record)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			return insert(record);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove record.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null if not indexed.
+	 */
+	public T remove(String id)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			Entry<T> entry = delete(id);
+
+			return entry != null ? entry.record : null;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Look up record.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null if not indexed.
+	 */
+	public T get(String id)
+	{
+		lock.readLock().lock();
+		try
+		{
+			Entry<T> entry = records.get(id);
+
+			return entry != null ? entry.record : null;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Records inside a box, edges included.
+	 * 
+	 * @param minLatitudeE6
+	 * @param minLongitudeE6
+	 * @param maxLatitudeE6
+	 * @param maxLongitudeE6
+	 * 
+	 * @return The records.
+	 */
+	public List<T> withinBox(int minLatitudeE6, int minLongitudeE6, int maxLatitudeE6, int maxLongitudeE6)
+	{
+		List<T> result = new ArrayList<T>();
+
+		lock.readLock().lock();
+		try
+		{
+			collect(minLatitudeE6, minLongitudeE6, maxLatitudeE6, maxLongitudeE6, result);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Records within a distance of a point.
+	 * 
+	 * @param latitudeE6
+	 * @param longitudeE6
+	 * @param metres
+	 * 
+	 * @return The records, in no particular order.
+	 */
+	public List<T> withinRadius(int latitudeE6, int longitudeE6, double metres)
+	{
+		int latitudeSpan = GeoMath.latitudeSpan(metres);
+
+		// Widest longitude span is on the edge of the box nearest a pole.
+		int poleward = (int) Math.min(90L * ValueParser.FIXED_POINT_SCALE, Math.abs((long) latitudeE6) + latitudeSpan);
+		int longitudeSpan = GeoMath.longitudeSpan(metres, poleward);
+
+		List<T> result = new ArrayList<T>();
+
+		lock.readLock().lock();
+		try
+		{
+			collect(latitudeE6 - latitudeSpan, longitudeE6 - longitudeSpan, latitudeE6 + latitudeSpan, longitudeE6 + longitudeSpan, result);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+
+		// Trim the box to the circle.
+		int kept = 0;
+		for (int index = 0; index < result.size(); index++)
+		{
+			T record = result.get(index);
+
+			if (GeoMath.distance(latitudeE6, longitudeE6, record.getLatitudeE6(), record.getLongitudeE6()) <= metres)
+			{
+				result.set(kept++, record);
+			}
+		}
+
+		return result.subList(0, kept);
+	}
+
+	/**
+	 * The k nearest records which match a filter.
+	 * 
+	 * Searches rings of cells outwards from the cell holding the point and
+	 * stops once no unvisited cell can hold anything nearer than the k found.
+	 * Candidates are ranked on the straight line distance between their
+	 * positions on a unit sphere, which orders them as the great circle
+	 * distance does for a few multiplications.
+	 * 
+	 * @param latitudeE6
+	 * @param longitudeE6
+	 * @param k
+	 * @param filter
+	 *            Null for every record.
+	 * 
+	 * @return Up to k records, nearest first.
+	 */
+	public List<Neighbour<T>> nearest(int latitudeE6, int longitudeE6, int k, RecordFilter<T> filter)
+	{
+		if (k < 1)
+		{
+			return Collections.emptyList();
+		}
+
+		Entry<T> point = new Entry<T>(null, latitudeE6, longitudeE6);
+
+		PriorityQueue<Candidate<T>> found = new PriorityQueue<Candidate<T>>(k + 1, FARTHEST_FIRST);
+
+		lock.readLock().lock();
+		try
+		{
+			int row = cell(latitudeE6);
+			int column = cell(longitudeE6);
+
+			int remaining = cells.size();
+
+			for (int ring = 0; remaining > 0; ring++)
+			{
+				if (ring > 0 && 8L * ring > remaining)
+				{
+					// Sparse, cheaper to visit the occupied cells left.
+					for (Map.Entry<Long, List<Entry<T>>> entry : cells.entrySet())
+					{
+						long key = entry.getKey();
+
+						int distance = Math.max(Math.abs((int) (key >> 32) - row), Math.abs((int) key - column));
+						if (distance >= ring)
+						{
+							offer(entry.getValue(), point, k, filter, found);
+						}
+					}
+
+					break;
+				}
+
+				remaining -= visitRing(row, column, ring, point, k, filter, found);
+
+				if (found.size() == k && found.peek().chord <= chord(clearance(row, column, ring, latitudeE6, longitudeE6)))
+				{
+					break;
+				}
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+
+		List<Neighbour<T>> result = new ArrayList<Neighbour<T>>(found.size());
+		while (!found.isEmpty())
+		{
+			T record = found.poll().entry.record;
+
+			result.add(new Neighbour<T>(record, GeoMath.distance(latitudeE6, longitudeE6, record.getLatitudeE6(), record.getLongitudeE6())));
+		}
+
+		Collections.reverse(result);
+
+		return result;
+	}
+
+	/**
+	 * Number of records indexed.
+	 * 
+	 * @return The size.
+	 */
+	public int size()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return records.size();
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	public int getCellSizeE6()
+	{
+		return cellSizeE6;
+	}
+
+	/**
+	 * Add records in box to list, read lock held.
+	 * 
+	 */
+	private void collect(int minLatitudeE6, int minLongitudeE6, int maxLatitudeE6, int maxLongitudeE6, List<T> result)
+	{
+		long minRow = cell(minLatitudeE6);
+		long maxRow = cell(maxLatitudeE6);
+		long minColumn = cell(minLongitudeE6);
+		long maxColumn = cell(maxLongitudeE6);
+
+		if (minRow > maxRow || minColumn > maxColumn)
+		{
+			return;
+		}
+
+		if ((maxRow - minRow + 1) * (maxColumn - minColumn + 1) > cells.size())
+		{
+			// Box covers more cells than are occupied, visit the occupied ones.
+			for (List<Entry<T>> cell : cells.values())
+			{
+				addInBox(cell, minLatitudeE6, minLongitudeE6, maxLatitudeE6, maxLongitudeE6, result);
+			}
+
+			return;
+		}
+
+		for (long row = minRow; row <= maxRow; row++)
+		{
+			for (long column = minColumn; column <= maxColumn; column++)
+			{
+				List<Entry<T>> cell = cells.get(key((int) row, (int) column));
+
+				if (cell != null)
+				{
+					addInBox(cell, minLatitudeE6, minLongitudeE6, maxLatitudeE6, maxLongitudeE6, result);
+				}
+			}
+		}
+	}
+
+	private static <T extends LocatedRecord> void addInBox(List<Entry<T>> cell, int minLatitudeE6, int minLongitudeE6, int maxLatitudeE6, int maxLongitudeE6, List<T> result)
+	{
+		for (int index = 0; index < cell.size(); index++)
+		{
+			Entry<T> entry = cell.get(index);
+
+			if (entry.latitudeE6 >= minLatitudeE6 && entry.latitudeE6 <= maxLatitudeE6 && entry.longitudeE6 >= minLongitudeE6 && entry.longitudeE6 <= maxLongitudeE6)
+			{
+				result.add(entry.record);
+			}
+		}
+	}
+
+	/**
+	 * Offer the records of the cells on a ring around a cell, read lock held.
+	 * 
+	 * @return The number of occupied cells on the ring.
+	 */
+	private int visitRing(int row, int column, int ring, Entry<T> point, int k, RecordFilter<T> filter, PriorityQueue<Candidate<T>> found)
+	{
+		int occupied = 0;
+
+		for (int r = row - ring; r <= row + ring; r++)
+		{
+			// Whole first and last rows, the two edge cells of the others.
+			int step = (r == row - ring || r == row + ring) ? 1 : Math.max(1, 2 * ring);
+
+			for (int c = column - ring; c <= column + ring; c += step)
+			{
+				List<Entry<T>> cell = cells.get(key(r, c));
+
+				if (cell != null)
+				{
+					offer(cell, point, k, filter, found);
+
+					occupied++;
+				}
+			}
+		}
+
+		return occupied;
+	}
+
+	private static <T extends LocatedRecord> void offer(List<Entry<T>> cell, Entry<T> point, int k, RecordFilter<T> filter, PriorityQueue<Candidate<T>> found)
+	{
+		for (int index = 0; index < cell.size(); index++)
+		{
+			Entry<T> entry = cell.get(index);
+
+			double chord = entry.chord(point);
+
+			if (found.size() == k && chord >= found.peek().chord)
+			{
+				continue;
+			}
+
+			if (filter != null && !filter.matches(entry.record))
+			{
+				continue;
+			}
+
+			if (found.size() == k)
+			{
+				found.poll();
+			}
+
+			found.add(new Candidate<T>(entry, chord));
+		}
+	}
+
+	/**
+	 * Shortest distance from the point to anything outside the rings up to
+	 * and including this one.
+	 * 
+	 * @return Metres.
+	 */
+	private double clearance(int row, int column, int ring, int latitudeE6, int longitudeE6)
+	{
+		long south = latitudeE6 - (long) (row - ring) * cellSizeE6;
+		long north = (long) (row + ring + 1) * cellSizeE6 - latitudeE6;
+		long west = longitudeE6 - (long) (column - ring) * cellSizeE6;
+		long east = (long) (column + ring + 1) * cellSizeE6 - longitudeE6;
+
+		// Distance to a parallel is the difference in latitude.
+		double latitudeGap = Math.min(south, north) * GeoMath.METRES_PER_E6;
+
+		// Distance to a meridian.
+		double angle = Math.min(west, east) * RADIANS_PER_E6;
+		double longitudeGap = angle >= Math.PI / 2 ? Double.MAX_VALUE : GeoMath.EARTH_RADIUS_METRES * Math.asin(Math.cos(latitudeE6 * RADIANS_PER_E6) * Math.sin(angle));
+
+		return Math.min(latitudeGap, longitudeGap);
+	}
+
+	/**
+	 * Squared unit sphere chord length of a great circle distance.
+	 * 
+	 * @param metres
+	 * 
+	 * @return The squared chord.
+	 */
+	private static double chord(double metres)
+	{
+		double angle = metres / GeoMath.EARTH_RADIUS_METRES;
+
+		if (angle >= Math.PI)
+		{
+			return 4;
+		}
+
+		double half = 2 * Math.sin(angle / 2);
+
+		return half * half;
+	}
+
+	/**
+	 * Insert record, write lock held.
+	 * 
+	 */
+	private boolean insert(T record)
+	{
+		delete(record.getId());
+
+		int latitude = record.getLatitudeE6();
+		int longitude = record.getLongitudeE6();
+
+		if (!GeoMath.isValid(latitude, longitude))
+		{
+			return false;
+		}
+
+		Entry<T> entry = new Entry<T>(record, latitude, longitude);
+
+		Long key = key(cell(latitude), cell(longitude));
+
+		List<Entry<T>> cell = cells.get(key);
+		if (cell == null)
+		{
+			cell = new ArrayList<Entry<T>>(4);
+			cells.put(key, cell);
+		}
+
+		cell.add(entry);
+		records.put(record.getId(), entry);
+
+		return true;
+	}
+
+	/**
+	 * Delete record, write lock held.
+	 * 
+	 */
+	private Entry<T> delete(String id)
+	{
+		Entry<T> entry = records.remove(id);
+
+		if (entry != null)
+		{
+			Long key = key(cell(entry.latitudeE6), cell(entry.longitudeE6));
+
+			List<Entry<T>> cell = cells.get(key);
+			cell.remove(entry);
+
+			if (cell.isEmpty())
+			{
+				cells.remove(key);
+			}
+		}
+
+		return entry;
+	}
+
+	private int cell(int coordinateE6)
+	{
+		return Math.floorDiv(coordinateE6, cellSizeE6);
+	}
+
+	private static Long key(int row, int column)
+	{
+		return ((long) row << 32) | (column & 0xffffffffL);
+	}
+
+	/**
+	 * Indexed record with the location it was indexed at and its position
+	 * on the unit sphere.
+	 * 
+	 */
+	private static class Entry<T>
+	{
+		private final T record;
+		private final int latitudeE6;
+		private final int longitudeE6;
+
+		private final double x;
+		private final double y;
+		private final double z;
+
+		private Entry(T record, int latitudeE6, int longitudeE6)
+		{
+			this.record = record;
+			this.latitudeE6 = latitudeE6;
+			this.longitudeE6 = longitudeE6;
+
+			double latitude = latitudeE6 * RADIANS_PER_E6;
+			double longitude = longitudeE6 * RADIANS_PER_E6;
+
+			x = Math.cos(latitude) * Math.cos(longitude);
+			y = Math.cos(latitude) * Math.sin(longitude);
+			z = Math.sin(latitude);
+		}
+
+		/**
+		 * Squared straight line distance.
+		 * 
+		 */
+		private double chord(Entry<?> other)
+		{
+			double dx = x - other.x;
+			double dy = y - other.y;
+			double dz = z - other.z;
+
+			return dx * dx + dy * dy + dz * dz;
+		}
+	}
+
+	private static class Candidate<T>
+	{
+		private final Entry<T> entry;
+		private final double chord;
+
+		private Candidate(Entry<T> entry, double chord)
+		{
+			this.entry = entry;
+			this.chord = chord;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.spatial;
+
+/**
+ * Record found by a nearest neighbour query and its distance.
+ * 
+ */
+public class Neighbour<T>
+{
+	private final T record;
+	private final double distance;
+
+	public Neighbour(T record, double distance)
+	{
+		this.record = record;
+		this.distance = distance;
+	}
+
+	public T getRecord()
+	{
+		return record;
+	}
+
+	/**
+	 * Distance from the query point.
+	 * 
+	 * @return Metres.
+	 */
+	public double getDistance()
+	{
+		return distance;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Neighbour [record=" + record + ", distance=" + distance + "]";
+	}
+}
@@ -0,0 +1,358 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.store;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netthreads.transportation.parser.FeedRecord;
+import com.netthreads.transportation.parser.RecordSink;
+
+/**
+ * Latest state of each record by id, shared between consumers.
+ * 
+ * Records are upserted from fetch results, or directly as a RecordSink passed
+ * to StreamParser.fetch. Each record expires after its time to live unless a
+ * later fetch refreshes it, so records which have gone from the feed drop
+ * out. When the store is full the least recently used record is evicted.
+ * Lookups and updates are O(1).
+ * 
+ * Thread safe. Stored records are shared, don't recycle them.
+ * 
+ */
+public class RecordStore<T extends FeedRecord> implements RecordSink<T>
+{
+	private final int maxSize;
+	private final long defaultTtlMillis;
+	private final Clock clock;
+
+	private final LinkedHashMap<String, StoredRecord<T>> entries;
+
+	// Statistics.
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long expirations = 0;
+
+	/**
+	 * Construct store.
+	 * 
+	 * @param maxSize
+	 *            Maximum number of records.
+	 * @param defaultTtlMillis
+	 *            Time to live of records stored without one.
+	 */
+	public RecordStore(int maxSize, long defaultTtlMillis)
+	{
+		this(maxSize, defaultTtlMillis, Clock.systemUTC());
+	}
+
+	/**
+	 * Construct store.
+	 * 
+	 * @param maxSize
+	 *            Maximum number of records.
+	 * @param defaultTtlMillis
+	 *            Time to live of records stored without one.
+	 * @param clock
+	 *            Time source for expiry.
+	 */
+	public RecordStore(int maxSize, long defaultTtlMillis, Clock clock)
+	{
+		if (maxSize < 1)
+		{
+			throw new IllegalArgumentException("Invalid store size " + maxSize);
+		}
+
+		if (defaultTtlMillis <= 0)
+		{
+			throw new IllegalArgumentException("Invalid time to live " + defaultTtlMillis);
+		}
+
+		this.maxSize = maxSize;
+		this.defaultTtlMillis = defaultTtlMillis;
+		this.clock = clock;
+
+		// Access ordered, the eldest entry is the least recently used.
+		entries = new LinkedHashMap<String, StoredRecord<T>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, StoredRecord<T>> eldest)
+			{
+				if (size() <= RecordStore.this.maxSize)
+				{
+					return false;
+				}
+
+				if (eldest.getValue().isExpired(clock.millis()))
+				{
+					expirations++;
+				}
+				else
+				{
+					evictions++;
+				}
+
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Insert or replace record with the default time to live.
+	 * 
+	 * @param record
+	 */
+	public void put(T record)
+	{
+		put(record, defaultTtlMillis);
+	}
+
+	/**
+	 * Insert or replace record.
+	 * 
+	 * @param record
+	 * @param ttlMillis
+	 *            Time to live from now, Long.MAX_VALUE to never expire.
+	 */
+	public synchronized void put(T record, long ttlMillis)
+	{
+		if (ttlMillis <= 0)
+		{
+			throw new IllegalArgumentException("Invalid time to live " + ttlMillis);
+		}
+
+		entries.put(record.getId(), new StoredRecord<T>(record, expiry(ttlMillis)));
+	}
+
+	/**
+	 * Insert or replace records with the default time to live.
+	 * 
+	 * @param records
+	 */
+	public synchronized void upsert(List<T> records)
+	{
+		long expires = expiry(defaultTtlMillis);
+
+		for (T record : records)
+		{
+			entries.put(record.getId(), new StoredRecord<T>(record, expires));
+		}
+	}
+
+	/**
+	 * Expiry time, a time to live past the end of the clock never expires.
+	 * 
+	 */
+	private long expiry(long ttlMillis)
+	{
+		long now = clock.millis();
+		long expires = now + ttlMillis;
+
+		return (expires < now) ? Long.MAX_VALUE : expires;
+	}
+
+	/**
+	 * Store each record as it is parsed.
+	 * 
+	 * @param record
+	 * 
+	 * @return CONTINUE
+	 */
+	@Override
+	public int accept(T record)
+	{
+		put(record);
+
+		return CONTINUE;
+	}
+
+	/**
+	 * Look up record.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null if not stored or expired.
+	 */
+	public synchronized T get(String id)
+	{
+		StoredRecord<T> entry = entries.get(id);
+
+		if (entry == null)
+		{
+			misses++;
+
+			return null;
+		}
+
+		if (entry.isExpired(clock.millis()))
+		{
+			entries.remove(id);
+
+			expirations++;
+			misses++;
+
+			return null;
+		}
+
+		hits++;
+
+		return entry.record;
+	}
+
+	/**
+	 * Remove record.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null if not stored.
+	 */
+	public synchronized T remove(String id)
+	{
+		StoredRecord<T> entry = entries.remove(id);
+
+		return entry != null ? entry.record : null;
+	}
+
+	/**
+	 * Remove every expired record. Expired records are otherwise only removed
+	 * when looked up or evicted.
+	 * 
+	 * @return The number removed.
+	 */
+	public synchronized int purgeExpired()
+	{
+		long now = clock.millis();
+		int removed = 0;
+
+		Iterator<StoredRecord<T>> iterator = entries.values().iterator();
+		while (iterator.hasNext())
+		{
+			if (iterator.next().isExpired(now))
+			{
+				iterator.remove();
+
+				removed++;
+			}
+		}
+
+		expirations += removed;
+
+		return removed;
+	}
+
+	/**
+	 * Records which have not expired, least recently used first. Does not
+	 * count as use.
+	 * 
+	 * @return A copy of the records.
+	 */
+	public synchronized List<T> values()
+	{
+		long now = clock.millis();
+
+		List<T> list = new ArrayList<T>(entries.size());
+		for (StoredRecord<T> entry : entries.values())
+		{
+			if (!entry.isExpired(now))
+			{
+				list.add(entry.record);
+			}
+		}
+
+		return list;
+	}
+
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Number of records held, including expired ones not yet purged.
+	 * 
+	 * @return The size.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	public int getMaxSize()
+	{
+		return maxSize;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Number of live records evicted because the store was full.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Number of records removed because their time to live ran out.
+	 * 
+	 * @return The count.
+	 */
+	public synchronized long getExpirations()
+	{
+		return expirations;
+	}
+
+	/**
+	 * Stored record and its expiry time.
+	 * 
+	 */
+	private static class StoredRecord<T>
+	{
+		private final T record;
+		private final long expires;
+
+		private StoredRecord(T record, long expires)
+		{
+			this.record = record;
+			this.expires = expires;
+		}
+
+		private boolean isExpired(long now)
+		{
+			return now >= expires;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.temporal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.netthreads.transportation.diff.DiffResult;
+import com.netthreads.transportation.parser.TimedRecord;
+import com.netthreads.transportation.parser.ValueParser;
+
+/**
+ * Index of records by validity period for "active at" and overlap queries.
+ * 
+ * Times are the epoch milliseconds already parsed into the records at ingest,
+ * so queries never parse strings. The periods are held in a static interval
+ * tree: arrays sorted by start time, each node the middle of its range and
+ * holding the latest end time below it. A query skips every subtree which
+ * ends before it or starts after it.
+ * 
+ * Periods include both ends. A record without an end time is open ended,
+ * records without a start time are not indexed.
+ * 
+ * Updates mark the tree stale and the next query rebuilds it, so apply a
+ * whole fetch through rebuild() or update() rather than record by record.
+ * Thread safe, queries on a current tree take no lock.
+ * 
+ */
+public class IntervalIndex<T extends TimedRecord>
+{
+	private final Map<String, T> records = new HashMap<String, T>();
+
+	// Null when stale.
+	private volatile Tree<T> tree = null;
+
+	/**
+	 * Replace the contents of the index.
+	 * 
+	 * @param list
+	 */
+	public synchronized void rebuild(List<T> list)
+	{
+		records.clear();
+
+		for (T record : list)
+		{
+			insert(record);
+		}
+
+		tree = null;
+	}
+
+	/**
+	 * Apply the changes between two fetches.
+	 * 
+	 * @param diff
+	 */
+	public synchronized void update(DiffResult<T> diff)
+	{
+		for (T record : diff.getRemoved())
+		{
+			records.remove(record.getId());
+		}
+
+		for (T record : diff.getChanged())
+		{
+			insert(record);
+		}
+
+		for (T record : diff.getAdded())
+		{
+			insert(record);
+		}
+
+		tree = null;
+	}
+
+	/**
+	 * Insert or replace record.
+	 * 
+	 * @param record
+	 * 
+	 * @return True if indexed, false if the record has no start time.
+	 */
+	public synchronized boolean put(T record)
+	{
+		tree = null;
+
+		return insert(record);
+	}
+
+	/**
+	 * Remove record.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null if not indexed.
+	 */
+	public synchronized T remove(String id)
+	{
+		T record = records.remove(id);
+
+		if (record != null)
+		{
+			tree = null;
+		}
+
+		return record;
+	}
+
+	/**
+	 * Look up record.
+	 * 
+	 * @param id
+	 * 
+	 * @return The record or null if not indexed.
+	 */
+	public synchronized T get(String id)
+	{
+		return records.get(id);
+	}
+
+	/**
+	 * Records active at a time.
+	 * 
+	 * @param timeMillis
+	 * 
+	 * @return The records in start time order.
+	 */
+	public List<T> activeAt(long timeMillis)
+	{
+		return overlapping(timeMillis, timeMillis);
+	}
+
+	/**
+	 * Records active at any time in a window, both ends included.
+	 * 
+	 * @param fromMillis
+	 * @param toMillis
+	 * 
+	 * @return The records in start time order.
+	 */
+	public List<T> overlapping(long fromMillis, long toMillis)
+	{
+		List<T> result = new ArrayList<T>();
+
+		if (fromMillis <= toMillis)
+		{
+			Tree<T> current = current();
+
+			current.search(0, current.size - 1, fromMillis, toMillis, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Number of records indexed.
+	 * 
+	 * @return The size.
+	 */
+	public synchronized int size()
+	{
+		return records.size();
+	}
+
+	/**
+	 * Current tree, rebuilt if stale.
+	 * 
+	 */
+	private Tree<T> current()
+	{
+		Tree<T> current = tree;
+
+		if (current == null)
+		{
+			synchronized (this)
+			{
+				current = tree;
+
+				if (current == null)
+				{
+					current = new Tree<T>(records.values());
+
+					tree = current;
+				}
+			}
+		}
+
+		return current;
+	}
+
+	/**
+	 * Insert record, lock held.
+	 * 
+	 */
+	private boolean insert(T record)
+	{
+		if (record.getOverallStartTimeMillis() == ValueParser.INVALID_TIME)
+		{
+			records.remove(record.getId());
+
+			return false;
+		}
+
+		records.put(record.getId(), record);
+
+		return true;
+	}
+
+	/**
+	 * End time, open ended periods never end.
+	 * 
+	 */
+	private static long end(TimedRecord record)
+	{
+		long end = record.getOverallEndTimeMillis();
+
+		return end == ValueParser.INVALID_TIME ? Long.MAX_VALUE : end;
+	}
+
+	/**
+	 * Immutable interval tree laid out in sorted arrays.
+	 * 
+	 */
+	private static class Tree<T extends TimedRecord>
+	{
+		private final int size;
+
+		private final Object[] items;
+		private final long[] starts;
+		private final long[] ends;
+
+		// Latest end in the subtree rooted at each node.
+		private final long[] maxEnds;
+
+		private Tree(Collection<T> values)
+		{
+			size = values.size();
+
+			items = values.toArray();
+			Arrays.sort(items, new Comparator<Object>()
+			{
+				@Override
+				public int compare(Object a, Object b)
+				{
+					return Long.compare(((TimedRecord) a).getOverallStartTimeMillis(), ((TimedRecord) b).getOverallStartTimeMillis());
+				}
+			});
+
+			starts = new long[size];
+			ends = new long[size];
+			maxEnds = new long[size];
+
+			for (int index = 0; index < size; index++)
+			{
+				TimedRecord record = (TimedRecord) items[index];
+
+				starts[index] = record.getOverallStartTimeMillis();
+				ends[index] = end(record);
+			}
+
+			augment(0, size - 1);
+		}
+
+		private long augment(int low, int high)
+		{
+			if (low > high)
+			{
+				return Long.MIN_VALUE;
+			}
+
+			int middle = (low + high) >>> 1;
+
+			long max = Math.max(ends[middle], Math.max(augment(low, middle - 1), augment(middle + 1, high)));
+
+			maxEnds[middle] = max;
+
+			return max;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void search(int low, int high, long from, long to, List<T> result)
+		{
+			while (low <= high)
+			{
+				int middle = (low + high) >>> 1;
+
+				// Everything below ends too early.
+				if (maxEnds[middle] < from)
+				{
+					return;
+				}
+
+				search(low, middle - 1, from, to, result);
+
+				// This and everything to the right starts too late.
+				if (starts[middle] > to)
+				{
+					return;
+				}
+
+				if (ends[middle] >= from)
+				{
+					result.add((T) items[middle]);
+				}
+
+				low = middle + 1;
+			}
+		}
+	}
+}
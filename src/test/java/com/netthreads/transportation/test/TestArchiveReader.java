@@ -0,0 +1,156 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.archive.ArchiveListener;
+import com.netthreads.transportation.archive.ArchiveReader;
+import com.netthreads.transportation.parser.ListRecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Memory mapped reading of archived dumps.
+ * 
+ */
+public class TestArchiveReader
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Concatenated documents read through windows smaller than a document.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testConcatenatedDump() throws XmlPullParserException, IOException
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		// Second copy is cut short so it fails on its own.
+		File file = folder.newFile("dump.xml");
+		OutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(document);
+			out.write(document, 0, document.length / 2);
+			out.write(document);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		StreamParserImpl<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		ArchiveReader<TrafficData> reader = new ArchiveReader<TrafficData>(streamParser, pullParser, new TrafficDataFactory());
+		reader.setWindowSize(4096);
+		reader.setProgressInterval(1024);
+
+		final List<Long> offsets = new ArrayList<Long>();
+		final List<Long> starts = new ArrayList<Long>();
+		final List<Integer> states = new ArrayList<Integer>();
+
+		reader.setListener(new ArchiveListener()
+		{
+			@Override
+			public void progress(File file, long offset, long length)
+			{
+				offsets.add(offset);
+			}
+
+			@Override
+			public void documentComplete(File file, long offset, int state, Exception error)
+			{
+				starts.add(offset);
+				states.add(state);
+			}
+		});
+
+		List<TrafficData> list = new ArrayList<TrafficData>();
+
+		int documents = reader.read(file, new ListRecordSink<TrafficData>(list));
+
+		Assert.assertEquals(3, documents);
+
+		Assert.assertEquals(Long.valueOf(0), starts.get(0));
+		Assert.assertEquals(Long.valueOf(document.length), starts.get(1));
+		Assert.assertEquals(Long.valueOf(document.length + document.length / 2), starts.get(2));
+
+		Assert.assertEquals(Integer.valueOf(StreamParser.DONE), states.get(0));
+		Assert.assertEquals(Integer.valueOf(StreamParser.ERROR), states.get(1));
+		Assert.assertEquals(Integer.valueOf(StreamParser.DONE), states.get(2));
+
+		// Both whole copies, and what there was of the broken one.
+		Assert.assertTrue(list.size() > 34);
+		Assert.assertEquals(list.get(0).getId(), list.get(list.size() - 17).getId());
+		Assert.assertEquals(list.get(16).getId(), list.get(list.size() - 1).getId());
+
+		// Offsets advance to the end of the file.
+		Assert.assertTrue(offsets.size() > 3);
+		for (int i = 1; i < offsets.size(); i++)
+		{
+			Assert.assertTrue(offsets.get(i) >= offsets.get(i - 1));
+		}
+		Assert.assertEquals(Long.valueOf(file.length()), offsets.get(offsets.size() - 1));
+	}
+
+	private byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestArchiveReader.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
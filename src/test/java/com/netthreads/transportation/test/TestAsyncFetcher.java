@@ -0,0 +1,313 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.netthreads.transportation.parser.AsyncFetcher;
+import com.netthreads.transportation.parser.FetchResult;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+
+/**
+ * Asynchronous fetch, deadlines and cancellation of blocked reads.
+ * 
+ */
+public class TestAsyncFetcher
+{
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+	private static final String RECORD_END = "</situationRecord>";
+
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private ExecutorService executor;
+	private StreamParser<CarParkData> streamParser;
+	private CarParkDataPullParser pullParser;
+	private AsyncFetcher<CarParkData> fetcher;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		executor = Executors.newSingleThreadExecutor();
+
+		streamParser = new StreamParserImpl<CarParkData>();
+		pullParser = new CarParkDataPullParser(streamParser.getParser());
+		fetcher = new AsyncFetcher<CarParkData>(streamParser, executor);
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testFetch() throws Exception
+	{
+		CompletableFuture<FetchResult<CarParkData>> future = fetcher.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), new CarParkDataFactory(), pullParser);
+
+		FetchResult<CarParkData> result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertEquals(StreamParser.DONE, result.getState());
+		Assert.assertEquals(10, result.getRecordCount());
+		Assert.assertEquals(10, streamParser.getRecordCount());
+		Assert.assertFalse(result.isTimedOut());
+		Assert.assertFalse(fetcher.isBusy());
+	}
+
+	/**
+	 * A read blocked on a stalled stream is cut off by the deadline, keeping
+	 * the records parsed before the stall.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testDeadline() throws Exception
+	{
+		CountDownLatch never = new CountDownLatch(1);
+
+		CompletableFuture<FetchResult<CarParkData>> future = fetcher.fetch(stalled(2, never), new CarParkDataFactory(), pullParser, 100, TimeUnit.MILLISECONDS);
+
+		FetchResult<CarParkData> result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertEquals(StreamParser.CANCELLED, result.getState());
+		Assert.assertTrue(result.isTimedOut());
+		Assert.assertEquals(2, result.getRecordCount());
+		Assert.assertEquals("CPG02C_1", result.getRecords().get(0).getId());
+		Assert.assertFalse(fetcher.isBusy());
+	}
+
+	/**
+	 * Cancel from a watchdog thread.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancel() throws Exception
+	{
+		CountDownLatch never = new CountDownLatch(1);
+
+		CompletableFuture<FetchResult<CarParkData>> future = fetcher.fetch(stalled(3, never), new CarParkDataFactory(), pullParser);
+
+		// Second fetch while the first is running.
+		FetchResult<CarParkData> busy = fetcher.fetch(stalled(0, never), new CarParkDataFactory(), pullParser).get();
+		Assert.assertEquals(StreamParser.BUSY, busy.getState());
+
+		Thread watchdog = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					Thread.sleep(100);
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+
+				fetcher.cancel();
+			}
+		});
+		watchdog.start();
+
+		FetchResult<CarParkData> result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertEquals(StreamParser.CANCELLED, result.getState());
+		Assert.assertFalse(result.isTimedOut());
+		Assert.assertEquals(3, result.getRecordCount());
+
+		// The executor thread is not left interrupted and runs the next fetch.
+		result = fetcher.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), new CarParkDataFactory(), pullParser).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertEquals(StreamParser.DONE, result.getState());
+		Assert.assertEquals(10, result.getRecordCount());
+	}
+
+	/**
+	 * Cancelling the future stops the fetch.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancelFuture() throws Exception
+	{
+		CountDownLatch never = new CountDownLatch(1);
+
+		CompletableFuture<FetchResult<CarParkData>> future = fetcher.fetch(stalled(1, never), new CarParkDataFactory(), pullParser);
+
+		// Wait for the stall after the first record.
+		while (streamParser.getRecordCount() < 1)
+		{
+			Thread.sleep(10);
+		}
+
+		Assert.assertTrue(future.cancel(true));
+
+		// Wait for the executor to finish the cancelled fetch.
+		executor.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+			}
+		}).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertFalse(fetcher.isBusy());
+		Assert.assertEquals(StreamParser.CANCELLED, streamParser.getState());
+		Assert.assertEquals(1, streamParser.getRecordCount());
+	}
+
+	/**
+	 * A deadline firing as a fetch finishes never reaches the next fetch.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testLateDeadline() throws Exception
+	{
+		byte[] document = load(XML_CAR_PARK_FILE);
+
+		for (int i = 0; i < 200; i++)
+		{
+			FetchResult<CarParkData> racing = fetcher.fetch(new ByteArrayInputStream(document), new CarParkDataFactory(), pullParser, 1, TimeUnit.MILLISECONDS).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+			if (racing.getState() == StreamParser.DONE)
+			{
+				Assert.assertFalse(racing.isTimedOut());
+				Assert.assertEquals(10, racing.getRecordCount());
+			}
+			else
+			{
+				Assert.assertEquals(StreamParser.CANCELLED, racing.getState());
+				Assert.assertTrue(racing.isTimedOut());
+			}
+
+			FetchResult<CarParkData> next = fetcher.fetch(new ByteArrayInputStream(document), new CarParkDataFactory(), pullParser).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+			Assert.assertEquals(StreamParser.DONE, next.getState());
+			Assert.assertFalse(next.isTimedOut());
+			Assert.assertEquals(10, next.getRecordCount());
+		}
+	}
+
+	/**
+	 * An exception from the data factory fails the fetch through the parser.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFactoryError() throws Exception
+	{
+		final IllegalStateException thrown = new IllegalStateException("Factory failed");
+
+		CarParkDataFactory failing = new CarParkDataFactory()
+		{
+			@Override
+			public CarParkData createRecord()
+			{
+				throw thrown;
+			}
+		};
+
+		FetchResult<CarParkData> result = fetcher.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), failing, pullParser).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertEquals(StreamParser.ERROR, result.getState());
+		Assert.assertSame(thrown, result.getError());
+		Assert.assertEquals(StreamParser.ERROR, streamParser.getState());
+		Assert.assertSame(thrown, streamParser.getError());
+		Assert.assertFalse(fetcher.isBusy());
+	}
+
+	/**
+	 * Car park data up to the end of the given number of records, then a read
+	 * which blocks until the latch opens.
+	 * 
+	 */
+	private static InputStream stalled(int records, final CountDownLatch latch) throws IOException
+	{
+		String document = new String(load(XML_CAR_PARK_FILE), "UTF-8");
+
+		int end = document.indexOf("<situationRecord ");
+		for (int i = 0; i < records; i++)
+		{
+			end = document.indexOf(RECORD_END, end) + RECORD_END.length();
+		}
+
+		InputStream blocking = new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				try
+				{
+					latch.await();
+				}
+				catch (InterruptedException e)
+				{
+					throw new InterruptedIOException();
+				}
+
+				return -1;
+			}
+		};
+
+		return new SequenceInputStream(new ByteArrayInputStream(document.substring(0, end).getBytes("UTF-8")), blocking);
+	}
+
+	private static byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestAsyncFetcher.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.ChannelInputStream;
+import com.netthreads.transportation.parser.Compression;
+import com.netthreads.transportation.parser.ListRecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Channel and compressed input.
+ * 
+ */
+public class TestCompressedInput
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Every input path gives the records of a plain stream fetch.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testInputVariants() throws XmlPullParserException, IOException
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		StreamParserImpl<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+		TrafficDataFactory dataFactory = new TrafficDataFactory();
+
+		// Small buffer so reads span many refills.
+		streamParser.setReadBufferSize(512);
+
+		List<TrafficData> expected = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.DONE, streamParser.fetch(new ByteArrayInputStream(document), expected, dataFactory, pullParser));
+		Assert.assertEquals(17, expected.size());
+
+		List<TrafficData> list = new ArrayList<TrafficData>();
+
+		// Channel with explicit charset.
+		int state = streamParser.fetch(Channels.newChannel(new ByteArrayInputStream(document)), Compression.NONE, UTF_8, new ListRecordSink<TrafficData>(list), dataFactory, pullParser);
+		Assert.assertEquals(StreamParser.DONE, state);
+		assertSameIds(expected, list);
+
+		// Gzip stream.
+		list.clear();
+		state = streamParser.fetch(new ByteArrayInputStream(gzip(document)), Compression.GZIP, null, new ListRecordSink<TrafficData>(list), dataFactory, pullParser);
+		Assert.assertEquals(StreamParser.DONE, state);
+		assertSameIds(expected, list);
+
+		// Deflate file channel.
+		File file = folder.newFile("traffic.xml.z");
+		OutputStream out = new DeflaterOutputStream(new FileOutputStream(file));
+		try
+		{
+			out.write(document);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		list.clear();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try
+		{
+			state = streamParser.fetch(channel, Compression.DEFLATE, UTF_8, new ListRecordSink<TrafficData>(list), dataFactory, pullParser);
+
+			// Caller owns the channel.
+			Assert.assertTrue(channel.isOpen());
+		}
+		finally
+		{
+			channel.close();
+		}
+		Assert.assertEquals(StreamParser.DONE, state);
+		assertSameIds(expected, list);
+
+		// Plain data claimed to be gzip.
+		list.clear();
+		state = streamParser.fetch(new ByteArrayInputStream(document), Compression.GZIP, null, new ListRecordSink<TrafficData>(list), dataFactory, pullParser);
+		Assert.assertEquals(StreamParser.ERROR, state);
+		Assert.assertTrue(streamParser.getError() instanceof IOException);
+	}
+
+	/**
+	 * Channel stream reads, skips and passes large reads straight through.
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testChannelInputStream() throws IOException
+	{
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++)
+		{
+			data[i] = (byte) i;
+		}
+
+		InputStream stream = new ChannelInputStream(Channels.newChannel(new ByteArrayInputStream(data)), new byte[64]);
+
+		Assert.assertEquals(0, stream.read());
+		Assert.assertEquals(9, stream.skip(9));
+		Assert.assertEquals(10, stream.read());
+
+		byte[] small = new byte[10];
+		Assert.assertEquals(10, stream.read(small, 0, 10));
+		Assert.assertEquals((byte) 11, small[0]);
+
+		// Drain the buffer then read past its size.
+		byte[] large = new byte[2000];
+		int count = stream.read(large, 0, large.length);
+		Assert.assertEquals(64 - 21, count);
+		count += stream.read(large, count, large.length - count);
+		Assert.assertEquals(1000 - 21, count);
+		Assert.assertEquals((byte) 999, large[count - 1]);
+
+		Assert.assertEquals(-1, stream.read());
+		Assert.assertEquals(-1, stream.read(large, 0, 10));
+
+		stream.close();
+
+		Assert.assertEquals(Compression.GZIP, Compression.forContentEncoding("x-gzip"));
+		Assert.assertEquals(Compression.DEFLATE, Compression.forContentEncoding("Deflate"));
+		Assert.assertEquals(Compression.NONE, Compression.forContentEncoding(null));
+	}
+
+	private void assertSameIds(List<TrafficData> expected, List<TrafficData> actual)
+	{
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for (int i = 0; i < expected.size(); i++)
+		{
+			Assert.assertEquals(expected.get(i).getId(), actual.get(i).getId());
+			Assert.assertEquals(expected.get(i).getDescription(), actual.get(i).getDescription());
+		}
+	}
+
+	private byte[] gzip(byte[] data) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = new GZIPOutputStream(bytes);
+		try
+		{
+			out.write(data);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestCompressedInput.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,275 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+
+import com.netthreads.transportation.feed.FeedExecutor;
+import com.netthreads.transportation.feed.FeedListener;
+import com.netthreads.transportation.feed.FeedResult;
+import com.netthreads.transportation.feed.FeedSource;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Parallel feed fetching.
+ * 
+ */
+public class TestFeedExecutor
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	private static final long TIMEOUT_SECONDS = 10;
+
+	private static final PullParserFactory<TrafficData> TRAFFIC_PARSERS = new PullParserFactory<TrafficData>()
+	{
+		@Override
+		public PullParser<TrafficData> createPullParser(XmlPullParser parser)
+		{
+			return new TrafficDataPullParser(parser);
+		}
+	};
+
+	private static final PullParserFactory<CarParkData> CAR_PARK_PARSERS = new PullParserFactory<CarParkData>()
+	{
+		@Override
+		public PullParser<CarParkData> createPullParser(XmlPullParser parser)
+		{
+			return new CarParkDataPullParser(parser);
+		}
+	};
+
+	private FeedExecutor executor;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		executor = new FeedExecutor(3);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		executor.shutdown();
+	}
+
+	/**
+	 * Fast feeds complete while a slow one is still blocked.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSlowFeedDoesNotBlockOthers() throws Exception
+	{
+		final CountDownLatch slowRelease = new CountDownLatch(1);
+
+		executor.register("traffic", resource(XML_TRAFFIC_FILE), new TrafficDataFactory(), TRAFFIC_PARSERS);
+		executor.register("parking", resource(XML_CAR_PARK_FILE), new CarParkDataFactory(), CAR_PARK_PARSERS);
+		executor.register("slow", new FeedSource()
+		{
+			@Override
+			public InputStream open() throws IOException
+			{
+				return new FilterInputStream(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE))
+				{
+					@Override
+					public int read(byte[] buffer, int offset, int length) throws IOException
+					{
+						try
+						{
+							slowRelease.await();
+						}
+						catch (InterruptedException e)
+						{
+							throw new IOException(e);
+						}
+
+						return super.read(buffer, offset, length);
+					}
+				};
+			}
+		}, new CarParkDataFactory(), CAR_PARK_PARSERS);
+
+		final BlockingQueue<FeedResult<?>> completed = new LinkedBlockingQueue<FeedResult<?>>();
+		final BlockingQueue<List<FeedResult<?>>> all = new LinkedBlockingQueue<List<FeedResult<?>>>();
+
+		executor.fetchAll(new FeedListener()
+		{
+			@Override
+			public void feedComplete(FeedResult<?> result)
+			{
+				completed.add(result);
+			}
+
+			@Override
+			public void allComplete(List<FeedResult<?>> results)
+			{
+				all.add(results);
+			}
+		});
+
+		FeedResult<?> first = completed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		FeedResult<?> second = completed.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertNotNull(first);
+		Assert.assertNotNull(second);
+		Assert.assertFalse("slow".equals(first.getName()) || "slow".equals(second.getName()));
+		Assert.assertNull(all.poll());
+
+		slowRelease.countDown();
+
+		List<FeedResult<?>> results = all.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertNotNull(results);
+		Assert.assertEquals(3, results.size());
+
+		Assert.assertEquals("traffic", results.get(0).getName());
+		Assert.assertEquals(17, results.get(0).getRecords().size());
+		Assert.assertEquals("parking", results.get(1).getName());
+		Assert.assertEquals(10, results.get(1).getRecords().size());
+		Assert.assertEquals("slow", results.get(2).getName());
+		Assert.assertEquals(10, results.get(2).getRecords().size());
+
+		for (FeedResult<?> result : results)
+		{
+			Assert.assertEquals(StreamParser.DONE, result.getState());
+		}
+	}
+
+	/**
+	 * A source which fails is reported as an error with its cause.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSourceError() throws Exception
+	{
+		executor.register("broken", new FeedSource()
+		{
+			@Override
+			public InputStream open() throws IOException
+			{
+				throw new IOException("unavailable");
+			}
+		}, new CarParkDataFactory(), CAR_PARK_PARSERS);
+
+		final BlockingQueue<List<FeedResult<?>>> all = new LinkedBlockingQueue<List<FeedResult<?>>>();
+
+		executor.fetchAll(new FeedListener()
+		{
+			@Override
+			public void feedComplete(FeedResult<?> result)
+			{
+			}
+
+			@Override
+			public void allComplete(List<FeedResult<?>> results)
+			{
+				all.add(results);
+			}
+		});
+
+		FeedResult<?> result = all.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS).get(0);
+
+		Assert.assertEquals(StreamParser.ERROR, result.getState());
+		Assert.assertEquals("unavailable", result.getError().getMessage());
+	}
+
+	/**
+	 * Fetching after shutdown reports every feed as an error and still
+	 * completes.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFetchAfterShutdown() throws Exception
+	{
+		executor.register("traffic", resource(XML_TRAFFIC_FILE), new TrafficDataFactory(), TRAFFIC_PARSERS);
+		executor.register("carParks", resource(XML_CAR_PARK_FILE), new CarParkDataFactory(), CAR_PARK_PARSERS);
+
+		executor.shutdown();
+
+		final BlockingQueue<FeedResult<?>> completed = new LinkedBlockingQueue<FeedResult<?>>();
+		final BlockingQueue<List<FeedResult<?>>> all = new LinkedBlockingQueue<List<FeedResult<?>>>();
+
+		executor.fetchAll(new FeedListener()
+		{
+			@Override
+			public void feedComplete(FeedResult<?> result)
+			{
+				completed.add(result);
+			}
+
+			@Override
+			public void allComplete(List<FeedResult<?>> results)
+			{
+				all.add(results);
+			}
+		});
+
+		List<FeedResult<?>> results = all.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		Assert.assertNotNull(results);
+		Assert.assertEquals(2, results.size());
+		Assert.assertEquals(2, completed.size());
+
+		for (FeedResult<?> result : results)
+		{
+			Assert.assertEquals(StreamParser.ERROR, result.getState());
+			Assert.assertTrue(result.getError() instanceof RejectedExecutionException);
+		}
+
+		Assert.assertEquals("traffic", results.get(0).getName());
+		Assert.assertEquals("carParks", results.get(1).getName());
+	}
+
+	private static FeedSource resource(final String name)
+	{
+		return new FeedSource()
+		{
+			@Override
+			public InputStream open() throws IOException
+			{
+				return ClassLoader.class.getResourceAsStream(name);
+			}
+		};
+	}
+}
@@ -0,0 +1,233 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+
+import com.netthreads.transportation.feed.Feed;
+import com.netthreads.transportation.feed.FeedResult;
+import com.netthreads.transportation.feed.FeedSource;
+import com.netthreads.transportation.metrics.FeedMetrics;
+import com.netthreads.transportation.parser.Compression;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.RecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Fetch measurements reach the listener and JMX.
+ * 
+ */
+public class TestFeedMetrics
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	private static final long NOW = 1425636900000L;
+
+	@Test
+	public void testFetchMeasured() throws Exception
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		FeedMetrics metrics = new FeedMetrics("traffic", Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC));
+
+		StreamParserImpl<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		streamParser.setMetricsListener(metrics);
+
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		List<TrafficData> list = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.DONE, streamParser.fetch(new ByteArrayInputStream(document), list, new TrafficDataFactory(), pullParser));
+
+		Assert.assertEquals(1, metrics.getFetchCount());
+		Assert.assertEquals(17, metrics.getRecordCount());
+		Assert.assertEquals(document.length, metrics.getByteCount());
+		Assert.assertTrue(metrics.getTokenCount() > metrics.getRecordCount());
+		Assert.assertTrue(metrics.getLastDurationMillis() > 0);
+		Assert.assertEquals(NOW, metrics.getLastSuccessTime());
+		Assert.assertEquals(0, metrics.getErrorCount());
+
+		// Truncated document.
+		list.clear();
+		Assert.assertEquals(StreamParser.ERROR, streamParser.fetch(new ByteArrayInputStream(Arrays.copyOf(document, document.length / 2)), list, new TrafficDataFactory(), pullParser));
+
+		Assert.assertNotNull(streamParser.getError());
+		Assert.assertEquals(2, metrics.getFetchCount());
+		Assert.assertEquals(1, metrics.getErrorCount());
+		Assert.assertEquals(Long.valueOf(1), metrics.getErrorsByCause().get(streamParser.getError().getClass().getSimpleName()));
+		Assert.assertEquals(list.size(), metrics.getLastRecordCount());
+
+		// Published through JMX.
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = metrics.register(server);
+		try
+		{
+			Assert.assertEquals(2L, server.getAttribute(name, "FetchCount"));
+			Assert.assertEquals(1, ((TabularData) server.getAttribute(name, "ErrorsByCause")).size());
+
+			server.invoke(name, "reset", null, null);
+			Assert.assertEquals(0L, server.getAttribute(name, "FetchCount"));
+		}
+		finally
+		{
+			metrics.unregister(server);
+		}
+	}
+
+	/**
+	 * A fetch cancelled while paused is reported once, as cancelled.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPausedFetchCancelled() throws Exception
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		FeedMetrics metrics = new FeedMetrics("traffic");
+
+		StreamParserImpl<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		streamParser.setMetricsListener(metrics);
+
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+		TrafficDataFactory dataFactory = new TrafficDataFactory();
+
+		RecordSink<TrafficData> pausing = new RecordSink<TrafficData>()
+		{
+			@Override
+			public int accept(TrafficData record)
+			{
+				return PAUSE;
+			}
+		};
+
+		Assert.assertEquals(StreamParser.PAUSED, streamParser.fetch(new ByteArrayInputStream(gzip(document)), Compression.GZIP, null, pausing, dataFactory, pullParser));
+		Assert.assertEquals(0, metrics.getFetchCount());
+
+		streamParser.cancel();
+
+		Assert.assertEquals(StreamParser.CANCELLED, streamParser.getState());
+		Assert.assertEquals(1, metrics.getFetchCount());
+		Assert.assertEquals(1, metrics.getCancelledCount());
+		Assert.assertEquals(1, metrics.getLastRecordCount());
+		Assert.assertTrue(metrics.getByteCount() > 0);
+
+		// Nothing left to resume or report.
+		Assert.assertEquals(StreamParser.CANCELLED, streamParser.resume(pausing, dataFactory, pullParser));
+		streamParser.cancel();
+		Assert.assertEquals(1, metrics.getFetchCount());
+	}
+
+	@Test
+	public void testFeedSourceErrors() throws Exception
+	{
+		FeedSource missing = new FeedSource()
+		{
+			@Override
+			public InputStream open() throws IOException
+			{
+				throw new FileNotFoundException("missing.xml");
+			}
+		};
+
+		PullParserFactory<TrafficData> pullParsers = new PullParserFactory<TrafficData>()
+		{
+			@Override
+			public PullParser<TrafficData> createPullParser(XmlPullParser parser)
+			{
+				return new TrafficDataPullParser(parser);
+			}
+		};
+
+		Feed<TrafficData> feed = new Feed<TrafficData>("missing", missing, new TrafficDataFactory(), pullParsers, StreamParserImpl.createFactory());
+
+		FeedMetrics metrics = new FeedMetrics(feed.getName());
+		feed.setMetricsListener(metrics);
+
+		FeedResult<TrafficData> result = feed.fetch();
+
+		Assert.assertEquals(StreamParser.ERROR, result.getState());
+		Assert.assertEquals(1, metrics.getErrorCount());
+		Assert.assertEquals(Long.valueOf(1), metrics.getErrorsByCause().get("FileNotFoundException"));
+		Assert.assertTrue(metrics.getLastError().contains("missing.xml"));
+		Assert.assertEquals(0, metrics.getLastSuccessTime());
+	}
+
+	private byte[] gzip(byte[] data) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		OutputStream out = new GZIPOutputStream(bytes);
+		try
+		{
+			out.write(data);
+		}
+		finally
+		{
+			out.close();
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestFeedMetrics.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
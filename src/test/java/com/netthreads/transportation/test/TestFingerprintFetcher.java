@@ -0,0 +1,145 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netthreads.transportation.parser.FingerprintFetcher;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Skipping the parse of identical payloads.
+ * 
+ */
+public class TestFingerprintFetcher
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	@Test
+	public void testSkipIdentical() throws Exception
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+		TrafficDataFactory dataFactory = new TrafficDataFactory();
+
+		FingerprintFetcher<TrafficData> fetcher = new FingerprintFetcher<TrafficData>(streamParser);
+
+		List<TrafficData> first = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.DONE, fetcher.fetch(new ByteArrayInputStream(document), first, dataFactory, pullParser));
+		Assert.assertFalse(fetcher.isLastSkipped());
+		Assert.assertEquals(17, first.size());
+
+		// Identical bytes return the previous records unparsed.
+		List<TrafficData> second = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.DONE, fetcher.fetch(new ByteArrayInputStream(document), second, dataFactory, pullParser));
+		Assert.assertTrue(fetcher.isLastSkipped());
+		Assert.assertEquals(first, second);
+		Assert.assertEquals(1, fetcher.getParsed());
+		Assert.assertEquals(1, fetcher.getSkipped());
+
+		// A failed parse does not replace the last good fingerprint.
+		List<TrafficData> broken = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.ERROR, fetcher.fetch(new ByteArrayInputStream(document, 0, document.length / 2), broken, dataFactory, pullParser));
+		Assert.assertSame(streamParser.getError(), fetcher.getError());
+		Assert.assertNotNull(fetcher.getError());
+
+		List<TrafficData> third = new ArrayList<TrafficData>();
+		fetcher.fetch(new ByteArrayInputStream(document), third, dataFactory, pullParser);
+		Assert.assertTrue(fetcher.isLastSkipped());
+		Assert.assertEquals(2, fetcher.getSkipped());
+
+		// One changed byte is parsed.
+		byte[] changed = document.clone();
+		int index = new String(changed, "UTF-8").indexOf("MARYHILL");
+		changed[index] = 'm';
+
+		List<TrafficData> fourth = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.DONE, fetcher.fetch(new ByteArrayInputStream(changed), fourth, dataFactory, pullParser));
+		Assert.assertFalse(fetcher.isLastSkipped());
+		Assert.assertEquals("mARYHILL ROAD", fourth.get(1).getLocalLinkName());
+		Assert.assertEquals(3, fetcher.getParsed());
+		Assert.assertNull(fetcher.getError());
+	}
+
+	/**
+	 * A failed read is reported with its cause.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testReadError() throws Exception
+	{
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		FingerprintFetcher<TrafficData> fetcher = new FingerprintFetcher<TrafficData>(streamParser);
+
+		final IOException thrown = new IOException("Connection reset");
+
+		InputStream failing = new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				throw thrown;
+			}
+		};
+
+		List<TrafficData> list = new ArrayList<TrafficData>();
+		Assert.assertEquals(StreamParser.ERROR, fetcher.fetch(failing, list, new TrafficDataFactory(), pullParser));
+		Assert.assertSame(thrown, fetcher.getError());
+		Assert.assertTrue(list.isEmpty());
+		Assert.assertEquals(0, fetcher.getParsed());
+	}
+
+	private static byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestFingerprintFetcher.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,280 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.diff.RecordDiff;
+import com.netthreads.transportation.parser.LocatedRecord;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+import com.netthreads.transportation.spatial.CarParkFinder;
+import com.netthreads.transportation.spatial.GeoMath;
+import com.netthreads.transportation.spatial.GridIndex;
+import com.netthreads.transportation.spatial.Neighbour;
+import com.netthreads.transportation.spatial.RecordFilter;
+
+/**
+ * Grid index queries agree with a scan of every record.
+ * 
+ */
+public class TestGridIndex
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	// George Square.
+	private static final int CENTRE_LATITUDE_E6 = 55861000;
+	private static final int CENTRE_LONGITUDE_E6 = -4250000;
+
+	private static final double[] RADII = { 100, 500, 1000, 2000, 5000, 50000 };
+
+	@Test
+	public void testRadiusTraffic() throws XmlPullParserException
+	{
+		List<TrafficData> list = new ArrayList<TrafficData>();
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), list, new TrafficDataFactory(), new TrafficDataPullParser(streamParser.getParser()));
+
+		for (int cellSize : new int[] { 1000, GridIndex.DEFAULT_CELL_SIZE_E6, 100000 })
+		{
+			GridIndex<TrafficData> index = new GridIndex<TrafficData>(cellSize);
+			index.rebuild(list);
+
+			for (double radius : RADII)
+			{
+				Assert.assertEquals(scanRadius(list, radius), ids(index.withinRadius(CENTRE_LATITUDE_E6, CENTRE_LONGITUDE_E6, radius)));
+			}
+		}
+	}
+
+	@Test
+	public void testBoxCarParks() throws XmlPullParserException
+	{
+		List<CarParkData> list = fetchCarParks();
+
+		GridIndex<CarParkData> index = new GridIndex<CarParkData>();
+		index.rebuild(list);
+
+		Assert.assertEquals(10, index.size());
+
+		int minLatitude = CENTRE_LATITUDE_E6 - 5000;
+		int maxLatitude = CENTRE_LATITUDE_E6 + 5000;
+		int minLongitude = CENTRE_LONGITUDE_E6 - 10000;
+		int maxLongitude = CENTRE_LONGITUDE_E6 + 10000;
+
+		Set<String> expected = new HashSet<String>();
+		for (CarParkData data : list)
+		{
+			if (data.getLatitudeE6() >= minLatitude && data.getLatitudeE6() <= maxLatitude && data.getLongitudeE6() >= minLongitude && data.getLongitudeE6() <= maxLongitude)
+			{
+				expected.add(data.getId());
+			}
+		}
+
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected, ids(index.withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude)));
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws XmlPullParserException
+	{
+		RecordDiff<CarParkData> diff = new RecordDiff<CarParkData>();
+		GridIndex<CarParkData> index = new GridIndex<CarParkData>();
+
+		index.update(diff.update(fetchCarParks()));
+		Assert.assertEquals(10, index.size());
+
+		// First car park moves and another goes.
+		List<CarParkData> list = fetchCarParks();
+		list.get(0).setLatitude("55.9");
+		String gone = list.remove(1).getId();
+
+		index.update(diff.update(list));
+
+		Assert.assertEquals(9, index.size());
+		Assert.assertNull(index.get(gone));
+		Assert.assertEquals(55900000, index.get("CPG02C_1").getLatitudeE6());
+		Assert.assertEquals(1, index.withinBox(55899000, -4300000, 55901000, -4200000).size());
+	}
+
+	@Test
+	public void testNearestMatchesScan()
+	{
+		Random random = new Random(42);
+
+		// Spread over about 40km by 20km.
+		final List<CarParkData> list = new ArrayList<CarParkData>();
+		for (int i = 0; i < 2000; i++)
+		{
+			CarParkData data = new CarParkData();
+			data.setId("P" + i);
+			data.setLatitude(Double.toString(55.76 + random.nextDouble() * 0.2));
+			data.setLongitude(Double.toString(-4.55 + random.nextDouble() * 0.6));
+			data.setCarParkStatus((i % 3 == 0) ? CarParkData.STATUS_CAR_PARK_CLOSED : CarParkData.STATUS_SPACES_AVAILABLE);
+			list.add(data);
+		}
+
+		RecordFilter<CarParkData> open = new RecordFilter<CarParkData>()
+		{
+			@Override
+			public boolean matches(CarParkData record)
+			{
+				return !CarParkData.STATUS_CAR_PARK_CLOSED.equals(record.getCarParkStatus());
+			}
+		};
+
+		for (int cellSize : new int[] { 1000, GridIndex.DEFAULT_CELL_SIZE_E6, 1000000 })
+		{
+			GridIndex<CarParkData> index = new GridIndex<CarParkData>(cellSize);
+			index.rebuild(list);
+
+			for (int query = 0; query < 50; query++)
+			{
+				// Some queries outside the data.
+				final int latitude = 55700000 + random.nextInt(300000);
+				final int longitude = -4600000 + random.nextInt(700000);
+				int k = 1 + random.nextInt(20);
+
+				List<CarParkData> expected = new ArrayList<CarParkData>();
+				for (CarParkData data : list)
+				{
+					if (open.matches(data))
+					{
+						expected.add(data);
+					}
+				}
+
+				Collections.sort(expected, new Comparator<CarParkData>()
+				{
+					@Override
+					public int compare(CarParkData a, CarParkData b)
+					{
+						return Double.compare(distance(latitude, longitude, a), distance(latitude, longitude, b));
+					}
+				});
+
+				List<Neighbour<CarParkData>> nearest = index.nearest(latitude, longitude, k, open);
+
+				Assert.assertEquals(k, nearest.size());
+				for (int i = 0; i < k; i++)
+				{
+					Assert.assertEquals(distance(latitude, longitude, expected.get(i)), nearest.get(i).getDistance(), 1e-6);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNearestAvailableCarPark() throws XmlPullParserException
+	{
+		CarParkFinder finder = new CarParkFinder();
+		finder.update(fetchCarParks());
+
+		List<Neighbour<CarParkData>> nearest = finder.nearestAvailable(CENTRE_LATITUDE_E6, CENTRE_LONGITUDE_E6, 20, 100);
+
+		// Open car parks with 100 or more free spaces.
+		Assert.assertEquals(7, nearest.size());
+
+		for (int i = 0; i < nearest.size(); i++)
+		{
+			CarParkData data = nearest.get(i).getRecord();
+
+			Assert.assertEquals(CarParkData.STATUS_ENOUGH_SPACES_AVAILABLE, data.getCarParkStatus());
+			Assert.assertTrue(data.getFreeSpacesValue() >= 100);
+
+			if (i > 0)
+			{
+				Assert.assertTrue(nearest.get(i - 1).getDistance() <= nearest.get(i).getDistance());
+			}
+		}
+
+		// Occupancy update fills the nearest one.
+		CarParkData full = new CarParkData();
+		CarParkData first = nearest.get(0).getRecord();
+		full.setId(first.getId());
+		full.setLatitude(first.getLatitude());
+		full.setLongitude(first.getLongitude());
+		full.setCarParkStatus(CarParkData.STATUS_CAR_PARK_FULL);
+		full.setOccupiedSpaces(first.getTotalCapacity());
+		full.setTotalCapacity(first.getTotalCapacity());
+		finder.update(full);
+
+		List<Neighbour<CarParkData>> after = finder.nearestAvailable(CENTRE_LATITUDE_E6, CENTRE_LONGITUDE_E6, 1, 100);
+
+		Assert.assertEquals(nearest.get(1).getRecord().getId(), after.get(0).getRecord().getId());
+	}
+
+	private static double distance(int latitudeE6, int longitudeE6, LocatedRecord record)
+	{
+		return GeoMath.distance(latitudeE6, longitudeE6, record.getLatitudeE6(), record.getLongitudeE6());
+	}
+
+	private static List<CarParkData> fetchCarParks() throws XmlPullParserException
+	{
+		List<CarParkData> list = new ArrayList<CarParkData>();
+		StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), list, new CarParkDataFactory(), new CarParkDataPullParser(streamParser.getParser()));
+
+		return list;
+	}
+
+	private static Set<String> scanRadius(List<? extends LocatedRecord> list, double metres)
+	{
+		Set<String> ids = new HashSet<String>();
+
+		for (LocatedRecord record : list)
+		{
+			if (GeoMath.isValid(record.getLatitudeE6(), record.getLongitudeE6()) && GeoMath.distance(CENTRE_LATITUDE_E6, CENTRE_LONGITUDE_E6, record.getLatitudeE6(), record.getLongitudeE6()) <= metres)
+			{
+				ids.add(record.getId());
+			}
+		}
+
+		return ids;
+	}
+
+	private static Set<String> ids(List<? extends LocatedRecord> list)
+	{
+		Set<String> ids = new HashSet<String>();
+
+		for (LocatedRecord record : list)
+		{
+			Assert.assertTrue(ids.add(record.getId()));
+		}
+
+		return ids;
+	}
+}
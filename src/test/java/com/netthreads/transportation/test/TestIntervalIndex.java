@@ -0,0 +1,159 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.diff.RecordDiff;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.ValueParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+import com.netthreads.transportation.temporal.IntervalIndex;
+
+/**
+ * Interval index queries agree with a scan of every record.
+ * 
+ */
+public class TestIntervalIndex
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	private static final long HOUR = 60 * 60 * 1000L;
+
+	@Test
+	public void testQueriesMatchScan() throws XmlPullParserException
+	{
+		List<TrafficData> list = fetchTraffic();
+
+		IntervalIndex<TrafficData> index = new IntervalIndex<TrafficData>();
+		index.rebuild(list);
+
+		// Only some events carry a validity period.
+		Assert.assertEquals(7, index.size());
+
+		long from = ValueParser.parseDateTime("2014-10-01T00:00:00");
+		long to = ValueParser.parseDateTime("2015-06-01T00:00:00");
+
+		for (long time = from; time < to; time += 7 * HOUR)
+		{
+			Assert.assertEquals(scan(list, time, time), index.activeAt(time));
+			Assert.assertEquals(scan(list, time, time + 30 * HOUR), index.overlapping(time, time + 30 * HOUR));
+		}
+
+		// Ends are included.
+		long end = ValueParser.parseDateTime("2015-03-15T12:00:00");
+		Assert.assertEquals(scan(list, end, end), index.activeAt(end));
+		Assert.assertEquals(6, index.activeAt(end).size());
+
+		Assert.assertTrue(index.overlapping(to, from).isEmpty());
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws XmlPullParserException
+	{
+		RecordDiff<TrafficData> diff = new RecordDiff<TrafficData>();
+		IntervalIndex<TrafficData> index = new IntervalIndex<TrafficData>();
+
+		List<TrafficData> list = fetchTraffic();
+		index.update(diff.update(list));
+
+		long time = ValueParser.parseDateTime("2015-03-11T12:00:00");
+		int active = index.activeAt(time).size();
+
+		// An event becomes open ended and another loses its period.
+		List<TrafficData> next = fetchTraffic();
+		List<TrafficData> timed = index.activeAt(time);
+
+		TrafficData extended = find(next, timed.get(0).getId());
+		extended.setOverallEndTime(null);
+
+		TrafficData dropped = find(next, timed.get(1).getId());
+		dropped.setOverallStartTime(null);
+
+		index.update(diff.update(next));
+
+		Assert.assertEquals(6, index.size());
+		Assert.assertEquals(active - 1, index.activeAt(time).size());
+		Assert.assertEquals(scan(next, Long.MAX_VALUE - 1, Long.MAX_VALUE - 1), index.activeAt(Long.MAX_VALUE - 1));
+		Assert.assertSame(extended, index.activeAt(Long.MAX_VALUE - 1).get(0));
+
+		Assert.assertNull(index.remove(dropped.getId()));
+		Assert.assertSame(extended, index.remove(extended.getId()));
+		Assert.assertEquals(active - 2, index.activeAt(time).size());
+	}
+
+	/**
+	 * Matching records in start time order.
+	 * 
+	 */
+	private List<TrafficData> scan(List<TrafficData> list, long from, long to)
+	{
+		List<TrafficData> result = new ArrayList<TrafficData>();
+
+		for (TrafficData data : list)
+		{
+			long start = data.getOverallStartTimeMillis();
+			long end = data.getOverallEndTimeMillis() == ValueParser.INVALID_TIME ? Long.MAX_VALUE : data.getOverallEndTimeMillis();
+
+			if (start != ValueParser.INVALID_TIME && start <= to && end >= from)
+			{
+				int position = 0;
+				while (position < result.size() && result.get(position).getOverallStartTimeMillis() <= start)
+				{
+					position++;
+				}
+
+				result.add(position, data);
+			}
+		}
+
+		return result;
+	}
+
+	private TrafficData find(List<TrafficData> list, String id)
+	{
+		for (TrafficData data : list)
+		{
+			if (data.getId().equals(id))
+			{
+				return data;
+			}
+		}
+
+		return null;
+	}
+
+	private List<TrafficData> fetchTraffic() throws XmlPullParserException
+	{
+		List<TrafficData> list = new ArrayList<TrafficData>();
+
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), list, new TrafficDataFactory(), new TrafficDataPullParser(streamParser.getParser()));
+
+		return list;
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.DroppedRecord;
+import com.netthreads.transportation.parser.RecordBoundaries;
+import com.netthreads.transportation.parser.RecordSink;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Lenient parsing of documents with broken records.
+ * 
+ */
+public class TestLenientParser
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String RECORD_START = "<situationRecord ";
+
+	/**
+	 * Broken records are dropped and the others delivered in order.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testDropBrokenRecords() throws XmlPullParserException, IOException
+	{
+		String text = load(XML_TRAFFIC_FILE);
+
+		List<String> expected = parse(text, false).ids;
+
+		// Unclosed element in the third record, unquoted attribute in the sixth.
+		StringBuilder broken = new StringBuilder(text);
+		insertAfterStart(broken, 5, "<description lang=en>");
+		insertAfterStart(broken, 2, "<unclosed>");
+
+		Result strict = parse(broken.toString(), false);
+
+		Assert.assertEquals(StreamParser.ERROR, strict.state);
+		Assert.assertEquals(2, strict.ids.size());
+
+		Result lenient = parse(broken.toString(), true);
+
+		Assert.assertEquals(StreamParser.DONE, lenient.state);
+		Assert.assertEquals(expected.size() - 2, lenient.ids.size());
+
+		List<String> remaining = new ArrayList<String>(expected);
+		remaining.remove(5);
+		remaining.remove(2);
+		Assert.assertEquals(remaining, lenient.ids);
+
+		Assert.assertEquals(2, lenient.dropped.size());
+
+		DroppedRecord first = lenient.dropped.get(0);
+		Assert.assertEquals(2, first.getIndex());
+		Assert.assertEquals(expected.get(2), first.getId());
+		Assert.assertEquals(ordinalIndexOf(broken.toString(), RECORD_START, 2), first.getOffset());
+		Assert.assertNotNull(first.getReason());
+
+		DroppedRecord second = lenient.dropped.get(1);
+		Assert.assertEquals(5, second.getIndex());
+		Assert.assertEquals(expected.get(5), second.getId());
+	}
+
+	/**
+	 * A document cut off in the last record keeps the records before it.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testTruncatedDocument() throws XmlPullParserException, IOException
+	{
+		String text = load(XML_TRAFFIC_FILE);
+
+		List<String> expected = parse(text, false).ids;
+
+		String truncated = text.substring(0, text.lastIndexOf(RECORD_START) + RECORD_START.length() + 4);
+
+		Result lenient = parse(truncated, true);
+
+		Assert.assertEquals(StreamParser.DONE, lenient.state);
+		Assert.assertEquals(expected.subList(0, expected.size() - 1), lenient.ids);
+		Assert.assertEquals(1, lenient.dropped.size());
+		Assert.assertEquals(expected.size() - 1, lenient.dropped.get(0).getIndex());
+
+		// Nothing to salvage before the first record.
+		Result empty = parse(text.substring(0, text.indexOf(RECORD_START) - 20), true);
+
+		Assert.assertEquals(StreamParser.ERROR, empty.state);
+		Assert.assertTrue(empty.ids.isEmpty());
+	}
+
+	/**
+	 * A comment left open in one record does not hide the records after it.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testUnterminatedComment() throws XmlPullParserException, IOException
+	{
+		String text = load(XML_TRAFFIC_FILE);
+
+		List<String> expected = parse(text, false).ids;
+
+		StringBuilder broken = new StringBuilder(text);
+		insertAfterStart(broken, 3, "<!-- never closed");
+
+		byte[] document = broken.toString().getBytes(UTF_8);
+
+		RecordBoundaries boundaries = new RecordBoundaries();
+
+		Assert.assertEquals(expected.size(), boundaries.scan(document, document.length, TrafficData.TAG_SITUATION_RECORD));
+		Assert.assertEquals(1, boundaries.getUnterminated());
+
+		Result lenient = parse(broken.toString(), true);
+
+		Assert.assertEquals(StreamParser.DONE, lenient.state);
+
+		List<String> remaining = new ArrayList<String>(expected);
+		remaining.remove(3);
+		Assert.assertEquals(remaining, lenient.ids);
+
+		Assert.assertEquals(1, lenient.dropped.size());
+		Assert.assertEquals(3, lenient.dropped.get(0).getIndex());
+	}
+
+	private static class Result
+	{
+		int state;
+		List<String> ids = new ArrayList<String>();
+		List<DroppedRecord> dropped;
+	}
+
+	private Result parse(String text, boolean lenient) throws XmlPullParserException
+	{
+		final Result result = new Result();
+
+		StreamParserImpl<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		if (lenient)
+		{
+			streamParser.setLenient(TrafficData.TAG_SITUATION_RECORD);
+		}
+
+		RecordSink<TrafficData> sink = new RecordSink<TrafficData>()
+		{
+			@Override
+			public int accept(TrafficData record)
+			{
+				result.ids.add(record.getId());
+
+				return CONTINUE;
+			}
+		};
+
+		result.state = streamParser.fetch(new ByteArrayInputStream(text.getBytes(UTF_8)), sink, new TrafficDataFactory(), pullParser);
+
+		result.dropped = streamParser.getDropped();
+
+		return result;
+	}
+
+	private void insertAfterStart(StringBuilder text, int record, String insert)
+	{
+		int start = ordinalIndexOf(text.toString(), RECORD_START, record);
+
+		text.insert(text.indexOf(">", start) + 1, insert);
+	}
+
+	private int ordinalIndexOf(String text, String find, int ordinal)
+	{
+		int index = text.indexOf(find);
+		for (int i = 0; i < ordinal; i++)
+		{
+			index = text.indexOf(find, index + 1);
+		}
+
+		return index;
+	}
+
+	private String load(String name) throws IOException
+	{
+		InputStream stream = TestLenientParser.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toString("UTF-8");
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.history.OccupancyBlockDecoder;
+import com.netthreads.transportation.history.OccupancyBlockEncoder;
+import com.netthreads.transportation.history.OccupancySeries;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.ValueParser;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+
+/**
+ * Compressed occupancy blocks decode to the samples encoded.
+ * 
+ */
+public class TestOccupancyBlock
+{
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	private static final long MINUTE = 60 * 1000L;
+
+	@Test
+	public void testRoundTrip()
+	{
+		Random random = new Random(1);
+
+		long[] times = new long[5000];
+		int[] values = new int[times.length];
+
+		long time = 1425636900000L;
+		int value = 300;
+
+		for (int index = 0; index < times.length; index++)
+		{
+			// Mostly steady polling, with jitter, gaps and clock steps.
+			int roll = random.nextInt(100);
+			if (roll < 80)
+			{
+				time += MINUTE;
+			}
+			else if (roll < 95)
+			{
+				time += MINUTE + random.nextInt(4000) - 2000;
+			}
+			else if (roll < 99)
+			{
+				time += random.nextInt(Integer.MAX_VALUE);
+			}
+			else
+			{
+				time -= random.nextLong() >>> 8;
+			}
+
+			roll = random.nextInt(100);
+			if (roll < 60)
+			{
+				// Unchanged.
+			}
+			else if (roll < 95)
+			{
+				value += random.nextInt(21) - 10;
+			}
+			else if (roll < 98)
+			{
+				value = random.nextInt();
+			}
+			else
+			{
+				value = ValueParser.INVALID_INT;
+			}
+
+			times[index] = time;
+			values[index] = value;
+		}
+
+		OccupancyBlockEncoder encoder = new OccupancyBlockEncoder();
+
+		for (int count = 0; count <= times.length; count++)
+		{
+			// Check every block while small, then now and then.
+			if (count <= 100 || count % 97 == 0 || count == times.length)
+			{
+				OccupancyBlockDecoder decoder = new OccupancyBlockDecoder(encoder.toByteArray());
+
+				Assert.assertEquals(count, decoder.getCount());
+
+				int index = 0;
+				while (decoder.next())
+				{
+					Assert.assertEquals(times[index], decoder.getTimeMillis());
+					Assert.assertEquals(values[index], decoder.getOccupiedSpaces());
+					index++;
+				}
+
+				Assert.assertEquals(count, index);
+			}
+
+			if (count < times.length)
+			{
+				encoder.add(times[count], values[count]);
+			}
+		}
+	}
+
+	@Test
+	public void testSeriesFromFetches() throws XmlPullParserException
+	{
+		List<CarParkData> list = new ArrayList<CarParkData>();
+		StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), list, new CarParkDataFactory(), new CarParkDataPullParser(streamParser.getParser()));
+
+		OccupancySeries series = new OccupancySeries(100);
+
+		int fetches = 250;
+		for (int fetch = 0; fetch < fetches; fetch++)
+		{
+			series.append(fetch * MINUTE, list);
+		}
+
+		Assert.assertEquals(fetches * list.size(), series.getSampleCount());
+		Assert.assertEquals(list.size(), series.getIds().size());
+
+		// Steady polling of an unchanged count is two bits a sample.
+		Assert.assertTrue(series.getByteCount() < fetches * list.size());
+
+		List<byte[]> blocks = series.getBlocks("CPG02C_1");
+		Assert.assertEquals(3, blocks.size());
+
+		long expected = 0;
+		for (byte[] block : blocks)
+		{
+			OccupancyBlockDecoder decoder = new OccupancyBlockDecoder(block);
+			while (decoder.next())
+			{
+				Assert.assertEquals(expected, decoder.getTimeMillis());
+				Assert.assertEquals(327, decoder.getOccupiedSpaces());
+				expected += MINUTE;
+			}
+		}
+
+		Assert.assertEquals(fetches * MINUTE, expected);
+		Assert.assertTrue(series.getBlocks("missing").isEmpty());
+	}
+}
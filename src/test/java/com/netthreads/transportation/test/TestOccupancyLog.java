@@ -0,0 +1,228 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.history.OccupancyEntry;
+import com.netthreads.transportation.history.OccupancyLog;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+
+/**
+ * Occupancy log appends, rolls over, scans and recovers after a crash.
+ * 
+ */
+public class TestOccupancyLog
+{
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	private static final long MINUTE = 60 * 1000L;
+	private static final int FETCHES = 20;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAppendAndScan() throws XmlPullParserException, IOException
+	{
+		List<CarParkData> list = fetchCarParks();
+
+		File directory = folder.newFolder("history");
+
+		// Small segments to force rollover.
+		OccupancyLog log = new OccupancyLog(directory, 1024);
+		for (int fetch = 0; fetch < FETCHES; fetch++)
+		{
+			log.append(fetch * MINUTE, list);
+		}
+
+		Assert.assertTrue(log.getSegmentCount() > 1);
+		Assert.assertEquals(FETCHES * list.size(), log.getAppended());
+
+		List<OccupancyEntry> entries = log.scan("CPG02C_1", 5 * MINUTE, 9 * MINUTE);
+		Assert.assertEquals(5, entries.size());
+
+		for (int index = 0; index < entries.size(); index++)
+		{
+			OccupancyEntry entry = entries.get(index);
+
+			Assert.assertEquals((5 + index) * MINUTE, entry.getTimeMillis());
+			Assert.assertEquals("CPG02C_1", entry.getId());
+			Assert.assertEquals(327, entry.getOccupiedSpaces());
+			Assert.assertEquals(698, entry.getTotalCapacity());
+			Assert.assertEquals(list.get(0).getCarParkStatus(), entry.getStatus());
+		}
+
+		Assert.assertEquals(FETCHES * list.size(), log.scan(null, 0, FETCHES * MINUTE).size());
+		Assert.assertTrue(log.scan("CPG02C_1", FETCHES * MINUTE, Long.MAX_VALUE).isEmpty());
+		Assert.assertTrue(log.scan("missing", 0, FETCHES * MINUTE).isEmpty());
+
+		log.close();
+
+		// Reopen.
+		OccupancyLog reopened = new OccupancyLog(directory, 1024);
+
+		Assert.assertEquals(FETCHES * list.size(), reopened.getRecovered());
+		Assert.assertEquals(0, reopened.getDiscardedBytes());
+		Assert.assertEquals(entries.toString(), reopened.scan("CPG02C_1", 5 * MINUTE, 9 * MINUTE).toString());
+	}
+
+	@Test
+	public void testTailRecovery() throws XmlPullParserException, IOException
+	{
+		List<CarParkData> list = fetchCarParks();
+
+		File directory = folder.newFolder("history");
+
+		OccupancyLog log = new OccupancyLog(directory, 4096);
+		log.append(0, list);
+		log.append(MINUTE, list);
+		log.close();
+
+		// Damage the last entry as a torn write would.
+		File[] files = directory.listFiles();
+		Assert.assertEquals(1, files.length);
+
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		try
+		{
+			long position = file.length() - 1;
+			file.seek(position);
+			while (file.read() == 0)
+			{
+				file.seek(--position);
+			}
+
+			file.seek(position);
+			file.write(0xff);
+		}
+		finally
+		{
+			file.close();
+		}
+
+		OccupancyLog recovered = new OccupancyLog(directory, 4096);
+
+		Assert.assertEquals(2 * list.size() - 1, recovered.getRecovered());
+		Assert.assertTrue(recovered.getDiscardedBytes() > 0);
+
+		String lastId = list.get(list.size() - 1).getId();
+		Assert.assertEquals(1, recovered.scan(lastId, 0, MINUTE).size());
+
+		// Appends continue from the last whole entry.
+		recovered.append(2 * MINUTE, list);
+		recovered.close();
+
+		OccupancyLog reopened = new OccupancyLog(directory, 4096);
+
+		Assert.assertEquals(3 * list.size() - 1, reopened.getRecovered());
+		Assert.assertEquals(0, reopened.getDiscardedBytes());
+		Assert.assertEquals(2, reopened.scan(lastId, 0, 2 * MINUTE).size());
+	}
+
+	/**
+	 * A closed log refuses use rather than writing over its segments.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testUseAfterClose() throws XmlPullParserException, IOException
+	{
+		List<CarParkData> list = fetchCarParks();
+
+		File directory = folder.newFolder("history");
+
+		OccupancyLog log = new OccupancyLog(directory, 4096);
+		log.append(0, list);
+		log.close();
+		log.close();
+
+		try
+		{
+			log.append(MINUTE, list);
+			Assert.fail("Appended after close");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected.
+		}
+
+		try
+		{
+			log.append(new OccupancyEntry(MINUTE, "CPG02C_1", 1, 2, null));
+			Assert.fail("Appended after close");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected.
+		}
+
+		try
+		{
+			log.scan(null, 0, MINUTE);
+			Assert.fail("Scanned after close");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected.
+		}
+
+		try
+		{
+			log.flush();
+			Assert.fail("Flushed after close");
+		}
+		catch (IllegalStateException e)
+		{
+			// Expected.
+		}
+
+		// The entries written before close are intact.
+		OccupancyLog reopened = new OccupancyLog(directory, 4096);
+
+		Assert.assertEquals(list.size(), reopened.getRecovered());
+		Assert.assertEquals(0, reopened.getDiscardedBytes());
+		Assert.assertEquals(list.size(), reopened.scan(null, 0, MINUTE).size());
+	}
+
+	private List<CarParkData> fetchCarParks() throws XmlPullParserException
+	{
+		List<CarParkData> list = new ArrayList<CarParkData>();
+
+		StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), list, new CarParkDataFactory(), new CarParkDataPullParser(streamParser.getParser()));
+
+		return list;
+	}
+}
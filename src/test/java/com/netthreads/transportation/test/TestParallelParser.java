@@ -0,0 +1,189 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.ParallelParser;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Parallel parsing of one document split at record boundaries.
+ * 
+ */
+public class TestParallelParser
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final PullParserFactory<TrafficData> TRAFFIC_PARSERS = new PullParserFactory<TrafficData>()
+	{
+		@Override
+		public PullParser<TrafficData> createPullParser(XmlPullParser parser)
+		{
+			return new TrafficDataPullParser(parser);
+		}
+	};
+
+	private static final PullParserFactory<CarParkData> CAR_PARK_PARSERS = new PullParserFactory<CarParkData>()
+	{
+		@Override
+		public PullParser<CarParkData> createPullParser(XmlPullParser parser)
+		{
+			return new CarParkDataPullParser(parser);
+		}
+	};
+
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp()
+	{
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Every chunk size gives the records of a sequential fetch, in order.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testMatchesSequential() throws XmlPullParserException, IOException
+	{
+		byte[] traffic = load(XML_TRAFFIC_FILE);
+
+		StreamParserImpl<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		List<TrafficData> expected = new ArrayList<TrafficData>();
+		streamParser.fetch(new ByteArrayInputStream(traffic), expected, new TrafficDataFactory(), new TrafficDataPullParser(streamParser.getParser()));
+
+		ParallelParser<TrafficData> parallelParser = new ParallelParser<TrafficData>(StreamParserImpl.createFactory(), TRAFFIC_PARSERS, new TrafficDataFactory(), TrafficData.TAG_SITUATION_RECORD, pool);
+
+		for (int chunkSize : new int[] { 1, 3000, 10000, 1000000 })
+		{
+			parallelParser.setChunkSize(chunkSize);
+
+			List<TrafficData> list = new ArrayList<TrafficData>();
+
+			Assert.assertEquals(StreamParser.DONE, parallelParser.parse(traffic, traffic.length, list));
+			Assert.assertEquals(expected.size(), list.size());
+
+			for (int i = 0; i < expected.size(); i++)
+			{
+				Assert.assertEquals(expected.get(i).getId(), list.get(i).getId());
+				Assert.assertEquals(expected.get(i).getDescription(), list.get(i).getDescription());
+				Assert.assertEquals(expected.get(i).getOverallStartTime(), list.get(i).getOverallStartTime());
+			}
+		}
+
+		byte[] carParks = load(XML_CAR_PARK_FILE);
+
+		ParallelParser<CarParkData> carParkParser = new ParallelParser<CarParkData>(StreamParserImpl.createFactory(), CAR_PARK_PARSERS, new CarParkDataFactory(), CarParkData.TEXT_SITUATION_RECORD, pool);
+		carParkParser.setChunkSize(1);
+
+		List<CarParkData> carParkList = new ArrayList<CarParkData>();
+
+		Assert.assertEquals(StreamParser.DONE, carParkParser.parse(carParks, carParks.length, carParkList));
+		Assert.assertEquals(10, carParkList.size());
+		Assert.assertEquals("CPG02C_1", carParkList.get(0).getId());
+		Assert.assertEquals("327", carParkList.get(0).getOccupiedSpaces());
+	}
+
+	/**
+	 * A broken record fails its chunk, the chunks before it are kept.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testBrokenChunk() throws XmlPullParserException, IOException
+	{
+		String text = new String(load(XML_TRAFFIC_FILE), UTF_8);
+
+		int start = text.indexOf("<situationRecord ");
+		for (int i = 0; i < 5; i++)
+		{
+			start = text.indexOf("<situationRecord ", start + 1);
+		}
+
+		int close = text.indexOf(">", start) + 1;
+		byte[] broken = (text.substring(0, close) + "<unclosed>" + text.substring(close)).getBytes(UTF_8);
+
+		ParallelParser<TrafficData> parallelParser = new ParallelParser<TrafficData>(StreamParserImpl.createFactory(), TRAFFIC_PARSERS, new TrafficDataFactory(), TrafficData.TAG_SITUATION_RECORD, pool);
+		parallelParser.setChunkSize(1);
+
+		List<TrafficData> list = new ArrayList<TrafficData>();
+
+		Assert.assertEquals(StreamParser.ERROR, parallelParser.parse(broken, broken.length, list));
+		Assert.assertEquals(5, list.size());
+		Assert.assertTrue(parallelParser.getError() instanceof XmlPullParserException);
+	}
+
+	private byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestParallelParser.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -18,13 +18,17 @@
  */
 package com.netthreads.transportation.test;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Test;
 import org.xmlpull.v1.XmlPullParserException;
 
+import com.netthreads.transportation.parser.RecordSink;
 import com.netthreads.transportation.parser.StreamParser;
 import com.netthreads.transportation.parser.StreamParserImpl;
 import com.netthreads.transportation.parser.data.CarParkData;
@@ -92,6 +96,244 @@ public class TestParser
 		dumpTrafficDataResults(list);
 	}
 	
+	/**
+	 * Both traffic parsers should extract the same records from the sample.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	@Test
+	public void testTrafficParsersAgree() throws XmlPullParserException
+	{
+		final TrafficDataFactory dataFactory = new TrafficDataFactory();
+		
+		final List<TrafficData> list = new LinkedList<TrafficData>();
+		final StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), list, dataFactory, new TrafficDataPullParser(streamParser.getParser()));
+		
+		final List<TrafficData> listEx = new LinkedList<TrafficData>();
+		final StreamParser<TrafficData> streamParserEx = new StreamParserImpl<TrafficData>();
+		streamParserEx.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), listEx, dataFactory, new TrafficDataPullParserEx(streamParserEx.getParser()));
+		
+		org.junit.Assert.assertEquals(list.size(), listEx.size());
+		
+		for (int index = 0; index < list.size(); index++)
+		{
+			org.junit.Assert.assertEquals(list.get(index).toString(), listEx.get(index).toString());
+		}
+		
+		// Sample record with every field present.
+		TrafficData data = list.get(1);
+		org.junit.Assert.assertEquals("biasdb0000207239_1", data.getId());
+		org.junit.Assert.assertEquals("A81", data.getLinkName());
+		org.junit.Assert.assertEquals("MARYHILL ROAD", data.getLocalLinkName());
+		org.junit.Assert.assertEquals("Glasgow", data.getTownName());
+		org.junit.Assert.assertEquals("roadworks", data.getType());
+		org.junit.Assert.assertEquals("2015-03-11T09:30:00", data.getOverallStartTime());
+	}
+	
+	/**
+	 * Projected fields are read, subtrees holding no projected field are
+	 * skipped before their tags are dispatched.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	@Test
+	public void testProjection() throws XmlPullParserException
+	{
+		final Set<String> started = new HashSet<String>();
+		
+		final List<TrafficData> list = new LinkedList<TrafficData>();
+		final StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		final TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser())
+		{
+			@Override
+			public boolean processStartTag(String tag)
+			{
+				started.add(tag);
+				
+				return super.processStartTag(tag);
+			}
+		};
+		
+		pullParser.setProjection(TrafficData.FIELD_ID | TrafficData.FIELD_LATITUDE | TrafficData.FIELD_LONGITUDE | TrafficData.FIELD_TYPE);
+		
+		int state = streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), list, new TrafficDataFactory(), pullParser);
+		
+		org.junit.Assert.assertEquals(StreamParser.DONE, state);
+		org.junit.Assert.assertEquals(17, list.size());
+		
+		TrafficData data = list.get(1);
+		org.junit.Assert.assertEquals("biasdb0000207239_1", data.getId());
+		org.junit.Assert.assertEquals("55.881869821632336", data.getLatitude());
+		org.junit.Assert.assertEquals("-4.278163228904508", data.getLongitude());
+		org.junit.Assert.assertEquals("roadworks", data.getType());
+		org.junit.Assert.assertEquals("", data.getDescription());
+		org.junit.Assert.assertEquals("", data.getLinkName());
+		org.junit.Assert.assertEquals("", data.getOverallStartTime());
+		
+		// Skipped elements are started, their content never is.
+		org.junit.Assert.assertTrue(started.contains(TrafficData.TAG_NON_GENERAL_PUBLIC_COMMENT));
+		org.junit.Assert.assertTrue(started.contains(TrafficData.TAG_NAME));
+		org.junit.Assert.assertFalse(started.contains(TrafficData.TAG_COMMENT));
+		org.junit.Assert.assertFalse(started.contains(TrafficData.TAG_DESCRIPTOR));
+		org.junit.Assert.assertFalse(started.contains(TrafficData.TAG_OVERALL_START_TIME));
+		
+		// Full projection reads everything.
+		final List<TrafficData> full = new LinkedList<TrafficData>();
+		pullParser.setProjection(TrafficData.FIELD_ALL);
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), full, new TrafficDataFactory(), pullParser);
+		
+		org.junit.Assert.assertEquals("A81", full.get(1).getLinkName());
+		org.junit.Assert.assertTrue(full.get(1).getDescription().startsWith("ROADWORKS: In order to accommodate works associated"));
+	}
+	
+	/**
+	 * Projecting one name field leaves the other names, held in the same
+	 * element, empty.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	@Test
+	public void testProjectionSingleName() throws XmlPullParserException
+	{
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+		TrafficDataPullParserEx pullParserEx = new TrafficDataPullParserEx(streamParser.getParser());
+		
+		List<TrafficData> full = new LinkedList<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), full, new TrafficDataFactory(), pullParser);
+		
+		pullParser.setProjection(TrafficData.FIELD_ID | TrafficData.FIELD_LINK_NAME);
+		pullParserEx.setProjection(TrafficData.FIELD_ID | TrafficData.FIELD_LINK_NAME);
+		
+		List<TrafficData> list = new LinkedList<TrafficData>();
+		org.junit.Assert.assertEquals(StreamParser.DONE, streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), list, new TrafficDataFactory(), pullParser));
+		
+		List<TrafficData> listEx = new LinkedList<TrafficData>();
+		org.junit.Assert.assertEquals(StreamParser.DONE, streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), listEx, new TrafficDataFactory(), pullParserEx));
+		
+		org.junit.Assert.assertEquals(full.size(), list.size());
+		org.junit.Assert.assertEquals(full.size(), listEx.size());
+		
+		boolean otherNames = false;
+		for (int i = 0; i < full.size(); i++)
+		{
+			otherNames |= !full.get(i).getLocalLinkName().isEmpty() || !full.get(i).getTownName().isEmpty();
+			
+			for (TrafficData data : new TrafficData[] { list.get(i), listEx.get(i) })
+			{
+				org.junit.Assert.assertEquals(full.get(i).getLinkName(), data.getLinkName());
+				org.junit.Assert.assertEquals("", data.getLocalLinkName());
+				org.junit.Assert.assertEquals("", data.getTownName());
+			}
+		}
+		
+		// The document has other names to leave out.
+		org.junit.Assert.assertTrue(otherNames);
+	}
+	
+	/**
+	 * Records are pushed to a sink which can pause and stop the fetch.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	@Test
+	public void testRecordSink() throws XmlPullParserException
+	{
+		final CarParkDataFactory dataFactory = new CarParkDataFactory();
+		
+		final StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		final CarParkDataPullParser pullParser = new CarParkDataPullParser(streamParser.getParser());
+		
+		// Pause after every record.
+		final List<CarParkData> list = new LinkedList<CarParkData>();
+		RecordSink<CarParkData> pausing = new RecordSink<CarParkData>()
+		{
+			@Override
+			public int accept(CarParkData record)
+			{
+				list.add(record);
+				
+				return PAUSE;
+			}
+		};
+		
+		int pauses = 0;
+		int state = streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CARPARK_FILE), pausing, dataFactory, pullParser);
+		while (state == StreamParser.PAUSED)
+		{
+			org.junit.Assert.assertEquals(++pauses, list.size());
+			
+			state = streamParser.resume(pausing, dataFactory, pullParser);
+		}
+		
+		org.junit.Assert.assertEquals(StreamParser.DONE, state);
+		org.junit.Assert.assertEquals(10, list.size());
+		
+		// Stop after the first record.
+		final List<CarParkData> first = new LinkedList<CarParkData>();
+		state = streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CARPARK_FILE), new RecordSink<CarParkData>()
+		{
+			@Override
+			public int accept(CarParkData record)
+			{
+				first.add(record);
+				
+				return STOP;
+			}
+		}, dataFactory, pullParser);
+		
+		org.junit.Assert.assertEquals(StreamParser.CANCELLED, state);
+		org.junit.Assert.assertEquals(1, first.size());
+		org.junit.Assert.assertEquals("CPG02C_1", first.get(0).getId());
+	}
+	
+	/**
+	 * A cancel arriving after the fetch has finished leaves its state alone.
+	 * 
+	 * @throws XmlPullParserException
+	 */
+	@Test
+	public void testLateCancel() throws XmlPullParserException
+	{
+		CarParkDataFactory dataFactory = new CarParkDataFactory();
+		
+		StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		CarParkDataPullParser pullParser = new CarParkDataPullParser(streamParser.getParser());
+		
+		List<CarParkData> list = new LinkedList<CarParkData>();
+		
+		org.junit.Assert.assertEquals(StreamParser.DONE, streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CARPARK_FILE), list, dataFactory, pullParser));
+		
+		streamParser.cancel();
+		
+		org.junit.Assert.assertEquals(StreamParser.DONE, streamParser.getState());
+		
+		org.junit.Assert.assertEquals(StreamParser.ERROR, streamParser.fetch(new ByteArrayInputStream(new byte[] { '<', 'a', '>' }), list, dataFactory, pullParser));
+		
+		streamParser.cancel();
+		
+		org.junit.Assert.assertEquals(StreamParser.ERROR, streamParser.getState());
+		org.junit.Assert.assertNotNull(streamParser.getError());
+		
+		// Cancelled while paused.
+		RecordSink<CarParkData> pausing = new RecordSink<CarParkData>()
+		{
+			@Override
+			public int accept(CarParkData record)
+			{
+				return PAUSE;
+			}
+		};
+		
+		org.junit.Assert.assertEquals(StreamParser.PAUSED, streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CARPARK_FILE), pausing, dataFactory, pullParser));
+		
+		streamParser.cancel();
+		
+		org.junit.Assert.assertEquals(StreamParser.CANCELLED, streamParser.resume(pausing, dataFactory, pullParser));
+	}
+	
 	/**
 	 * Test Car Park Data.
 	 * @throws XmlPullParserException 
@@ -111,6 +353,14 @@ public class TestParser
 		
 		org.junit.Assert.assertTrue(list.size() > 0);
 		
+		// Typed values.
+		CarParkData data = list.get(0);
+		org.junit.Assert.assertEquals(327, data.getOccupiedSpacesValue());
+		org.junit.Assert.assertEquals(698, data.getTotalCapacityValue());
+		org.junit.Assert.assertEquals(46f, data.getCarParkOccupancyValue(), 0f);
+		org.junit.Assert.assertEquals(55865777, data.getLatitudeE6());
+		org.junit.Assert.assertEquals(-4252559, data.getLongitudeE6());
+		
 		dumpCarParkDataResults(list);
 	}
 	
@@ -0,0 +1,117 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.diff.DiffResult;
+import com.netthreads.transportation.diff.RecordDiff;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+
+/**
+ * Changes between successive fetches.
+ * 
+ */
+public class TestRecordDiff
+{
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	@Test
+	public void testDiff() throws XmlPullParserException
+	{
+		RecordDiff<CarParkData> diff = new RecordDiff<CarParkData>();
+
+		DiffResult<CarParkData> result = diff.update(fetch());
+
+		Assert.assertEquals(10, result.getAdded().size());
+		Assert.assertEquals("CPG02C_1", result.getAdded().get(0).getId());
+		Assert.assertTrue(result.getRemoved().isEmpty());
+
+		// Same content in new instances.
+		result = diff.update(fetch());
+
+		Assert.assertTrue(result.isEmpty());
+		Assert.assertEquals(10, result.getUnchangedCount());
+
+		// Change one, drop one, add one.
+		List<CarParkData> list = fetch();
+
+		list.get(0).setOccupiedSpaces("328");
+
+		CarParkData dropped = list.remove(1);
+
+		CarParkData added = new CarParkData();
+		added.setId("NEW_1");
+		list.add(added);
+
+		result = diff.update(list);
+
+		Assert.assertEquals(1, result.getAdded().size());
+		Assert.assertSame(added, result.getAdded().get(0));
+		Assert.assertEquals(1, result.getChanged().size());
+		Assert.assertEquals("CPG02C_1", result.getChanged().get(0).getId());
+		Assert.assertEquals(1, result.getRemoved().size());
+		Assert.assertEquals(dropped.getId(), result.getRemoved().get(0).getId());
+		Assert.assertEquals(8, result.getUnchangedCount());
+		Assert.assertEquals(10, diff.size());
+	}
+
+	@Test
+	public void testContentHash()
+	{
+		CarParkData first = new CarParkData();
+		first.setId("a");
+		first.setCarParkStatus("spacesAvailable");
+
+		CarParkData second = new CarParkData();
+		second.setId("a");
+		second.setCarParkStatus("spacesAvailable");
+
+		Assert.assertEquals(first.getContentHash(), second.getContentHash());
+
+		second.setCarParkStatus("full");
+
+		Assert.assertTrue(first.getContentHash() != second.getContentHash());
+
+		// Same characters split differently between fields.
+		second.setId("as");
+		second.setCarParkStatus("pacesAvailable");
+
+		Assert.assertTrue(first.getContentHash() != second.getContentHash());
+	}
+
+	private List<CarParkData> fetch() throws XmlPullParserException
+	{
+		List<CarParkData> list = new ArrayList<CarParkData>();
+
+		StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), list, new CarParkDataFactory(), new CarParkDataPullParser(streamParser.getParser()));
+
+		return list;
+	}
+}
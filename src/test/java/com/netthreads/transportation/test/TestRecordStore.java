@@ -0,0 +1,185 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+import com.netthreads.transportation.store.RecordStore;
+
+/**
+ * Latest state store expiry and eviction.
+ * 
+ */
+public class TestRecordStore
+{
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	private static final long TTL = 60000;
+
+	@Test
+	public void testFetchIntoStore() throws Exception
+	{
+		ManualClock clock = new ManualClock();
+		RecordStore<CarParkData> store = new RecordStore<CarParkData>(100, TTL, clock);
+
+		StreamParser<CarParkData> streamParser = new StreamParserImpl<CarParkData>();
+		int state = streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), store, new CarParkDataFactory(), new CarParkDataPullParser(streamParser.getParser()));
+
+		Assert.assertEquals(StreamParser.DONE, state);
+		Assert.assertEquals(10, store.size());
+		Assert.assertEquals(327, store.get("CPG02C_1").getOccupiedSpacesValue());
+		Assert.assertNull(store.get("missing"));
+		Assert.assertEquals(1, store.getHits());
+		Assert.assertEquals(1, store.getMisses());
+
+		// Refreshed records live on, the others expire.
+		clock.advance(TTL / 2);
+		store.put(store.get("CPG02C_1"));
+
+		clock.advance(TTL / 2);
+		Assert.assertEquals(9, store.purgeExpired());
+		Assert.assertEquals(9, store.getExpirations());
+		Assert.assertNotNull(store.get("CPG02C_1"));
+
+		clock.advance(TTL);
+		Assert.assertNull(store.get("CPG02C_1"));
+		Assert.assertEquals(10, store.getExpirations());
+		Assert.assertEquals(0, store.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction()
+	{
+		RecordStore<CarParkData> store = new RecordStore<CarParkData>(2, TTL, new ManualClock());
+
+		store.put(record("a"));
+		store.put(record("b"));
+
+		// Use "a" so "b" is the eldest.
+		store.get("a");
+		store.put(record("c"));
+
+		Assert.assertEquals(2, store.size());
+		Assert.assertEquals(1, store.getEvictions());
+		Assert.assertNotNull(store.get("a"));
+		Assert.assertNull(store.get("b"));
+		Assert.assertNotNull(store.get("c"));
+	}
+
+	/**
+	 * A time to live too long to add to the clock never expires, and one of
+	 * zero or less is refused.
+	 * 
+	 */
+	@Test
+	public void testTimeToLiveLimits()
+	{
+		ManualClock clock = new ManualClock();
+		clock.advance(TTL);
+
+		RecordStore<CarParkData> store = new RecordStore<CarParkData>(10, Long.MAX_VALUE, clock);
+
+		store.put(record("a"));
+		store.put(record("b"), Long.MAX_VALUE - 1);
+
+		clock.advance(TTL);
+		Assert.assertEquals(0, store.purgeExpired());
+		Assert.assertNotNull(store.get("a"));
+		Assert.assertNotNull(store.get("b"));
+
+		try
+		{
+			store.put(record("c"), -1);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected.
+		}
+
+		try
+		{
+			store.put(record("c"), 0);
+			Assert.fail();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Expected.
+		}
+
+		Assert.assertNull(store.get("c"));
+	}
+
+	private static CarParkData record(String id)
+	{
+		CarParkData data = new CarParkData();
+		data.setId(id);
+
+		return data;
+	}
+
+	/**
+	 * Clock moved by the test.
+	 * 
+	 */
+	private static class ManualClock extends Clock
+	{
+		private long millis = 0;
+
+		public void advance(long delta)
+		{
+			millis += delta;
+		}
+
+		@Override
+		public long millis()
+		{
+			return millis;
+		}
+
+		@Override
+		public Instant instant()
+		{
+			return Instant.ofEpochMilli(millis);
+		}
+
+		@Override
+		public ZoneId getZone()
+		{
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone)
+		{
+			return this;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.DataFactory;
+import com.netthreads.transportation.parser.RecordSink;
+import com.netthreads.transportation.parser.RecyclingDataFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+
+/**
+ * Record recycling measured with the thread allocation counter.
+ * 
+ */
+public class TestRecyclingDataFactory
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+
+	private static final int CYCLES = 100000;
+	private static final int FETCHES = 10;
+	private static final int FETCH_CYCLES = 500;
+	private static final int ROUNDS = 5;
+
+	// Header and the field references of a TrafficData, a lower bound.
+	private static final int RECORD_MIN_BYTES = 48;
+
+	private com.sun.management.ThreadMXBean threadBean;
+
+	@Before
+	public void setUp()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+
+		threadBean = (com.sun.management.ThreadMXBean) bean;
+
+		Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	/**
+	 * Taking and returning a record from a warm pool allocates nothing.
+	 * 
+	 */
+	@Test
+	public void testSteadyStateAllocationFree()
+	{
+		RecyclingDataFactory<TrafficData> dataFactory = new RecyclingDataFactory<TrafficData>(new TrafficDataFactory(), 4);
+
+		// Warm up, including JIT of the pool methods.
+		for (int i = 0; i < CYCLES; i++)
+		{
+			dataFactory.release(dataFactory.createRecord());
+		}
+
+		long before = allocatedBytes();
+
+		for (int i = 0; i < CYCLES; i++)
+		{
+			dataFactory.release(dataFactory.createRecord());
+		}
+
+		long allocated = allocatedBytes() - before;
+
+		Assert.assertEquals(1, dataFactory.getCreated());
+		Assert.assertEquals(0, dataFactory.getDropped());
+
+		// Allow for the counter call itself, far less than one record per cycle.
+		Assert.assertTrue("Allocated " + allocated, allocated < 1024);
+	}
+
+	/**
+	 * A fetch feeding a sink which releases each record reuses one instance.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testFetchRecyclesRecords() throws XmlPullParserException, IOException
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		final RecyclingDataFactory<TrafficData> dataFactory = new RecyclingDataFactory<TrafficData>(new TrafficDataFactory(), 4);
+		final Set<TrafficData> seen = Collections.newSetFromMap(new IdentityHashMap<TrafficData, Boolean>());
+
+		RecordSink<TrafficData> releasing = new RecordSink<TrafficData>()
+		{
+			@Override
+			public int accept(TrafficData record)
+			{
+				seen.add(record);
+
+				dataFactory.release(record);
+
+				return CONTINUE;
+			}
+		};
+
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		for (int i = 0; i < FETCHES; i++)
+		{
+			int state = streamParser.fetch(new ByteArrayInputStream(document), releasing, dataFactory, pullParser);
+
+			Assert.assertEquals(StreamParser.DONE, state);
+		}
+
+		Assert.assertEquals(1, seen.size());
+		Assert.assertEquals(1, dataFactory.getCreated());
+		Assert.assertTrue(dataFactory.getRecycled() > FETCHES);
+	}
+
+	/**
+	 * A steady state fetch through a releasing sink allocates at least one
+	 * record object less per record than the same fetch with a plain
+	 * factory.
+	 * 
+	 * This is not a garbage free fetch, the text of each record still comes
+	 * from the XML parser as Strings.
+	 * 
+	 * @throws XmlPullParserException
+	 * @throws IOException
+	 */
+	@Test
+	public void testFetchSavesRecordAllocation() throws XmlPullParserException, IOException
+	{
+		byte[] document = load(XML_TRAFFIC_FILE);
+
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+
+		final TrafficDataFactory plainFactory = new TrafficDataFactory();
+		final RecyclingDataFactory<TrafficData> recyclingFactory = new RecyclingDataFactory<TrafficData>(plainFactory, 4);
+
+		RecordSink<TrafficData> dropping = new RecordSink<TrafficData>()
+		{
+			@Override
+			public int accept(TrafficData record)
+			{
+				return CONTINUE;
+			}
+		};
+
+		RecordSink<TrafficData> releasing = new RecordSink<TrafficData>()
+		{
+			@Override
+			public int accept(TrafficData record)
+			{
+				recyclingFactory.release(record);
+
+				return CONTINUE;
+			}
+		};
+
+		// Warm up both paths.
+		for (int i = 0; i < FETCH_CYCLES; i++)
+		{
+			streamParser.fetch(new ByteArrayInputStream(document), dropping, plainFactory, pullParser);
+			streamParser.fetch(new ByteArrayInputStream(document), releasing, recyclingFactory, pullParser);
+		}
+
+		// Take the best of several interleaved rounds to keep JIT noise out.
+		long plain = Long.MAX_VALUE;
+		long recycling = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			plain = Math.min(plain, fetchAllocation(streamParser, document, dropping, plainFactory, pullParser));
+			recycling = Math.min(recycling, fetchAllocation(streamParser, document, releasing, recyclingFactory, pullParser));
+		}
+
+		int records = streamParser.getRecordCount();
+
+		Assert.assertEquals(17, records);
+		Assert.assertEquals(1, recyclingFactory.getCreated());
+
+		// The saving per record is at least one record object.
+		long saved = (plain - recycling) / ((long) FETCH_CYCLES * records);
+		Assert.assertTrue("Saved " + saved + " bytes per record", saved >= RECORD_MIN_BYTES);
+	}
+
+	private long fetchAllocation(StreamParser<TrafficData> streamParser, byte[] document, RecordSink<TrafficData> sink, DataFactory<TrafficData> dataFactory, TrafficDataPullParser pullParser)
+	{
+		long before = allocatedBytes();
+
+		for (int i = 0; i < FETCH_CYCLES; i++)
+		{
+			streamParser.fetch(new ByteArrayInputStream(document), sink, dataFactory, pullParser);
+		}
+
+		return allocatedBytes() - before;
+	}
+
+	private long allocatedBytes()
+	{
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private byte[] load(String name) throws IOException
+	{
+		InputStream stream = TestRecyclingDataFactory.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.FeedRecord;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+import com.netthreads.transportation.snapshot.CarParkDataCodec;
+import com.netthreads.transportation.snapshot.SnapshotReader;
+import com.netthreads.transportation.snapshot.SnapshotWriter;
+import com.netthreads.transportation.snapshot.TrafficDataCodec;
+
+/**
+ * Snapshots restore the records they were written from and reject damage.
+ * 
+ */
+public class TestSnapshot
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws XmlPullParserException, IOException
+	{
+		List<TrafficData> traffic = new ArrayList<TrafficData>();
+		StreamParser<TrafficData> trafficParser = new StreamParserImpl<TrafficData>();
+		trafficParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), traffic, new TrafficDataFactory(), new TrafficDataPullParser(trafficParser.getParser()));
+
+		File trafficFile = folder.newFile("traffic.snapshot");
+		new SnapshotWriter<TrafficData>(new TrafficDataCodec()).write(trafficFile, traffic);
+
+		assertSame(traffic, new SnapshotReader<TrafficData>(new TrafficDataCodec(), new TrafficDataFactory()).read(trafficFile));
+
+		List<CarParkData> carParks = new ArrayList<CarParkData>();
+		StreamParser<CarParkData> carParkParser = new StreamParserImpl<CarParkData>();
+		carParkParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), carParks, new CarParkDataFactory(), new CarParkDataPullParser(carParkParser.getParser()));
+
+		File carParkFile = folder.newFile("carParks.snapshot");
+		new SnapshotWriter<CarParkData>(new CarParkDataCodec()).write(carParkFile, carParks);
+
+		List<CarParkData> restored = new SnapshotReader<CarParkData>(new CarParkDataCodec(), new CarParkDataFactory()).read(carParkFile);
+		assertSame(carParks, restored);
+
+		Assert.assertEquals(327, restored.get(0).getOccupiedSpacesValue());
+
+		// Empty list.
+		File emptyFile = folder.newFile("empty.snapshot");
+		new SnapshotWriter<CarParkData>(new CarParkDataCodec()).write(emptyFile, new ArrayList<CarParkData>());
+
+		Assert.assertTrue(new SnapshotReader<CarParkData>(new CarParkDataCodec(), new CarParkDataFactory()).read(emptyFile).isEmpty());
+	}
+
+	@Test
+	public void testRejectsDamage() throws XmlPullParserException
+	{
+		List<CarParkData> carParks = new ArrayList<CarParkData>();
+		StreamParser<CarParkData> carParkParser = new StreamParserImpl<CarParkData>();
+		carParkParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), carParks, new CarParkDataFactory(), new CarParkDataPullParser(carParkParser.getParser()));
+
+		byte[] snapshot = new SnapshotWriter<CarParkData>(new CarParkDataCodec()).toByteArray(carParks);
+
+		SnapshotReader<CarParkData> reader = new SnapshotReader<CarParkData>(new CarParkDataCodec(), new CarParkDataFactory());
+
+		// Every flipped bit and every truncation is caught.
+		for (int index = 0; index < snapshot.length; index++)
+		{
+			byte[] damaged = snapshot.clone();
+			damaged[index] ^= 0x10;
+
+			assertRejected(reader, damaged);
+			assertRejected(reader, Arrays.copyOf(snapshot, index));
+		}
+
+		// Wrong record type.
+		SnapshotReader<TrafficData> trafficReader = new SnapshotReader<TrafficData>(new TrafficDataCodec(), new TrafficDataFactory());
+		try
+		{
+			trafficReader.read(ByteBuffer.wrap(snapshot));
+			Assert.fail();
+		}
+		catch (IOException e)
+		{
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("record type"));
+		}
+	}
+
+	private void assertRejected(SnapshotReader<CarParkData> reader, byte[] snapshot)
+	{
+		try
+		{
+			reader.read(ByteBuffer.wrap(snapshot));
+			Assert.fail();
+		}
+		catch (IOException e)
+		{
+			// Expected.
+		}
+	}
+
+	private void assertSame(List<? extends FeedRecord> expected, List<? extends FeedRecord> actual)
+	{
+		Assert.assertEquals(expected.size(), actual.size());
+
+		for (int index = 0; index < expected.size(); index++)
+		{
+			Assert.assertEquals(expected.get(index).toString(), actual.get(index).toString());
+			Assert.assertEquals(expected.get(index).getContentHash(), actual.get(index).getContentHash());
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParser;
+
+import com.netthreads.transportation.metrics.FeedMetrics;
+import com.netthreads.transportation.parser.PullParser;
+import com.netthreads.transportation.parser.PullParserFactory;
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserLease;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.StreamParserPool;
+import com.netthreads.transportation.parser.StringDictionary;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+
+/**
+ * Concurrent fetches through a bounded parser pool.
+ * 
+ */
+public class TestStreamParserPool
+{
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String STATUS = "<carParkStatus>enoughSpacesAvailable</carParkStatus>";
+
+	private static final int POOL_SIZE = 2;
+	private static final int THREADS = 4;
+	private static final int FETCHES = 10;
+
+	private static final PullParserFactory<CarParkData> CAR_PARK_PARSERS = new PullParserFactory<CarParkData>()
+	{
+		@Override
+		public PullParser<CarParkData> createPullParser(XmlPullParser parser)
+		{
+			return new CarParkDataPullParser(parser);
+		}
+	};
+
+	@Test
+	public void testConcurrentFetch() throws Exception
+	{
+		final StreamParserPool<CarParkData> pool = new StreamParserPool<CarParkData>(CAR_PARK_PARSERS, POOL_SIZE);
+		final CarParkDataFactory dataFactory = new CarParkDataFactory();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try
+		{
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+			for (int i = 0; i < THREADS * FETCHES; i++)
+			{
+				results.add(executor.submit(new Callable<Integer>()
+				{
+					@Override
+					public Integer call() throws Exception
+					{
+						List<CarParkData> list = new ArrayList<CarParkData>();
+
+						StreamParserLease<CarParkData> lease = pool.lease();
+						try
+						{
+							InputStream stream = ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE);
+							try
+							{
+								Assert.assertEquals(StreamParser.DONE, lease.fetch(stream, list, dataFactory));
+							}
+							finally
+							{
+								stream.close();
+							}
+						}
+						finally
+						{
+							lease.release();
+						}
+
+						return list.size();
+					}
+				}));
+			}
+
+			for (Future<Integer> result : results)
+			{
+				Assert.assertEquals(10, result.get().intValue());
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		Assert.assertTrue(pool.getCreated() <= POOL_SIZE);
+		Assert.assertEquals(pool.getCreated(), pool.getIdle());
+		Assert.assertEquals(THREADS * FETCHES, pool.getLeases());
+		Assert.assertTrue(pool.getMaxWaitNanos() <= pool.getTotalWaitNanos());
+	}
+
+	@Test
+	public void testLeaseTimeout() throws Exception
+	{
+		StreamParserPool<CarParkData> pool = new StreamParserPool<CarParkData>(CAR_PARK_PARSERS, 1);
+
+		StreamParserLease<CarParkData> lease = pool.lease();
+
+		Assert.assertNull(pool.lease(10, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(1, pool.getTimeouts());
+		Assert.assertEquals(1, pool.getWaits());
+		Assert.assertTrue(pool.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+
+		lease.release();
+		lease.release();
+
+		Assert.assertEquals(1, pool.getIdle());
+		Assert.assertSame(lease, pool.lease(10, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(1, pool.getCreated());
+	}
+
+	/**
+	 * A fetch abandoned partway leaves nothing for the next borrower.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testReleaseAfterAbandonedFetch() throws Exception
+	{
+		StreamParserPool<CarParkData> pool = new StreamParserPool<CarParkData>(CAR_PARK_PARSERS, 1);
+		CarParkDataFactory dataFactory = new CarParkDataFactory();
+
+		String text = load(XML_CAR_PARK_FILE);
+
+		// Cut off inside the first record, after its status.
+		String truncated = text.substring(0, text.indexOf(STATUS) + STATUS.length());
+
+		// First record has no status.
+		String missing = text.replaceFirst(STATUS, "");
+
+		StreamParserLease<CarParkData> lease = pool.lease();
+
+		List<CarParkData> list = new ArrayList<CarParkData>();
+		Assert.assertEquals(StreamParser.ERROR, lease.fetch(new ByteArrayInputStream(truncated.getBytes(UTF_8)), list, dataFactory));
+		Assert.assertTrue(list.isEmpty());
+
+		lease.release();
+
+		StreamParserLease<CarParkData> next = pool.lease();
+		Assert.assertSame(lease, next);
+
+		Assert.assertEquals(StreamParser.DONE, next.fetch(new ByteArrayInputStream(missing.getBytes(UTF_8)), list, dataFactory));
+		Assert.assertEquals(10, list.size());
+		Assert.assertEquals("CPG02C_1", list.get(0).getId());
+		Assert.assertEquals("", list.get(0).getCarParkStatus());
+
+		next.release();
+	}
+
+	/**
+	 * Settings made for one lease are back to their defaults for the next.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testReleaseRestoresDefaults() throws Exception
+	{
+		StreamParserPool<CarParkData> pool = new StreamParserPool<CarParkData>(CAR_PARK_PARSERS, 1);
+		CarParkDataFactory dataFactory = new CarParkDataFactory();
+
+		StreamParserLease<CarParkData> lease = pool.lease();
+
+		StreamParserImpl<CarParkData> streamParser = (StreamParserImpl<CarParkData>) lease.getStreamParser();
+		CarParkDataPullParser pullParser = (CarParkDataPullParser) lease.getPullParser();
+
+		streamParser.setLenient(CarParkData.TEXT_SITUATION_RECORD);
+		streamParser.setMetricsListener(new FeedMetrics("other"));
+		streamParser.setReadBufferSize(16);
+		pullParser.setProjection(CarParkData.FIELD_ID);
+		pullParser.setDictionary(new StringDictionary());
+
+		lease.release();
+
+		StreamParserLease<CarParkData> next = pool.lease();
+		Assert.assertSame(lease, next);
+
+		Assert.assertFalse(streamParser.isLenient());
+		Assert.assertNull(streamParser.getMetricsListener());
+		Assert.assertEquals(StreamParserImpl.DEFAULT_READ_BUFFER_SIZE, streamParser.getReadBufferSize());
+		Assert.assertEquals(CarParkData.FIELD_ALL, pullParser.getProjection());
+		Assert.assertNull(pullParser.getDictionary());
+
+		List<CarParkData> list = new ArrayList<CarParkData>();
+		Assert.assertEquals(StreamParser.DONE, next.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), list, dataFactory));
+		Assert.assertEquals(10, list.size());
+		Assert.assertEquals(CarParkData.STATUS_ENOUGH_SPACES_AVAILABLE, list.get(0).getCarParkStatus());
+
+		next.release();
+	}
+
+	private String load(String name) throws IOException
+	{
+		InputStream stream = TestStreamParserPool.class.getResourceAsStream(name);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int count;
+			while ((count = stream.read(buffer)) > 0)
+			{
+				out.write(buffer, 0, count);
+			}
+
+			return out.toString("UTF-8");
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xmlpull.v1.XmlPullParserException;
+
+import com.netthreads.transportation.parser.StreamParser;
+import com.netthreads.transportation.parser.StreamParserImpl;
+import com.netthreads.transportation.parser.StringDictionary;
+import com.netthreads.transportation.parser.data.CarParkData;
+import com.netthreads.transportation.parser.data.CarParkDataFactory;
+import com.netthreads.transportation.parser.data.CarParkDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficData;
+import com.netthreads.transportation.parser.data.TrafficDataFactory;
+import com.netthreads.transportation.parser.data.TrafficDataPullParser;
+import com.netthreads.transportation.parser.data.TrafficDataPullParserEx;
+
+/**
+ * Repeated values share one instance across records, fetches and threads.
+ * 
+ */
+public class TestStringDictionary
+{
+	private static final String XML_TRAFFIC_FILE = "/trafficEvents.xml";
+	private static final String XML_CAR_PARK_FILE = "/carParkData.xml";
+
+	@Test
+	public void testParsersShareValues() throws XmlPullParserException
+	{
+		StringDictionary dictionary = new StringDictionary();
+
+		StreamParser<TrafficData> streamParser = new StreamParserImpl<TrafficData>();
+
+		TrafficDataPullParser pullParser = new TrafficDataPullParser(streamParser.getParser());
+		pullParser.setDictionary(dictionary);
+
+		TrafficDataPullParserEx pullParserEx = new TrafficDataPullParserEx(streamParser.getParser());
+		pullParserEx.setDictionary(dictionary);
+
+		List<TrafficData> first = new ArrayList<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), first, new TrafficDataFactory(), pullParser);
+
+		List<TrafficData> second = new ArrayList<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), second, new TrafficDataFactory(), pullParserEx);
+
+		// Unchanged values.
+		List<TrafficData> plain = new ArrayList<TrafficData>();
+		streamParser.fetch(ClassLoader.class.getResourceAsStream(XML_TRAFFIC_FILE), plain, new TrafficDataFactory(), new TrafficDataPullParser(streamParser.getParser()));
+
+		Assert.assertEquals(plain.size(), second.size());
+
+		Map<String, String> canonical = new HashMap<String, String>();
+
+		for (int index = 0; index < plain.size(); index++)
+		{
+			TrafficData a = first.get(index);
+			TrafficData b = second.get(index);
+
+			Assert.assertEquals(plain.get(index).toString(), b.toString());
+
+			for (String value : new String[] { b.getTownName(), b.getLinkName(), b.getLocalLinkName(), b.getType() })
+			{
+				String previous = canonical.put(value, value);
+				if (previous != null)
+				{
+					Assert.assertSame(previous, value);
+				}
+			}
+
+			Assert.assertSame(a.getTownName(), b.getTownName());
+			Assert.assertSame(a.getLinkName(), b.getLinkName());
+			Assert.assertSame(a.getLocalLinkName(), b.getLocalLinkName());
+			Assert.assertSame(a.getType(), b.getType());
+		}
+
+		Assert.assertTrue(dictionary.getSize() < canonical.size() + 8);
+		Assert.assertTrue(dictionary.getHitRate() > 0.5);
+
+		// Car park status.
+		StreamParser<CarParkData> carParkParser = new StreamParserImpl<CarParkData>();
+		CarParkDataPullParser carParkPullParser = new CarParkDataPullParser(carParkParser.getParser());
+		carParkPullParser.setDictionary(dictionary);
+
+		List<CarParkData> carParks = new ArrayList<CarParkData>();
+		carParkParser.fetch(ClassLoader.class.getResourceAsStream(XML_CAR_PARK_FILE), carParks, new CarParkDataFactory(), carParkPullParser);
+
+		Assert.assertSame(carParks.get(0).getCarParkStatus(), dictionary.intern(CarParkData.STATUS_ENOUGH_SPACES_AVAILABLE));
+	}
+
+	@Test
+	public void testBounded()
+	{
+		StringDictionary dictionary = new StringDictionary(10);
+
+		for (int value = 0; value < 100; value++)
+		{
+			char[] text = ("value" + value).toCharArray();
+
+			Assert.assertEquals("value" + value, dictionary.intern(text, 0, text.length));
+		}
+
+		Assert.assertEquals(10, dictionary.getSize());
+		Assert.assertEquals(100, dictionary.getMisses());
+
+		dictionary.clear();
+		Assert.assertEquals(0, dictionary.getSize());
+
+		Assert.assertSame("", dictionary.intern(new char[0], 0, 0));
+		Assert.assertNull(dictionary.intern(null));
+	}
+
+	@Test
+	public void testConcurrentLookups() throws Exception
+	{
+		final StringDictionary dictionary = new StringDictionary();
+		final int values = 200;
+
+		List<Callable<String[]>> tasks = new ArrayList<Callable<String[]>>();
+		for (int thread = 0; thread < 4; thread++)
+		{
+			tasks.add(new Callable<String[]>()
+			{
+				@Override
+				public String[] call()
+				{
+					String[] result = new String[values];
+
+					for (int round = 0; round < 50; round++)
+					{
+						for (int value = 0; value < values; value++)
+						{
+							char[] text = ("road " + value).toCharArray();
+
+							result[value] = dictionary.intern(text, 0, text.length);
+						}
+					}
+
+					return result;
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<String[]>> futures = executor.invokeAll(tasks);
+
+			String[] expected = futures.get(0).get();
+			for (Future<String[]> future : futures)
+			{
+				String[] result = future.get();
+
+				for (int value = 0; value < values; value++)
+				{
+					Assert.assertSame(expected[value], result[value]);
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+
+		Assert.assertEquals(values, dictionary.getSize());
+		Assert.assertEquals(4 * 50 * values, dictionary.getHits() + dictionary.getMisses());
+	}
+}
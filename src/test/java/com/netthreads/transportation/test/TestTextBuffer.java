@@ -0,0 +1,51 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netthreads.transportation.parser.TextBuffer;
+
+/**
+ * Text conversion from the parser buffer.
+ * 
+ */
+public class TestTextBuffer
+{
+	// What the parsers used to apply to descriptions.
+	private static final String REGEX_DESCRIPTION = "\\s{2,}";
+	
+	@Test
+	public void testCollapseMatchesRegex()
+	{
+		String[] samples = { "", "a", "a b", "a  b", "a \n\t b  c", "ROADWORKS: lane  City Bound\r\n   until", "  x  ", "no change at all" };
+		
+		TextBuffer textBuffer = new TextBuffer();
+		
+		for (String sample : samples)
+		{
+			// Offset the range to check start handling.
+			char[] buffer = ("##" + sample + "##").toCharArray();
+			
+			Assert.assertEquals(sample.replaceAll(REGEX_DESCRIPTION, " "), textBuffer.toCollapsedString(buffer, 2, sample.length()));
+			Assert.assertEquals(sample, textBuffer.toString(buffer, 2, sample.length()));
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * -----------------------------------------------------------------------
+ * Copyright 2015 - Alistair Rutherford - www.netthreads.co.uk
+ * -----------------------------------------------------------------------
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.netthreads.transportation.test;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.netthreads.transportation.parser.ValueParser;
+
+/**
+ * Typed value parsing.
+ * 
+ */
+public class TestValueParser
+{
+	@Test
+	public void testParseInt()
+	{
+		Assert.assertEquals(327, ValueParser.parseInt("327"));
+		Assert.assertEquals(-5, ValueParser.parseInt("-5"));
+		Assert.assertEquals(ValueParser.INVALID_INT, ValueParser.parseInt(""));
+		Assert.assertEquals(ValueParser.INVALID_INT, ValueParser.parseInt("12a"));
+		Assert.assertEquals(ValueParser.INVALID_INT, ValueParser.parseInt("99999999999"));
+		Assert.assertEquals(ValueParser.INVALID_INT, ValueParser.parseInt(null));
+	}
+
+	@Test
+	public void testParseFloat()
+	{
+		Assert.assertEquals(46f, ValueParser.parseFloat("46"), 0f);
+		Assert.assertEquals(-4.25f, ValueParser.parseFloat("-4.25"), 0f);
+		Assert.assertTrue(Float.isNaN(ValueParser.parseFloat("n/a")));
+		Assert.assertTrue(Float.isNaN(ValueParser.parseFloat("")));
+	}
+
+	@Test
+	public void testParseFixedPoint()
+	{
+		Assert.assertEquals(55865777, ValueParser.parseFixedPoint("55.86577732200993"));
+		Assert.assertEquals(-4252559, ValueParser.parseFixedPoint("-4.252559328401379"));
+		Assert.assertEquals(-4338461, ValueParser.parseFixedPoint("-4.3384609980768"));
+		Assert.assertEquals(55000000, ValueParser.parseFixedPoint("55"));
+		Assert.assertEquals(ValueParser.INVALID_INT, ValueParser.parseFixedPoint("55.8.1"));
+		Assert.assertEquals(ValueParser.INVALID_INT, ValueParser.parseFixedPoint(""));
+	}
+
+	@Test
+	public void testParseDateTime() throws Exception
+	{
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+		format.setTimeZone(TimeZone.getTimeZone("Europe/London"));
+
+		// Winter and summer local time.
+		Assert.assertEquals(format.parse("2015-03-06T10:15:00").getTime(), ValueParser.parseDateTime("2015-03-06T10:15:00"));
+		Assert.assertEquals(format.parse("2015-04-09T18:00:00").getTime(), ValueParser.parseDateTime("2015-04-09T18:00:00"));
+
+		Assert.assertEquals(0L, ValueParser.parseDateTime("1970-01-01T00:00:00Z"));
+		Assert.assertEquals(1500L, ValueParser.parseDateTime("1970-01-01T01:00:01.5+01:00"));
+		Assert.assertEquals(951782400000L, ValueParser.parseDateTime("2000-02-29T00:00Z"));
+
+		Assert.assertEquals(ValueParser.INVALID_TIME, ValueParser.parseDateTime("2015-02-29T00:00:00"));
+		Assert.assertEquals(ValueParser.INVALID_TIME, ValueParser.parseDateTime("2015-03-06"));
+		Assert.assertEquals(ValueParser.INVALID_TIME, ValueParser.parseDateTime("2015-03-06T10:15:00X"));
+		Assert.assertEquals(ValueParser.INVALID_TIME, ValueParser.parseDateTime(""));
+	}
+}